@@ -0,0 +1,17 @@
+package retrofit.http.batch;
+
+/**
+ * @class describe {@link HttpBatch#add(io.reactivex.Observable)} 返回的标识，用于从 {@link BatchResult} 中取出对应类型的结果
+ */
+public final class BatchKey<T> {
+    final int index;
+
+    BatchKey(int index) {
+        this.index = index;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchKey{" + index + '}';
+    }
+}
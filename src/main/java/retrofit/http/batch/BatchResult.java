@@ -0,0 +1,51 @@
+package retrofit.http.batch;
+
+import retrofit.http.exception.ApiException;
+
+/**
+ * @class describe {@link HttpBatch} 的合并结果，每个请求单独成功或失败，失败的错误已经经过 ExceptionEngine 处理
+ */
+public final class BatchResult {
+    private final Object[] results;
+    private final ApiException[] errors;
+
+    BatchResult(Object[] results, ApiException[] errors) {
+        this.results = results;
+        this.errors = errors;
+    }
+
+    /**
+     * @return 请求失败时返回null，通过 {@link #getError(BatchKey)} 获取错误
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(BatchKey<T> key) {
+        return (T) results[key.index];
+    }
+
+    /**
+     * @return 请求成功时返回null；请求没有返回数据就结束时，错误的 cause 是 {@link java.util.NoSuchElementException}
+     */
+    public ApiException getError(BatchKey<?> key) {
+        return errors[key.index];
+    }
+
+    public boolean isSuccess(BatchKey<?> key) {
+        return errors[key.index] == null;
+    }
+
+    /**
+     * 是否全部成功
+     */
+    public boolean isAllSuccess() {
+        for (ApiException error : errors) {
+            if (error != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return results.length;
+    }
+}
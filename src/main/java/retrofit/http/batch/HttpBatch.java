@@ -0,0 +1,139 @@
+package retrofit.http.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import retrofit.http.exception.ApiException;
+import retrofit.http.exception.ExceptionEngine;
+import retrofit.http.function.ServerResultFunction;
+import retrofit.http.retrofit.IHttpResponse;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
+
+/**
+ * @class describe 批量请求:页面打开时的多个请求放到一起，限制并发数同时请求，全部结束后一次性返回 {@link BatchResult}
+ * 单个请求失败不影响其他请求，失败的错误通过 {@link BatchResult#getError(BatchKey)} 获取，
+ * 没有返回数据就结束的请求也按失败处理
+ * 每个请求都经过 {@link RequestScheduler#subscribeOn(RequestPriority)} 的排队限制，被拒绝的请求同样按失败处理
+ * <pre>
+ * HttpBatch batch = new HttpBatch();
+ * BatchKey&lt;User&gt; user = batch.add(api.getUser());
+ * BatchKey&lt;List&lt;Banner&gt;&gt; banners = batch.add(api.getBanners());
+ * batch.execute().subscribe(result -&gt; result.get(user) ...);
+ * </pre>
+ */
+public class HttpBatch {
+    private static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private final int mMaxConcurrency;
+    private final RequestPriority mPriority;
+    private final List<Observable<?>> mRequests = new ArrayList<>();
+
+    public HttpBatch() {
+        this(DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * @param maxConcurrency 同时进行的最大请求数
+     */
+    public HttpBatch(int maxConcurrency) {
+        this(maxConcurrency, RequestPriority.NORMAL);
+    }
+
+    /**
+     * @param maxConcurrency 同时进行的最大请求数
+     * @param priority       所有请求的优先级
+     */
+    public HttpBatch(int maxConcurrency, RequestPriority priority) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency < 1: " + maxConcurrency);
+        if (priority == null) throw new NullPointerException("priority == null");
+        mMaxConcurrency = maxConcurrency;
+        mPriority = priority;
+    }
+
+    /**
+     * 添加请求，在 {@link #execute()} 之前调用
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> BatchKey<T> add(Observable<? extends IHttpResponse<T>> apiObservable) {
+        BatchKey<T> key = new BatchKey<>(mRequests.size());
+        mRequests.add(((Observable<IHttpResponse<T>>) apiObservable).map(new ServerResultFunction<T>()));
+        return key;
+    }
+
+    /**
+     * 执行所有请求，全部结束后在主线程返回，每个请求在订阅时按优先级检查排队数量
+     */
+    public Observable<BatchResult> execute() {
+        final List<Observable<?>> requests;
+        synchronized (this) {
+            requests = new ArrayList<>(mRequests);
+        }
+        return Observable.defer(new Callable<ObservableSource<BatchResult>>() {
+            @Override
+            public ObservableSource<BatchResult> call() throws Exception {
+                final Object[] results = new Object[requests.size()];
+                final ApiException[] errors = new ApiException[requests.size()];
+                List<Observable<Outcome>> outcomes = new ArrayList<>(requests.size());
+                for (int i = 0; i < requests.size(); i++) {
+                    outcomes.add(outcome(i, requests.get(i)));
+                }
+                return Observable.merge(outcomes, mMaxConcurrency)
+                        .doOnNext(new Consumer<Outcome>() {
+                            @Override
+                            public void accept(Outcome outcome) throws Exception {
+                                results[outcome.index] = outcome.result;
+                                errors[outcome.index] = outcome.error;
+                            }
+                        })
+                        .ignoreElements()
+                        .andThen(Observable.fromCallable(new Callable<BatchResult>() {
+                            @Override
+                            public BatchResult call() throws Exception {
+                                return new BatchResult(results, errors);
+                            }
+                        }));
+            }
+        })
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    private Observable<Outcome> outcome(final int index, Observable<?> request) {
+        // 没有返回数据就结束的请求按失败处理(NoSuchElementException)，不会在结果中静默为null
+        // 排队太多被拒绝时(RejectedExecutionException)只有这个请求失败
+        return request
+                .compose(RequestScheduler.getInstance().subscribeOn(mPriority))
+                .firstOrError()
+                .toObservable()
+                .map(new Function<Object, Outcome>() {
+                    @Override
+                    public Outcome apply(Object result) throws Exception {
+                        return new Outcome(index, result, null);
+                    }
+                })
+                .onErrorReturn(new Function<Throwable, Outcome>() {
+                    @Override
+                    public Outcome apply(Throwable throwable) throws Exception {
+                        return new Outcome(index, null, ExceptionEngine.handleException(throwable));
+                    }
+                });
+    }
+
+    private static final class Outcome {
+        final int index;
+        final Object result;
+        final ApiException error;
+
+        Outcome(int index, Object result, ApiException error) {
+            this.index = index;
+            this.result = result;
+            this.error = error;
+        }
+    }
+}
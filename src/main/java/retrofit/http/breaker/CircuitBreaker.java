@@ -0,0 +1,186 @@
+package retrofit.http.breaker;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @class describe 单个接口的熔断器
+ * CLOSED:正常请求，按滑动窗口统计失败率和慢请求比例，超过阈值后进入 OPEN
+ * OPEN:直接失败，不请求网络，熔断时长结束后进入 HALF_OPEN
+ * HALF_OPEN:只放行一个探测请求(CAS抢占)，成功后恢复 CLOSED，失败则重新 OPEN
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String route;
+    private final CircuitBreakerConfig config;
+    private final CircuitStateListener listener;
+    private final SlidingWindow window;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile long openUntilMillis;
+
+    CircuitBreaker(String route, CircuitBreakerConfig config, CircuitStateListener listener) {
+        this.route = route;
+        this.config = config;
+        this.listener = listener;
+        this.window = new SlidingWindow(config.getWindowMillis(), config.getWindowBuckets());
+    }
+
+    /**
+     * 请求前调用
+     *
+     * @return 获取许可时的状态，结束后传给 {@link #onResult(State, long, boolean)} 或 {@link #release(State)}；
+     * 为null时表示熔断中，不能请求
+     */
+    public State tryAcquire() {
+        State current = state.get();
+        if (current == State.OPEN) {
+            if (now() < openUntilMillis) {
+                return null;
+            }
+            transition(State.OPEN, State.HALF_OPEN);
+            current = state.get();
+        }
+        if (current == State.HALF_OPEN) {
+            return probing.compareAndSet(false, true) ? State.HALF_OPEN : null;
+        }
+        return current == State.CLOSED ? State.CLOSED : null;
+    }
+
+    /**
+     * 请求结束
+     *
+     * @param permit        {@link #tryAcquire()} 的返回值
+     * @param elapsedMillis 请求耗时
+     * @param failure       是否失败(网络异常、5xx)
+     */
+    public void onResult(State permit, long elapsedMillis, boolean failure) {
+        long now = now();
+        boolean slow = elapsedMillis >= config.getSlowCallMillis();
+        if (permit == State.HALF_OPEN) {
+            if (failure || slow) {
+                open(State.HALF_OPEN, now);
+            } else {
+                window.reset();
+                transition(State.HALF_OPEN, State.CLOSED);
+            }
+            probing.set(false);
+            return;
+        }
+        window.record(now, failure, slow);
+        if ((failure || slow) && state.get() == State.CLOSED && shouldOpen(now)) {
+            open(State.CLOSED, now);
+        }
+    }
+
+    /**
+     * 请求被取消等不计入统计的情况，释放许可
+     */
+    public void release(State permit) {
+        if (permit == State.HALF_OPEN) {
+            probing.set(false);
+        }
+    }
+
+    private boolean shouldOpen(long now) {
+        long[] sum = window.sum(now);
+        long calls = sum[0];
+        if (calls < config.getMinimumCalls()) {
+            return false;
+        }
+        return sum[1] >= calls * config.getFailureRateThreshold()
+            || sum[2] >= calls * config.getSlowCallRateThreshold();
+    }
+
+    private void open(State from, long now) {
+        openUntilMillis = now + config.getOpenMillis();
+        transition(from, State.OPEN);
+    }
+
+    private void transition(State from, State to) {
+        if (state.compareAndSet(from, to) && listener != null) {
+            listener.onStateChanged(route, from, to);
+        }
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 距离熔断结束的时间，不在熔断中时为0
+     */
+    public long getRemainingOpenMillis() {
+        if (state.get() != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openUntilMillis - now());
+    }
+
+    public Snapshot snapshot() {
+        long[] sum = window.sum(now());
+        return new Snapshot(route, state.get(), sum[0], sum[1], sum[2]);
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /**
+     * 熔断器状态和当前窗口内的统计
+     */
+    public static final class Snapshot {
+        private final String route;
+        private final State state;
+        private final long calls;
+        private final long failures;
+        private final long slowCalls;
+
+        Snapshot(String route, State state, long calls, long failures, long slowCalls) {
+            this.route = route;
+            this.state = state;
+            this.calls = calls;
+            this.failures = failures;
+            this.slowCalls = slowCalls;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getSlowCalls() {
+            return slowCalls;
+        }
+
+        @Override
+        public String toString() {
+            return "CircuitBreaker{" +
+                "route='" + route + '\'' +
+                ", state=" + state +
+                ", calls=" + calls +
+                ", failures=" + failures +
+                ", slowCalls=" + slowCalls +
+                '}';
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package retrofit.http.breaker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @class describe 熔断配置，通过 {@link retrofit.http.retrofit.HttpConfig.Builder#circuitBreaker(CircuitBreakerConfig)} 开启
+ * 统计窗口内请求数达到 minimumCalls，并且失败率或慢请求比例超过阈值时熔断，熔断 openDuration 后放行一个探测请求
+ */
+public final class CircuitBreakerConfig {
+    private final long windowMillis;
+    private final int windowBuckets;
+    private final int minimumCalls;
+    private final float failureRateThreshold;
+    private final float slowCallRateThreshold;
+    private final long slowCallMillis;
+    private final long openMillis;
+
+    private CircuitBreakerConfig(Builder builder) {
+        this.windowMillis = builder.windowMillis;
+        this.windowBuckets = builder.windowBuckets;
+        this.minimumCalls = builder.minimumCalls;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallMillis = builder.slowCallMillis;
+        this.openMillis = builder.openMillis;
+    }
+
+    public static CircuitBreakerConfig defaultConfig() {
+        return new Builder().build();
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getWindowBuckets() {
+        return windowBuckets;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public float getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public float getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public long getSlowCallMillis() {
+        return slowCallMillis;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    public static final class Builder {
+        private long windowMillis = TimeUnit.SECONDS.toMillis(10);//统计窗口时长
+        private int windowBuckets = 10;//窗口分成的格数
+        private int minimumCalls = 20;//窗口内请求数少于这个值时不熔断
+        private float failureRateThreshold = 0.5f;//失败率(网络异常、5xx)
+        private float slowCallRateThreshold = 0.8f;//慢请求比例
+        private long slowCallMillis = TimeUnit.SECONDS.toMillis(10);//超过这个时长算慢请求
+        private long openMillis = TimeUnit.SECONDS.toMillis(30);//熔断时长
+
+        public Builder window(long window, TimeUnit unit, int buckets) {
+            if (buckets < 1) throw new IllegalArgumentException("buckets < 1: " + buckets);
+            this.windowMillis = unit.toMillis(window);
+            this.windowBuckets = buckets;
+            if (windowMillis < buckets) throw new IllegalArgumentException("window too short: " + windowMillis + "ms");
+            return this;
+        }
+
+        public Builder minimumCalls(int minimumCalls) {
+            if (minimumCalls < 1) throw new IllegalArgumentException("minimumCalls < 1: " + minimumCalls);
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param rate 0~1，大于1时不按失败率熔断
+         */
+        public Builder failureRateThreshold(float rate) {
+            this.failureRateThreshold = rate;
+            return this;
+        }
+
+        /**
+         * @param rate     0~1，大于1时不按慢请求熔断
+         * @param slowCall 超过这个时长算慢请求
+         */
+        public Builder slowCallRateThreshold(float rate, long slowCall, TimeUnit unit) {
+            this.slowCallRateThreshold = rate;
+            this.slowCallMillis = unit.toMillis(slowCall);
+            return this;
+        }
+
+        public Builder openDuration(long duration, TimeUnit unit) {
+            this.openMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public CircuitBreakerConfig build() {
+            return new CircuitBreakerConfig(this);
+        }
+    }
+}
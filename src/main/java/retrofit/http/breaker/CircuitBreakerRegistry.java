@@ -0,0 +1,82 @@
+package retrofit.http.breaker;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @class describe 所有接口的熔断器，接口key和 {@link retrofit.http.metrics.HttpMetrics#route(okhttp3.HttpUrl)} 一致
+ * 通过 {@link #addListener(CircuitStateListener)} 监听状态变化，{@link #snapshot()} 查看当前状态
+ */
+public class CircuitBreakerRegistry {
+    private static final int MAX_ROUTES = 256;//超出后新的接口不做熔断
+
+    private static volatile CircuitBreakerRegistry mInstance;
+    private final ConcurrentHashMap<String, CircuitBreaker> mBreakers = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<CircuitStateListener> mListeners = new CopyOnWriteArrayList<>();
+    private final CircuitStateListener mDispatcher = new CircuitStateListener() {
+        @Override
+        public void onStateChanged(String route, CircuitBreaker.State from, CircuitBreaker.State to) {
+            for (CircuitStateListener listener : mListeners) {
+                listener.onStateChanged(route, from, to);
+            }
+        }
+    };
+
+    public static CircuitBreakerRegistry getInstance() {
+        if (mInstance == null) {
+            synchronized (CircuitBreakerRegistry.class) {
+                if (mInstance == null) {
+                    mInstance = new CircuitBreakerRegistry();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    /**
+     * 获取接口的熔断器，不存在时按config创建
+     *
+     * @return 接口数量超出上限时为null
+     */
+    public CircuitBreaker get(String route, CircuitBreakerConfig config) {
+        CircuitBreaker breaker = mBreakers.get(route);
+        if (breaker != null) {
+            return breaker;
+        }
+        if (mBreakers.size() >= MAX_ROUTES) {
+            return null;
+        }
+        breaker = new CircuitBreaker(route, config, mDispatcher);
+        CircuitBreaker old = mBreakers.putIfAbsent(route, breaker);
+        return old != null ? old : breaker;
+    }
+
+    public void addListener(CircuitStateListener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(CircuitStateListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * 所有接口熔断器的快照
+     */
+    public Map<String, CircuitBreaker.Snapshot> snapshot() {
+        Map<String, CircuitBreaker.Snapshot> snapshot = new HashMap<>();
+        for (CircuitBreaker breaker : mBreakers.values()) {
+            snapshot.put(breaker.getRoute(), breaker.snapshot());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * 清空所有熔断器，全部恢复 CLOSED
+     */
+    public void reset() {
+        mBreakers.clear();
+    }
+}
@@ -0,0 +1,8 @@
+package retrofit.http.breaker;
+
+/**
+ * @class describe 熔断状态变化监听，在发生变化的请求线程回调，不要做耗时操作
+ */
+public interface CircuitStateListener {
+    void onStateChanged(String route, CircuitBreaker.State from, CircuitBreaker.State to);
+}
@@ -0,0 +1,73 @@
+package retrofit.http.breaker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @class describe 无锁的滑动窗口计数，窗口分成若干格，每格记录请求数、失败数、慢请求数
+ * 切换到新的一格时由CAS成功的线程清零，清零和计数之间的并发可能少记几次，对熔断判断没有影响
+ */
+final class SlidingWindow {
+    private static final int CALLS = 0;
+    private static final int FAILURES = 1;
+    private static final int SLOW = 2;
+    private static final int FIELDS = 3;
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final AtomicLongArray epochs;//每格对应的时间段
+    private final AtomicLongArray counts;
+
+    SlidingWindow(long windowMillis, int buckets) {
+        this.buckets = buckets;
+        this.bucketMillis = Math.max(1, windowMillis / buckets);
+        this.epochs = new AtomicLongArray(buckets);
+        this.counts = new AtomicLongArray(buckets * FIELDS);
+        for (int i = 0; i < buckets; i++) {
+            epochs.set(i, -1);
+        }
+    }
+
+    void record(long nowMillis, boolean failure, boolean slow) {
+        long epoch = nowMillis / bucketMillis;
+        int index = (int) (epoch % buckets);
+        long current = epochs.get(index);
+        if (current != epoch && epochs.compareAndSet(index, current, epoch)) {
+            int base = index * FIELDS;
+            counts.set(base + CALLS, 0);
+            counts.set(base + FAILURES, 0);
+            counts.set(base + SLOW, 0);
+        }
+        int base = index * FIELDS;
+        counts.incrementAndGet(base + CALLS);
+        if (failure) {
+            counts.incrementAndGet(base + FAILURES);
+        }
+        if (slow) {
+            counts.incrementAndGet(base + SLOW);
+        }
+    }
+
+    /**
+     * @return [请求数, 失败数, 慢请求数]
+     */
+    long[] sum(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        long[] sum = new long[FIELDS];
+        for (int i = 0; i < buckets; i++) {
+            long bucketEpoch = epochs.get(i);
+            if (bucketEpoch > epoch - buckets && bucketEpoch <= epoch) {
+                int base = i * FIELDS;
+                sum[CALLS] += counts.get(base + CALLS);
+                sum[FAILURES] += counts.get(base + FAILURES);
+                sum[SLOW] += counts.get(base + SLOW);
+            }
+        }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < buckets; i++) {
+            epochs.set(i, -1);
+        }
+    }
+}
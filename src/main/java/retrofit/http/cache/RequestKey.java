@@ -0,0 +1,65 @@
+package retrofit.http.cache;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @class describe 请求的标识，由请求方式、url、参数组成，参数顺序不影响结果
+ * 用于 {@link ResultCache} 缓存和相同请求的合并
+ */
+public final class RequestKey {
+    private final String method;
+    private final String url;
+    private final String params;
+
+    private RequestKey(String method, String url, String params) {
+        this.method = method;
+        this.url = url;
+        this.params = params;
+    }
+
+    public static RequestKey of(String url) {
+        return of("GET", url, null);
+    }
+
+    /**
+     * @param params 请求参数，可以为null
+     */
+    public static RequestKey of(String method, String url, Map<String, ?> params) {
+        if (url == null) throw new NullPointerException("url == null");
+        String paramString = "";
+        if (params != null && !params.isEmpty()) {
+            paramString = new TreeMap<>(params).toString();
+        }
+        return new RequestKey(method == null ? "GET" : method.toUpperCase(), url, paramString);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RequestKey)) return false;
+        RequestKey that = (RequestKey) o;
+        return method.equals(that.method) && url.equals(that.url) && params.equals(that.params);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = method.hashCode();
+        result = 31 * result + url.hashCode();
+        result = 31 * result + params.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url + (params.isEmpty() ? "" : " " + params);
+    }
+}
@@ -0,0 +1,137 @@
+package retrofit.http.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Consumer;
+
+/**
+ * @class describe 内存缓存已经解析好的返回结果(IHttpResponse.getResult())，按最近使用淘汰，并且有过期时间
+ * 通过 {@link #transformer(RequestKey, long, TimeUnit)} 用在 HttpRxObservable.getObservable 中，
+ * 缓存有效时不再请求网络、解析json
+ */
+public class ResultCache {
+    private static final int DEFAULT_MAX_SIZE = 64;
+
+    private static volatile ResultCache mInstance;
+    private final LinkedHashMap<RequestKey, Entry> mEntries;
+    private final int mMaxSize;
+
+    public static ResultCache getInstance() {
+        if (mInstance == null) {
+            synchronized (ResultCache.class) {
+                if (mInstance == null) {
+                    mInstance = new ResultCache(DEFAULT_MAX_SIZE);
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    /**
+     * @param maxSize 最多缓存的结果数量
+     */
+    public ResultCache(final int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize < 1: " + maxSize);
+        mMaxSize = maxSize;
+        mEntries = new LinkedHashMap<RequestKey, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RequestKey, Entry> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    /**
+     * 获取没有过期的缓存，没有时返回null
+     */
+    public synchronized Object get(RequestKey key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt - System.nanoTime() <= 0) {
+            mEntries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(RequestKey key, Object value, long ttl, TimeUnit unit) {
+        if (value == null || ttl <= 0) {
+            return;
+        }
+        mEntries.put(key, new Entry(value, System.nanoTime() + unit.toNanos(ttl)));
+    }
+
+    public synchronized void remove(RequestKey key) {
+        mEntries.remove(key);
+    }
+
+    /**
+     * 清除所有缓存，比如退出登录时
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * 清除已经过期的缓存
+     */
+    public synchronized void trim() {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expireAt - now <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * 缓存有效时直接返回缓存，否则订阅上游并把结果放入缓存
+     */
+    public <T> ObservableTransformer<T, T> transformer(final RequestKey key, final long ttl, final TimeUnit unit) {
+        return new ObservableTransformer<T, T>() {
+            @Override
+            public ObservableSource<T> apply(final Observable<T> upstream) {
+                return Observable.defer(new Callable<ObservableSource<T>>() {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public ObservableSource<T> call() throws Exception {
+                        Object cached = get(key);
+                        if (cached != null) {
+                            return Observable.just((T) cached);
+                        }
+                        return upstream.doOnNext(new Consumer<T>() {
+                            @Override
+                            public void accept(T t) throws Exception {
+                                put(key, t, ttl, unit);
+                            }
+                        });
+                    }
+                });
+            }
+        };
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long expireAt;
+
+        Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
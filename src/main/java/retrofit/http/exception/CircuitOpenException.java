@@ -0,0 +1,29 @@
+package retrofit.http.exception;
+
+import java.io.IOException;
+
+/**
+ * 接口熔断中，请求没有发出，由 {@link ExceptionEngine} 转为 {@link ExceptionEngine#CIRCUIT_OPEN_ERROR}
+ *
+ */
+public class CircuitOpenException extends IOException {
+    private final String route;
+    private final long retryAfterMillis;
+
+    public CircuitOpenException(String route, long retryAfterMillis) {
+        super("circuit open: " + route + ", retry after " + retryAfterMillis + "ms");
+        this.route = route;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * 距离熔断结束的时间
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
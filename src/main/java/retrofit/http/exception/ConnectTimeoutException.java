@@ -0,0 +1,16 @@
+package retrofit.http.exception;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * 连接阶段的超时，请求还没有发出，由 {@link retrofit.http.intercept.ConnectPhaseInterceptor} 转换
+ * 继承 SocketTimeoutException，{@link ExceptionEngine} 仍然按网络超时处理
+ *
+ */
+public class ConnectTimeoutException extends SocketTimeoutException {
+
+    public ConnectTimeoutException(SocketTimeoutException cause) {
+        super(cause.getMessage());
+        initCause(cause);
+    }
+}
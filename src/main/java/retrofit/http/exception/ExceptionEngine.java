@@ -10,6 +10,7 @@ import org.json.JSONException;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
 import java.text.ParseException;
+import java.util.concurrent.RejectedExecutionException;
 
 import retrofit2.HttpException;
 
@@ -25,6 +26,9 @@ public class ExceptionEngine {
     public static final int ANALYTIC_CLIENT_DATA_ERROR = 1002;//解析(客户端)数据错误
     public static final int CONNECT_ERROR = 1003;//网络连接错误
     public static final int TIME_OUT_ERROR = 1004;//网络连接超时
+    public static final int CIRCUIT_OPEN_ERROR = 1005;//接口熔断中
+    public static final int REQUEST_QUEUED = 1006;//没有网络,请求已放入离线队列
+    public static final int QUEUE_FULL_ERROR = 1007;//排队的请求太多,请求被拒绝
 
     public static ApiException handleException(Throwable e) {
         ApiException ex;
@@ -45,6 +49,18 @@ public class ExceptionEngine {
             ex = new ApiException(e, UN_KNOWN_ERROR);
             ex.setMsg("数据解析错误，请重试");
             return ex;
+        } else if (e instanceof CircuitOpenException) {//接口熔断中,请求没有发出
+            ex = new ApiException(e, CIRCUIT_OPEN_ERROR);
+            ex.setMsg("服务繁忙，请稍候再试");
+            return ex;
+        } else if (e instanceof RequestQueuedException) {//请求已放入离线队列,网络恢复后自动发送
+            ex = new ApiException(e, REQUEST_QUEUED);
+            ex.setMsg("网络不可用，已保存，联网后自动提交");
+            return ex;
+        } else if (e instanceof RejectedExecutionException) {//排队的请求太多,请求没有发出
+            ex = new ApiException(e, QUEUE_FULL_ERROR);
+            ex.setMsg("请求太多，请稍候再试");
+            return ex;
         } else if (e instanceof ConnectException) {//连接网络错误
             ex = new ApiException(e, UN_KNOWN_ERROR);
             ex.setMsg("连接失败，请重试");
@@ -0,0 +1,37 @@
+package retrofit.http.exception;
+
+import retrofit.http.retrofit.HttpCallContext;
+
+/**
+ * 返回结果处理失败时通过EventBus发送的事件，带上出错请求的上下文
+ *
+ */
+public class HttpErrorEvent {
+    private final HttpCallContext context;//出错的请求，可能为null
+    private final String json;//返回的json(流式解析时只有code、msg)
+
+    public HttpErrorEvent(HttpCallContext context, String json) {
+        this.context = context;
+        this.json = json;
+    }
+
+    public HttpCallContext getContext() {
+        return context;
+    }
+
+    public String getUrl() {
+        return context != null ? context.getUrl() : null;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpErrorEvent{" +
+            "url='" + getUrl() + '\'' +
+            ", json='" + json + '\'' +
+            '}';
+    }
+}
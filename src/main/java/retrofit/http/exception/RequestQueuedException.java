@@ -0,0 +1,20 @@
+package retrofit.http.exception;
+
+import java.io.IOException;
+
+/**
+ * 请求已经放入离线队列，网络恢复后自动发送，由 {@link ExceptionEngine} 转为 {@link ExceptionEngine#REQUEST_QUEUED}
+ *
+ */
+public class RequestQueuedException extends IOException {
+    private final String idempotencyKey;
+
+    public RequestQueuedException(String idempotencyKey, Throwable cause) {
+        super("request queued: " + idempotencyKey, cause);
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+}
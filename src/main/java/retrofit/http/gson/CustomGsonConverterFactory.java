@@ -20,21 +20,32 @@ public class CustomGsonConverterFactory<I extends IGsonConverter> extends Conver
 
     private final Gson gson;
     private final I mGsonConverter;
+    private final boolean mStreaming;
 
     public CustomGsonConverterFactory(Gson gson, I gsonConverter) {
+        this(gson, gsonConverter, false);
+    }
+
+    /**
+     * @param streaming true：直接从 charStream 流式解析，不把body转成String，
+     *                  错误预处理 {@link IGsonConverter#gsonConvert(String)} 以及 EventBus 发送的json字符串
+     *                  都只有 code、msg 组成的json，不再是完整的body
+     */
+    public CustomGsonConverterFactory(Gson gson, I gsonConverter, boolean streaming) {
         if (gson == null) throw new NullPointerException("gson == null");
         this.gson = gson;
         mGsonConverter = gsonConverter;
+        mStreaming = streaming;
     }
 
     @Override
     public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
         try {
             TypeAdapter<?> adapter = gson.getAdapter(TypeToken.get(type));
-            return new CustomGsonResponseBodyConverter<>(gson, mGsonConverter, adapter);
+            return new CustomGsonResponseBodyConverter<>(gson, mGsonConverter, adapter, mStreaming);
         } catch (Exception e) {
             e.printStackTrace();
-            return new CustomGsonResponseBodyConverter<>(null, mGsonConverter, null);
+            return new CustomGsonResponseBodyConverter<>(null, mGsonConverter, null, mStreaming);
         }
     }
 
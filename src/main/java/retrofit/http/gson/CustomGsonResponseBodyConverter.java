@@ -5,6 +5,7 @@ import android.util.Log;
 import com.google.gson.Gson;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.lyx.skio.BuildConfig;
 
 import org.greenrobot.eventbus.EventBus;
 
@@ -18,7 +19,11 @@ import java.nio.charset.Charset;
 import okhttp3.MediaType;
 import okhttp3.ResponseBody;
 import retrofit.http.exception.ExceptionEngine;
+import retrofit.http.exception.HttpErrorEvent;
 import retrofit.http.exception.ServerException;
+import retrofit.http.metrics.HttpMetrics;
+import retrofit.http.metrics.HttpPhase;
+import retrofit.http.retrofit.HttpCallContext;
 import retrofit2.Converter;
 
 /**
@@ -30,19 +35,38 @@ public class CustomGsonResponseBodyConverter<I extends IGsonConverter, T> implem
     private final TypeAdapter<T> adapter;
     private static final Charset UTF_8 = Charset.forName("UTF-8");
     private final I mGsonConverter;
+    private final boolean mStreaming;
 
-    CustomGsonResponseBodyConverter(Gson gson, I gsonConverter, TypeAdapter<T> adapter) {
+    CustomGsonResponseBodyConverter(Gson gson, I gsonConverter, TypeAdapter<T> adapter, boolean streaming) {
         this.gson = gson;
         this.adapter = adapter;
         this.mGsonConverter = gsonConverter;
+        this.mStreaming = streaming;
     }
 
     @Override
     public T convert(ResponseBody value) throws IOException {
+        long start = System.nanoTime();
+        HttpCallContext context = HttpCallContext.beginConvert();
+        try {
+            return convertBody(value);
+        } finally {
+            if (context != null) {
+                HttpMetrics.getInstance().record(context.getRoute(), HttpPhase.CONVERT, System.nanoTime() - start);
+                // 解析结束，请求的上下文不再需要
+                HttpCallContext.end(context);
+            }
+        }
+    }
+
+    private T convertBody(ResponseBody value) throws IOException {
         //把responsebody转为string,因为retrofit2的Response对象只能够读取一次，而我们只需要判断code和获取msg就行了
         if (gson == null || adapter == null) {
             throw new ServerException(ExceptionEngine.ANALYTIC_SERVER_DATA_ERROR, "ANALYTIC SERVER DATA ERROR");
         }
+        if (mStreaming) {
+            return convertStreaming(value);
+        }
         String json = value.string();
         // 这里只是为了检测code是否==200 也就是服务器定义的访问正常,所以只解析HttpStatus中的字段,因为只要code和message就可以了
 //        HttpStatus httpStatus = gson.fromJson(response, HttpStatus.class);
@@ -51,10 +75,12 @@ public class CustomGsonResponseBodyConverter<I extends IGsonConverter, T> implem
             sb.insert(json.length()-1, ",\"result\":\"\"");//在指定的位置1，插入指定的字符串
             json = sb.toString();
         }
-        Log.w("数据返回",""+json);
+        if (BuildConfig.DEBUG) {
+            Log.w("数据返回",""+json);
+        }
 
-        if (mGsonConverter.gsonConvert(json)) {
-            EventBus.getDefault().post(json);
+        if (isServerError(json)) {
+            postError(json);
             value.close();
             //抛出一个RuntimeException, 这里抛出的异常会到CallBack的onError()方法中统一处理
             throw new ServerException(mGsonConverter.getHttpResponse().getCode(), mGsonConverter.getHttpResponse().getMsg());
@@ -68,13 +94,93 @@ public class CustomGsonResponseBodyConverter<I extends IGsonConverter, T> implem
             return adapter.read(jsonReader);
         } catch (Exception e) {
             e.printStackTrace();
-            EventBus.getDefault().post(json);
+            postError(json);
             throw new IOException();
         } finally {
             value.close();
         }
     }
-}
 
+    /**
+     * 流式解析:边读 charStream 边用 {@link EnvelopeReader} 记录 code/msg、补上缺少的 result，只解析一遍
+     * code、msg 读完就做错误预处理，服务器返回错误时不再解析后面的 result
+     */
+    private T convertStreaming(ResponseBody value) throws IOException {
+        EnvelopeReader envelope = new EnvelopeReader(value.charStream(), new EnvelopeReader.Callback() {
+            @Override
+            public void onEnvelope(EnvelopeReader reader) {
+                checkEnvelope(reader);
+            }
+        });
+        JsonReader jsonReader = gson.newJsonReader(envelope);
+        try {
+            T result;
+            try {
+                result = adapter.read(jsonReader);
+            } catch (ServerException e) {
+                throw e;
+            } catch (Exception e) {
+                // result 排在 code、msg 前面并且结构不对时，读完剩下的部分再按code/msg判断是否为服务器错误
+                drain(envelope);
+                e.printStackTrace();
+                postError(envelope.headerJson());
+                throw new IOException(e);
+            }
+            if (!envelope.isEnvelopeRead()) {
+                // 最外层不是对象
+                checkEnvelope(envelope);
+            }
+            return result;
+        } finally {
+            value.close();
+        }
+    }
 
+    private void drain(EnvelopeReader envelope) {
+        try {
+            envelope.drain();
+        } catch (IOException e) {
+            return;
+        }
+        if (!envelope.isEnvelopeRead()) {
+            checkEnvelope(envelope);
+        }
+    }
 
+    /**
+     * 实现了 {@link IGsonEnvelopeConverter} 时只读取外层的 code、msg 交给它，不再完整解析一遍json
+     */
+    private boolean isServerError(String json) {
+        if (mGsonConverter instanceof IGsonEnvelopeConverter) {
+            return EnvelopeGsonConverter.peekEnvelope(json, (IGsonEnvelopeConverter) mGsonConverter);
+        }
+        return mGsonConverter.gsonConvert(json);
+    }
+
+    /**
+     * 实现了 {@link IGsonEnvelopeConverter} 时直接把读取过程中拿到的 code、msg 交给它，
+     * 否则拼成只有 code、msg 的json交给 {@link IGsonConverter#gsonConvert(String)}
+     */
+    private void checkEnvelope(EnvelopeReader envelope) {
+        boolean invalid;
+        if (mGsonConverter instanceof IGsonEnvelopeConverter) {
+            Integer code = envelope.getCode();
+            invalid = code != null && ((IGsonEnvelopeConverter) mGsonConverter).envelopeConvert(code, envelope.getMsg());
+        } else {
+            invalid = mGsonConverter.gsonConvert(envelope.headerJson());
+        }
+        if (invalid) {
+            postError(envelope.headerJson());
+            throw new ServerException(mGsonConverter.getHttpResponse().getCode(), mGsonConverter.getHttpResponse().getMsg());
+        }
+    }
+
+    /**
+     * 发送错误事件，原来的json字符串事件保留，另外发送带有请求上下文的 {@link HttpErrorEvent}
+     * 流式解析时没有完整的body，json 为只包含 code、msg 的 {@link EnvelopeReader#headerJson()}
+     */
+    private void postError(String json) {
+        EventBus.getDefault().post(json);
+        EventBus.getDefault().post(new HttpErrorEvent(HttpCallContext.current(), json));
+    }
+}
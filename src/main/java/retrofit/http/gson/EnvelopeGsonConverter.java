@@ -0,0 +1,98 @@
+package retrofit.http.gson;
+
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * @class describe 新的json预处理实现继承这个类，只需要实现 {@link #envelopeConvert(int, String)}
+ * 原来的 {@link #gsonConvert(String)} 在这里适配:只读取外层的 code、msg 后回调，读到就停止，不再完整解析json
+ */
+public abstract class EnvelopeGsonConverter implements IGsonConverter, IGsonEnvelopeConverter {
+
+    @Override
+    public final boolean gsonConvert(String json) {
+        return peekEnvelope(json, this);
+    }
+
+    /**
+     * 只读取json外层的 code、msg 交给 converter，不解析 result
+     *
+     * @return 没有code时无法判断，返回false
+     */
+    static boolean peekEnvelope(String json, IGsonEnvelopeConverter converter) {
+        if (json == null) {
+            return false;
+        }
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+        Integer code = null;
+        String msg = null;
+        boolean hasMsg = false;
+        try {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.beginObject();
+            while (reader.hasNext() && (code == null || !hasMsg)) {
+                String name = reader.nextName();
+                if ("code".equals(name)) {
+                    code = readCode(reader);
+                } else if ("msg".equals(name)) {
+                    msg = readMsg(reader);
+                    hasMsg = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        // 没有code时无法判断，按成功处理，交给后面的解析
+        return code != null && converter.envelopeConvert(code, msg);
+    }
+
+    /**
+     * 读取code，兼容 200 和 "200" 两种写法，无法识别时返回null
+     */
+    static Integer readCode(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NUMBER:
+                try {
+                    return reader.nextInt();
+                } catch (NumberFormatException e) {
+                    reader.skipValue();
+                    return null;
+                }
+            case STRING:
+                try {
+                    return Integer.parseInt(reader.nextString().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * 读取msg，不是字符串时返回原始值
+     */
+    static String readMsg(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return null;
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+}
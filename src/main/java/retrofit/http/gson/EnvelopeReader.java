@@ -0,0 +1,348 @@
+package retrofit.http.gson;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * @class describe 流式读取返回的json，边读边处理外层的 code/msg/result，不把整个body转成String
+ * 1.记录最外层 code、msg 的原始json值，用于错误预处理
+ * 2.整个json中没有出现 result 时，在最外层对象结束前补上 "result":""（和原来 contains + insert 的处理一致）
+ * 3.code、msg 都读到后(或最外层对象结束时)回调 {@link Callback}，这时后面的 result 还没有解析，
+ * 回调中抛出的异常会从 read 抛出，中断解析
+ */
+class EnvelopeReader extends FilterReader {
+    private static final String KEY_CODE = "code";
+    private static final String KEY_MSG = "msg";
+    private static final char[] RESULT = "result".toCharArray();
+    private static final int MAX_KEY_LENGTH = 16;
+    private static final int MAX_VALUE_LENGTH = 4096;
+
+    private int depth;//当前嵌套层级
+    private boolean topObject;//最外层是否为对象
+    private boolean inString;
+    private boolean escape;
+    private boolean expectKey;//最外层下一个字符串是否为key
+    private boolean hasMember;//最外层是否已经有字段
+    private int resultMatched;//"result" 已匹配的字符数
+    private boolean resultSeen;
+    private boolean injected;
+    private boolean envelopeRead;//已经回调过 Callback
+
+    private final StringBuilder mKey = new StringBuilder();
+    private StringBuilder mValue;//正在记录的 code/msg 原始值
+    private String mValueKey;
+    private String mRawCode;
+    private String mRawMsg;
+
+    private char[] mPending;//补上的 "result":""，还没读出去
+    private int mPendingPos;
+    private char[] mPushback;//遇到最外层 } 时暂存的、还没处理的字符
+    private int mPushbackPos;
+    private int mPushbackEnd;
+    private final Callback mCallback;
+
+    /**
+     * 外层 code、msg 读完时的回调
+     */
+    interface Callback {
+        void onEnvelope(EnvelopeReader reader);
+    }
+
+    EnvelopeReader(Reader in) {
+        this(in, null);
+    }
+
+    EnvelopeReader(Reader in, Callback callback) {
+        super(in);
+        mCallback = callback;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] one = new char[1];
+        int n = read(one, 0, 1);
+        return n == -1 ? -1 : one[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (mPending != null) {
+            int n = Math.min(len, mPending.length - mPendingPos);
+            System.arraycopy(mPending, mPendingPos, cbuf, off, n);
+            mPendingPos += n;
+            if (mPendingPos == mPending.length) {
+                mPending = null;
+            }
+            return n;
+        }
+        int n;
+        if (mPushback != null) {
+            n = Math.min(len, mPushbackEnd - mPushbackPos);
+            System.arraycopy(mPushback, mPushbackPos, cbuf, off, n);
+            mPushbackPos += n;
+            if (mPushbackPos == mPushbackEnd) {
+                mPushback = null;
+            }
+        } else {
+            n = in.read(cbuf, off, len);
+            if (n == -1) {
+                return -1;
+            }
+        }
+        if (envelopeRead && (resultSeen || injected)) {
+            // 已经回调过并且不需要再补 result，剩下的内容不用逐个字符检查
+            return n;
+        }
+        for (int i = 0; i < n; i++) {
+            char c = cbuf[off + i];
+            if (shouldInject(c)) {
+                // 把 } 以及后面的字符退回去，先把 "result":"" 读出去
+                pushback(cbuf, off + i, n - i);
+                injected = true;
+                mPending = (hasMember ? ",\"result\":\"\"" : "\"result\":\"\"").toCharArray();
+                mPendingPos = 0;
+                return i > 0 ? i : read(cbuf, off, len);
+            }
+            scan(c);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("skip not supported");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return mPending != null || mPushback != null || in.ready();
+    }
+
+    private boolean shouldInject(char c) {
+        return c == '}' && !inString && depth == 1 && !resultSeen && !injected;
+    }
+
+    private void pushback(char[] cbuf, int start, int count) {
+        if (mPushback != null) {
+            // 退回的字符还没读完，拼在前面
+            char[] merged = new char[count + mPushbackEnd - mPushbackPos];
+            System.arraycopy(cbuf, start, merged, 0, count);
+            System.arraycopy(mPushback, mPushbackPos, merged, count, mPushbackEnd - mPushbackPos);
+            mPushback = merged;
+        } else {
+            mPushback = new char[count];
+            System.arraycopy(cbuf, start, mPushback, 0, count);
+        }
+        mPushbackPos = 0;
+        mPushbackEnd = mPushback.length;
+    }
+
+    private void scan(char c) {
+        matchResult(c);
+        if (mValue != null && depth == 1) {
+            if (!inString && (c == ',' || c == '}')) {
+                endValue();
+            } else if (!inString && (c == '{' || c == '[')) {
+                // code/msg 是对象或数组时不记录
+                mValue = null;
+            } else if (mValue.length() < MAX_VALUE_LENGTH) {
+                if (mValue.length() > 0 || !Character.isWhitespace(c)) {
+                    mValue.append(c);
+                }
+            } else {
+                mValue = null;
+            }
+        }
+        if (inString) {
+            if (escape) {
+                escape = false;
+            } else if (c == '\\') {
+                escape = true;
+            } else if (c == '"') {
+                inString = false;
+                if (depth == 1 && expectKey) {
+                    expectKey = false;
+                    startValue(mKey.toString());
+                }
+            } else if (depth == 1 && expectKey && mKey.length() < MAX_KEY_LENGTH) {
+                mKey.append(c);
+            }
+            return;
+        }
+        switch (c) {
+            case '"':
+                inString = true;
+                if (depth == 1 && expectKey) {
+                    mKey.setLength(0);
+                    hasMember = true;
+                }
+                break;
+            case '{':
+                depth++;
+                if (depth == 1) {
+                    topObject = true;
+                    expectKey = true;
+                }
+                break;
+            case '[':
+                depth++;
+                break;
+            case '}':
+            case ']':
+                depth--;
+                if (depth == 0 && topObject) {
+                    onEnvelope();
+                }
+                break;
+            case ',':
+                if (depth == 1 && topObject) {
+                    expectKey = true;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void matchResult(char c) {
+        if (resultSeen) {
+            return;
+        }
+        if (c == RESULT[resultMatched]) {
+            resultMatched++;
+            if (resultMatched == RESULT.length) {
+                resultSeen = true;
+            }
+        } else {
+            resultMatched = c == RESULT[0] ? 1 : 0;
+        }
+    }
+
+    private void startValue(String key) {
+        if (KEY_CODE.equals(key) || KEY_MSG.equals(key)) {
+            mValueKey = key;
+            mValue = new StringBuilder();
+        }
+    }
+
+    private void endValue() {
+        String raw = mValue.toString();
+        // 去掉 key 后面的 : 和空白
+        int colon = raw.indexOf(':');
+        raw = colon >= 0 ? raw.substring(colon + 1).trim() : raw.trim();
+        if (KEY_CODE.equals(mValueKey)) {
+            mRawCode = raw;
+        } else {
+            mRawMsg = raw;
+        }
+        mValue = null;
+        mValueKey = null;
+        if (mRawCode != null && mRawMsg != null) {
+            onEnvelope();
+        }
+    }
+
+    private void onEnvelope() {
+        if (envelopeRead) {
+            return;
+        }
+        envelopeRead = true;
+        if (mCallback != null) {
+            mCallback.onEnvelope(this);
+        }
+    }
+
+    /**
+     * 是否已经回调过 {@link Callback}
+     */
+    boolean isEnvelopeRead() {
+        return envelopeRead;
+    }
+
+    /**
+     * 读完剩下的内容，解析失败后用来拿到排在 result 后面的 code、msg
+     */
+    void drain() throws IOException {
+        char[] buffer = new char[1024];
+        while (!envelopeRead && read(buffer, 0, buffer.length) != -1) {
+            // 只需要经过 scan
+        }
+    }
+
+    /**
+     * 最外层 code 的原始json值，没有读到时为null
+     */
+    String getRawCode() {
+        return mRawCode;
+    }
+
+    /**
+     * 最外层 msg 的原始json值，没有读到时为null
+     */
+    String getRawMsg() {
+        return mRawMsg;
+    }
+
+    /**
+     * 解码后的外层code，没有读到或无法识别时为null
+     */
+    Integer getCode() {
+        if (mRawCode == null) {
+            return null;
+        }
+        try {
+            return EnvelopeGsonConverter.readCode(tokenReader(mRawCode));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解码后的外层msg，没有读到时为null
+     */
+    String getMsg() {
+        if (mRawMsg == null) {
+            return null;
+        }
+        try {
+            return EnvelopeGsonConverter.readMsg(tokenReader(mRawMsg));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static JsonReader tokenReader(String raw) {
+        JsonReader reader = new JsonReader(new StringReader(raw));
+        reader.setLenient(true);
+        return reader;
+    }
+
+    /**
+     * 只包含 code、msg 的json，交给 {@link IGsonConverter#gsonConvert(String)} 做错误预处理
+     */
+    String headerJson() {
+        StringBuilder sb = new StringBuilder("{");
+        if (mRawCode != null) {
+            sb.append("\"code\":").append(mRawCode);
+        }
+        if (mRawMsg != null) {
+            if (mRawCode != null) {
+                sb.append(',');
+            }
+            sb.append("\"msg\":").append(mRawMsg);
+        }
+        return sb.append('}').toString();
+    }
+}
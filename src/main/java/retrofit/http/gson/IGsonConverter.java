@@ -7,6 +7,7 @@ import retrofit.http.retrofit.IHttpResponse;
  * @class describe 这里处理Gson拦截器的json拦截，json 预处理 比如code msg的判断，是否成功失败，登录过期等等
  * @anthor aojiaoqiang
  * @time 2018/8/31 16:10
+ * 只需要判断 code、msg 时继承 {@link EnvelopeGsonConverter}，避免每次都完整解析一遍json
  */
 public interface IGsonConverter {
     /**
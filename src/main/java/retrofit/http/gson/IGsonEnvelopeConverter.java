@@ -0,0 +1,15 @@
+package retrofit.http.gson;
+
+/**
+ * @class describe 只根据外层 code、msg 做json预处理，不需要再解析一遍整个json
+ * 流式解析时 code、msg 在读取过程中就已经拿到，直接回调这里；非流式解析时只读取json外层的 code、msg 后回调
+ * 需要同时实现 {@link IGsonConverter}，错误信息通过 {@link IGsonConverter#getHttpResponse()} 获取
+ */
+public interface IGsonEnvelopeConverter {
+    /**
+     * @param code 外层的code
+     * @param msg  外层的msg，没有时为null
+     * @return 和 {@link IGsonConverter#gsonConvert(String)} 一致，返回true时按服务器错误处理
+     */
+    boolean envelopeConvert(int code, String msg);
+}
@@ -0,0 +1,134 @@
+package retrofit.http.intercept;
+
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import retrofit.http.exception.ConnectTimeoutException;
+import retrofit.utils.NetWorkUtil;
+
+/**
+ * 按当前网络类型(NetWorkUtil)和最近的响应耗时调整超时时间的拦截器
+ * 每种网络类型分别用 EWMA 统计响应耗时(和TCP计算RTO的方法一致:srtt + 4 * rttvar)，
+ * 读写超时取这个值并限制在该网络类型的范围内，连接超时按网络类型固定
+ * 样本从发出请求到收到响应头，不包含DNS、连接、TLS握手，包含服务器的处理时间(读超时要等服务器处理完)；
+ * 读写超时时没有样本，超时时间加倍(和TCP超时重传一样)，直到下一个正常的样本
+ * 在 {@link RouteTimeoutInterceptor} 之前、{@link ConnectPhaseInterceptor} 之后添加，单个接口设置的超时优先
+ */
+
+public class AdaptiveTimeoutInterceptor implements Interceptor {
+    private static final int TYPE_COUNT = NetWorkUtil.NETWORKTYPE_WIFI + 1;
+    // 按网络类型的 [连接超时, 最小读写超时, 最大读写超时]，单位毫秒，下标为 NetWorkUtil.NETWORKTYPE_XXX
+    private static final long[][] TIMEOUTS = new long[TYPE_COUNT][];
+
+    static {
+        TIMEOUTS[NetWorkUtil.NETWORKTYPE_WAP] = new long[]{30000, 15000, 60000};
+        TIMEOUTS[NetWorkUtil.NETWORKTYPE_2G] = new long[]{30000, 15000, 60000};
+        TIMEOUTS[NetWorkUtil.NETWORKTYPE_3G] = new long[]{15000, 8000, 30000};
+        TIMEOUTS[NetWorkUtil.NETWORKTYPE_WIFI] = new long[]{10000, 5000, 20000};
+    }
+
+    private final RttEstimator[] mEstimators = new RttEstimator[TYPE_COUNT];
+
+    public AdaptiveTimeoutInterceptor() {
+        for (int i = NetWorkUtil.NETWORKTYPE_INVALID + 1; i < TYPE_COUNT; i++) {
+            mEstimators[i] = new RttEstimator(TIMEOUTS[i][1], TIMEOUTS[i][2]);
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        int type = NetWorkUtil.isInit() ? NetWorkUtil.getNetWorkType() : NetWorkUtil.NETWORKTYPE_INVALID;
+        if (type <= NetWorkUtil.NETWORKTYPE_INVALID || type >= TYPE_COUNT) {
+            // 没有网络或无法判断时使用全局设置
+            return chain.proceed(chain.request());
+        }
+        RttEstimator estimator = mEstimators[type];
+        int ioTimeout = (int) estimator.timeoutMillis();
+        Chain timeoutChain = chain
+            .withConnectTimeout((int) TIMEOUTS[type][0], TimeUnit.MILLISECONDS)
+            .withReadTimeout(ioTimeout, TimeUnit.MILLISECONDS)
+            .withWriteTimeout(ioTimeout, TimeUnit.MILLISECONDS);
+        Response response;
+        try {
+            response = timeoutChain.proceed(chain.request());
+        } catch (SocketTimeoutException e) {
+            // 连接超时和读写超时无关
+            if (!(e instanceof ConnectTimeoutException)) {
+                estimator.onTimeout();
+            }
+            throw e;
+        }
+        Response network = response.networkResponse();
+        if (network != null) {
+            // 只统计请求了网络的返回
+            estimator.update(network.receivedResponseAtMillis() - network.sentRequestAtMillis());
+        }
+        return response;
+    }
+
+    /**
+     * 当前网络类型的读写超时，没有样本时为该网络类型的最小值
+     */
+    public long getTimeoutMillis(int netWorkType) {
+        if (netWorkType <= NetWorkUtil.NETWORKTYPE_INVALID || netWorkType >= TYPE_COUNT) {
+            return 0;
+        }
+        return mEstimators[netWorkType].timeoutMillis();
+    }
+
+    /**
+     * srtt = 7/8 * srtt + 1/8 * rtt
+     * rttvar = 3/4 * rttvar + 1/4 * |srtt - rtt|
+     * timeout = srtt + 4 * rttvar，限制在 [minMillis, maxMillis]，超时一次加倍
+     * 和TCP一样保存 8 * srtt、4 * rttvar，避免整数除法的误差让 srtt 停在比实际耗时小的值
+     */
+    static final class RttEstimator {
+        private final long mMinMillis;
+        private final long mMaxMillis;
+        private boolean mSampled;
+        private long srtt8;
+        private long rttvar4;
+        private volatile long timeout;
+
+        RttEstimator(long minMillis, long maxMillis) {
+            mMinMillis = minMillis;
+            mMaxMillis = maxMillis;
+            timeout = minMillis;
+        }
+
+        synchronized void update(long rtt) {
+            if (rtt < 0) {
+                return;
+            }
+            if (!mSampled) {
+                mSampled = true;
+                srtt8 = rtt << 3;
+                rttvar4 = rtt << 1;
+            } else {
+                long delta = rtt - (srtt8 >> 3);
+                srtt8 += delta;
+                rttvar4 += Math.abs(delta) - (rttvar4 >> 2);
+            }
+            timeout = clamp((srtt8 >> 3) + rttvar4);
+        }
+
+        /**
+         * 超时的请求不知道实际耗时，不更新 srtt，只把超时时间加倍
+         */
+        synchronized void onTimeout() {
+            timeout = clamp(timeout * 2);
+        }
+
+        long timeoutMillis() {
+            return timeout;
+        }
+
+        private long clamp(long millis) {
+            return Math.max(mMinMillis, Math.min(mMaxMillis, millis));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package retrofit.http.intercept;
+
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 设置了 {@link CachePolicy} 的请求，发送前移除本地使用的请求头，
+ * 后台没有返回 Cache-Control 时把返回改为可以缓存，是否使用缓存由 {@link CachePolicyInterceptor} 决定
+ * 只修改返回头，作为 NetworkInterceptor 添加
+ */
+
+public class CacheNetworkInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(CachePolicy.HEADER) == null) {
+            return chain.proceed(request);
+        }
+        Response response = chain.proceed(request.newBuilder().removeHeader(CachePolicy.HEADER).build());
+        // 后台返回了 Cache-Control 时按后台的设置，no-store、private 等不会被覆盖
+        if (!response.isSuccessful() || response.header("Cache-Control") != null) {
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                // 每次都需要重新验证，策略中通过 max-stale 决定是否直接使用缓存
+                .header("Cache-Control", "public, max-age=0")
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package retrofit.http.intercept;
+
+/**
+ * 接口的缓存策略，在接口上通过请求头设置，比如 @Headers(CachePolicy.CACHE_FIRST)
+ * 需要在 HttpConfig 中设置缓存大小后才生效，请求头只在本地使用，不会发送到服务器
+ * 没有网络时(NetWorkUtil 返回 NETWORKTYPE_INVALID)所有策略都只读缓存
+ */
+public final class CachePolicy {
+    public static final String HEADER = "Cache-Policy";
+
+    static final String VALUE_NETWORK_FIRST = "network-first";
+    static final String VALUE_CACHE_FIRST = "cache-first";
+    static final String VALUE_STALE_WHILE_REVALIDATE = "stale-while-revalidate";
+    static final String VALUE_OFFLINE = "offline";
+
+    /**
+     * 优先请求网络，网络请求失败时读取缓存
+     */
+    public static final String NETWORK_FIRST = HEADER + ": " + VALUE_NETWORK_FIRST;
+    /**
+     * 有缓存(无论是否过期)时直接使用缓存，没有缓存时请求网络
+     */
+    public static final String CACHE_FIRST = HEADER + ": " + VALUE_CACHE_FIRST;
+    /**
+     * 有缓存时直接使用缓存，缓存已过期时在后台请求网络更新缓存，下次请求使用新的数据
+     */
+    public static final String STALE_WHILE_REVALIDATE = HEADER + ": " + VALUE_STALE_WHILE_REVALIDATE;
+    /**
+     * 有网络时和普通请求一致，只在没有网络时读取缓存
+     */
+    public static final String OFFLINE = HEADER + ": " + VALUE_OFFLINE;
+
+    /**
+     * 缓存最长可以使用的时间(秒)，默认7天
+     */
+    static final int MAX_STALE_SECONDS = 7 * 24 * 60 * 60;
+
+    private CachePolicy() {
+    }
+}
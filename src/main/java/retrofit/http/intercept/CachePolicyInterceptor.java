@@ -0,0 +1,145 @@
+package retrofit.http.intercept;
+
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Okio;
+import retrofit.utils.NetWorkUtil;
+
+/**
+ * 按 {@link CachePolicy} 设置请求的缓存方式，在 {@link ResponseInterceptor} 之后添加，
+ * 这样读取缓存的返回也会经过 ResponseInterceptor 处理，和网络返回的数据一致
+ */
+
+public class CachePolicyInterceptor implements Interceptor {
+    private static final CacheControl MAX_STALE = new CacheControl.Builder()
+            .maxStale(CachePolicy.MAX_STALE_SECONDS, TimeUnit.SECONDS)
+            .build();
+    private static final CacheControl ONLY_CACHE = new CacheControl.Builder()
+            .onlyIfCached()
+            .maxStale(CachePolicy.MAX_STALE_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private final boolean mCacheEnabled;
+    private final Set<Call> mRevalidateCalls = Collections.newSetFromMap(new ConcurrentHashMap<Call, Boolean>());//后台更新缓存的请求
+    private final Set<String> mRevalidateUrls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());//正在后台更新的url
+
+    /**
+     * @param cacheEnabled 没有设置缓存时只移除请求头
+     */
+    public CachePolicyInterceptor(boolean cacheEnabled) {
+        mCacheEnabled = cacheEnabled;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String policy = request.header(CachePolicy.HEADER);
+        if (policy == null) {
+            return chain.proceed(request);
+        }
+        if (!mCacheEnabled || !"GET".equals(request.method())) {
+            return chain.proceed(request.newBuilder().removeHeader(CachePolicy.HEADER).build());
+        }
+        if (mRevalidateCalls.contains(chain.call())) {
+            // 后台更新缓存的请求，直接请求网络
+            return chain.proceed(withCacheControl(request, CacheControl.FORCE_NETWORK));
+        }
+        if (NetWorkUtil.isOffline()) {
+            return chain.proceed(withCacheControl(request, ONLY_CACHE));
+        }
+        switch (policy.trim()) {
+            case CachePolicy.VALUE_NETWORK_FIRST:
+                return networkFirst(chain, request);
+            case CachePolicy.VALUE_CACHE_FIRST:
+                return chain.proceed(withCacheControl(request, MAX_STALE));
+            case CachePolicy.VALUE_STALE_WHILE_REVALIDATE:
+                Response response = chain.proceed(withCacheControl(request, MAX_STALE));
+                if (isStale(response)) {
+                    revalidate(chain.call(), request.url().toString());
+                }
+                return response;
+            default:
+                // VALUE_OFFLINE 以及无法识别的策略，有网络时按普通请求处理
+                return chain.proceed(request);
+        }
+    }
+
+    private Response networkFirst(Chain chain, Request request) throws IOException {
+        try {
+            return chain.proceed(withCacheControl(request, CacheControl.FORCE_NETWORK));
+        } catch (IOException e) {
+            Response cached = chain.proceed(withCacheControl(request, ONLY_CACHE));
+            if (cached.code() == 504) {
+                // 没有缓存
+                cached.close();
+                throw e;
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * 缓存已过期时OkHttp会加上 Warning: 110 的返回头
+     */
+    private boolean isStale(Response response) {
+        if (response.networkResponse() != null || response.cacheResponse() == null) {
+            return false;
+        }
+        for (String warning : response.headers("Warning")) {
+            if (warning.startsWith("110")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void revalidate(Call call, final String url) {
+        if (!mRevalidateUrls.add(url)) {
+            return;
+        }
+        final Call refresh = call.clone();
+        mRevalidateCalls.add(refresh);
+        refresh.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                finish();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // 读取完body才会写入缓存
+                try {
+                    response.body().source().readAll(Okio.blackhole());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    response.close();
+                    finish();
+                }
+            }
+
+            private void finish() {
+                mRevalidateCalls.remove(refresh);
+                mRevalidateUrls.remove(url);
+            }
+        });
+    }
+
+    /**
+     * 请求头保留 {@link CachePolicy#HEADER}，由 {@link CacheNetworkInterceptor} 在发送前移除
+     */
+    private static Request withCacheControl(Request request, CacheControl cacheControl) {
+        return request.newBuilder().cacheControl(cacheControl).build();
+    }
+}
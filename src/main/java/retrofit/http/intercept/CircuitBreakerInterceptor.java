@@ -0,0 +1,75 @@
+package retrofit.http.intercept;
+
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit.http.breaker.CircuitBreaker;
+import retrofit.http.breaker.CircuitBreakerConfig;
+import retrofit.http.breaker.CircuitBreakerRegistry;
+import retrofit.http.exception.CircuitOpenException;
+import retrofit.http.metrics.HttpMetrics;
+
+/**
+ * 按接口熔断的拦截器，熔断中直接抛出 {@link CircuitOpenException}，不再等待超时
+ * 网络异常和5xx算失败，只读缓存的返回和取消的请求不计入统计
+ * 只读缓存(only-if-cached)的请求不经过熔断，熔断时 NETWORK_FIRST 回退到缓存、离线时读取缓存都不受影响
+ */
+
+public class CircuitBreakerInterceptor implements Interceptor {
+    private final CircuitBreakerConfig mConfig;
+    private final CircuitBreakerRegistry mRegistry;
+
+    public CircuitBreakerInterceptor(CircuitBreakerConfig config) {
+        this(config, CircuitBreakerRegistry.getInstance());
+    }
+
+    public CircuitBreakerInterceptor(CircuitBreakerConfig config, CircuitBreakerRegistry registry) {
+        mConfig = config;
+        mRegistry = registry;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.cacheControl().onlyIfCached()) {
+            return chain.proceed(request);
+        }
+        CircuitBreaker breaker = mRegistry.get(HttpMetrics.route(request.url()), mConfig);
+        if (breaker == null) {
+            return chain.proceed(request);
+        }
+        CircuitBreaker.State permit = breaker.tryAcquire();
+        if (permit == null) {
+            throw new CircuitOpenException(breaker.getRoute(), breaker.getRemainingOpenMillis());
+        }
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (chain.call().isCanceled()) {
+                breaker.release(permit);
+            } else {
+                breaker.onResult(permit, elapsedMillis(start), true);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.release(permit);
+            throw e;
+        }
+        if (response.networkResponse() == null) {
+            // 只读缓存(比如离线时)的返回不代表服务器状态
+            breaker.release(permit);
+        } else {
+            breaker.onResult(permit, elapsedMillis(start), response.code() >= 500);
+        }
+        return response;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+}
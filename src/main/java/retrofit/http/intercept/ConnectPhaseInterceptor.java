@@ -0,0 +1,57 @@
+package retrofit.http.intercept;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import retrofit.http.exception.ConnectTimeoutException;
+
+/**
+ * 区分连接阶段的超时:请求没有到达 {@link #networkInterceptor()} 之前的 SocketTimeoutException
+ * 转为 {@link ConnectTimeoutException}，这时连接还没有建立，请求没有发出
+ * 网络拦截器只在连接建立之后执行，同一个Call的拦截器在同一个线程中同步执行，通过ThreadLocal传递状态，
+ * 重定向、重试中任何一次到达过网络拦截器都不再算作连接超时
+ * 作为最后一个内置的应用拦截器添加，在它之前添加的拦截器(比如 {@link AdaptiveTimeoutInterceptor})都能区分
+ */
+public class ConnectPhaseInterceptor implements Interceptor {
+    private final ThreadLocal<boolean[]> mConnected = new ThreadLocal<>();
+    private final Interceptor mNetworkInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            boolean[] connected = mConnected.get();
+            if (connected != null) {
+                connected[0] = true;
+            }
+            return chain.proceed(chain.request());
+        }
+    };
+
+    /**
+     * 需要同时通过 OkHttpClient.Builder.addNetworkInterceptor 添加
+     */
+    public Interceptor networkInterceptor() {
+        return mNetworkInterceptor;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        boolean[] previous = mConnected.get();
+        boolean[] connected = new boolean[1];
+        mConnected.set(connected);
+        try {
+            return chain.proceed(chain.request());
+        } catch (SocketTimeoutException e) {
+            if (!connected[0] && !(e instanceof ConnectTimeoutException)) {
+                throw new ConnectTimeoutException(e);
+            }
+            throw e;
+        } finally {
+            if (previous == null) {
+                mConnected.remove();
+            } else {
+                mConnected.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package retrofit.http.intercept;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit.http.retrofit.HttpCallContext;
+
+/**
+ * 关闭时结束请求上下文的ResponseBody，见 {@link HttpCallContext#release(HttpCallContext)}
+ * 默认的 close() 关闭的是 source()，所以在source上处理
+ */
+class ContextResponseBody extends ResponseBody {
+    private final ResponseBody mDelegate;
+    private final HttpCallContext mContext;
+    private BufferedSource mSource;
+
+    ContextResponseBody(ResponseBody delegate, HttpCallContext context) {
+        mDelegate = delegate;
+        mContext = context;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mDelegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return mDelegate.contentLength();
+    }
+
+    @Override
+    public BufferedSource source() {
+        if (mSource == null) {
+            mSource = Okio.buffer(new ForwardingSource(mDelegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    HttpCallContext.release(mContext);
+                    super.close();
+                }
+            });
+        }
+        return mSource;
+    }
+}
@@ -0,0 +1,37 @@
+package retrofit.http.intercept;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * 读取时通过 {@link JsonRewriteSource} 边读边替换的ResponseBody，不会把整个body读到内存
+ * 替换后长度会变化，所以 contentLength 返回 -1
+ */
+class JsonRewriteResponseBody extends ResponseBody {
+    private final ResponseBody mDelegate;
+    private BufferedSource mSource;
+
+    JsonRewriteResponseBody(ResponseBody delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mDelegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public BufferedSource source() {
+        if (mSource == null) {
+            mSource = Okio.buffer(new JsonRewriteSource(mDelegate.source()));
+        }
+        return mSource;
+    }
+}
@@ -0,0 +1,177 @@
+package retrofit.http.intercept;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Source;
+
+/**
+ * 边读边替换的json Source，替换规则和原来 {@link ResponseInterceptor} 里的 String.replace 一致:
+ * json中出现过 :"" 时，把所有的 "result":null 替换为 "result":{}，否则原样返回
+ * <p>
+ * 因为 :"" 可能出现在 "result":null 的后面，还没遇到 :"" 之前匹配到的 "result":null 会先按两种结果暂存，
+ * 两份暂存的数据合计超过 maxHoldBytes 仍然没有出现 :"" 时，按没有 :"" 处理，暂存的原数据直接输出，
+ * 之后的数据继续按同样的规则处理，内存不超过 maxHoldBytes；
+ * 只有 :"" 出现在 "result":null 之后超过 maxHoldBytes 的位置时，结果和原来不同(这个 "result":null 不替换)
+ */
+class JsonRewriteSource extends ForwardingSource {
+    static final long DEFAULT_MAX_HOLD_BYTES = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] EMPTY_STRING = ":\"\"".getBytes(UTF_8);
+    private static final byte[] RESULT_NULL = "\"result\":null".getBytes(UTF_8);
+    private static final byte[] RESULT_OBJECT = "\"result\":{}".getBytes(UTF_8);
+    private static final int[] EMPTY_STRING_FAIL = failure(EMPTY_STRING);
+    private static final int[] RESULT_NULL_FAIL = failure(RESULT_NULL);
+    private static final int CHUNK_SIZE = 8192;
+
+    private final long mMaxHoldBytes;
+    private final Buffer mSource = new Buffer();//从上游读到的数据
+    private final Buffer mOut = new Buffer();//已经确定的输出
+    private final byte[] mChunk = new byte[CHUNK_SIZE];
+    private Buffer mHeldNull;//暂存:保持 "result":null
+    private Buffer mHeldObject;//暂存:替换为 "result":{}
+    private int mEmptyMatched;
+    private int mResultMatched;
+    private boolean mTriggered;//是否已经出现过 :""
+    private boolean mExhausted;
+
+    JsonRewriteSource(Source delegate) {
+        this(delegate, DEFAULT_MAX_HOLD_BYTES);
+    }
+
+    JsonRewriteSource(Source delegate, long maxHoldBytes) {
+        super(delegate);
+        mMaxHoldBytes = maxHoldBytes;
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+        if (byteCount < 0) throw new IllegalArgumentException("byteCount < 0: " + byteCount);
+        while (mOut.size() == 0 && !mExhausted) {
+            long read = super.read(mSource, CHUNK_SIZE);
+            if (read == -1) {
+                finish();
+                mExhausted = true;
+                break;
+            }
+            while (mSource.size() > 0) {
+                int len = mSource.read(mChunk, 0, (int) Math.min(mSource.size(), CHUNK_SIZE));
+                for (int i = 0; i < len; i++) {
+                    process(mChunk[i]);
+                }
+            }
+        }
+        if (mOut.size() == 0) {
+            return -1;
+        }
+        return mOut.read(sink, Math.min(byteCount, mOut.size()));
+    }
+
+    private void process(byte b) {
+        if (!mTriggered) {
+            while (mEmptyMatched > 0 && b != EMPTY_STRING[mEmptyMatched]) {
+                mEmptyMatched = EMPTY_STRING_FAIL[mEmptyMatched - 1];
+            }
+            if (b == EMPTY_STRING[mEmptyMatched] && ++mEmptyMatched == EMPTY_STRING.length) {
+                mTriggered = true;
+                release(true);
+            }
+        }
+        while (mResultMatched > 0 && b != RESULT_NULL[mResultMatched]) {
+            // 匹配失败，把不可能再匹配的前缀输出
+            int fail = RESULT_NULL_FAIL[mResultMatched - 1];
+            emit(RESULT_NULL, 0, mResultMatched - fail);
+            mResultMatched = fail;
+        }
+        if (b == RESULT_NULL[mResultMatched]) {
+            if (++mResultMatched == RESULT_NULL.length) {
+                mResultMatched = 0;
+                onResultNull();
+            }
+        } else {
+            emitByte(b);
+        }
+    }
+
+    private void onResultNull() {
+        if (mTriggered) {
+            emit(RESULT_OBJECT, 0, RESULT_OBJECT.length);
+            return;
+        }
+        if (mHeldNull == null) {
+            mHeldNull = new Buffer();
+            mHeldObject = new Buffer();
+        }
+        mHeldNull.write(RESULT_NULL);
+        mHeldObject.write(RESULT_OBJECT);
+        checkHold();
+    }
+
+    private void emit(byte[] bytes, int offset, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (mHeldNull != null) {
+            mHeldNull.write(bytes, offset, count);
+            mHeldObject.write(bytes, offset, count);
+            checkHold();
+        } else {
+            mOut.write(bytes, offset, count);
+        }
+    }
+
+    private void emitByte(byte b) {
+        if (mHeldNull != null) {
+            mHeldNull.writeByte(b);
+            mHeldObject.writeByte(b);
+            checkHold();
+        } else {
+            mOut.writeByte(b);
+        }
+    }
+
+    private void checkHold() {
+        if (mHeldNull.size() + mHeldObject.size() > mMaxHoldBytes) {
+            // 超过暂存上限还没有出现 :""，按原数据输出
+            release(false);
+        }
+    }
+
+    /**
+     * 结束暂存
+     *
+     * @param replace true 输出替换后的数据，false 输出原数据
+     */
+    private void release(boolean replace) {
+        if (mHeldNull == null) {
+            return;
+        }
+        Buffer held = replace ? mHeldObject : mHeldNull;
+        mOut.write(held, held.size());
+        mHeldNull = null;
+        mHeldObject = null;
+    }
+
+    private void finish() {
+        emit(RESULT_NULL, 0, mResultMatched);
+        mResultMatched = 0;
+        release(mTriggered);
+    }
+
+    private static int[] failure(byte[] pattern) {
+        int[] fail = new int[pattern.length];
+        for (int i = 1, k = 0; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = fail[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            fail[i] = k;
+        }
+        return fail;
+    }
+}
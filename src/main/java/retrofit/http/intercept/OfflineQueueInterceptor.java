@@ -0,0 +1,73 @@
+package retrofit.http.intercept;
+
+
+import java.io.IOException;
+import java.util.UUID;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit.http.exception.RequestQueuedException;
+import retrofit.http.offline.OfflineRequestQueue;
+import retrofit.http.offline.QueuedRequest;
+
+/**
+ * 带有 {@link OfflineRequestQueue#QUEUE} 请求头的请求，没有网络或网络错误时放入离线队列，
+ * 抛出 {@link RequestQueuedException}，网络恢复后由 {@link OfflineRequestQueue} 重新发送
+ * 请求都会带上 {@link OfflineRequestQueue#HEADER_IDEMPOTENCY_KEY}，接口已经设置时使用设置的值
+ * 队列中的请求由 clientName 对应的OkHttpClient重新发送，每个OkHttpClient使用自己的拦截器
+ */
+
+public class OfflineQueueInterceptor implements Interceptor {
+    private final OfflineRequestQueue mQueue;
+    private final String mClientName;
+
+    public OfflineQueueInterceptor(OfflineRequestQueue queue) {
+        this(queue, null);
+    }
+
+    /**
+     * @param clientName 和 {@link OfflineRequestQueue#attach(String, OkHttpClient)} 的名称一致，默认实例为null
+     */
+    public OfflineQueueInterceptor(OfflineRequestQueue queue, String clientName) {
+        mQueue = queue;
+        mClientName = clientName;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(OfflineRequestQueue.HEADER) == null) {
+            return chain.proceed(request);
+        }
+        String key = request.header(OfflineRequestQueue.HEADER_IDEMPOTENCY_KEY);
+        if (key == null) {
+            key = UUID.randomUUID().toString();
+        }
+        request = request.newBuilder()
+            .removeHeader(OfflineRequestQueue.HEADER)
+            .header(OfflineRequestQueue.HEADER_IDEMPOTENCY_KEY, key)
+            .build();
+        if (!mQueue.isConnected() && mQueue.enqueue(request, key, mClientName) != null) {
+            throw new RequestQueuedException(key, null);
+        }
+        try {
+            return chain.proceed(request);
+        } catch (IOException e) {
+            if (chain.call().isCanceled()) {
+                throw e;
+            }
+            QueuedRequest queued;
+            try {
+                queued = mQueue.enqueue(request, key, mClientName);
+            } catch (IOException queueError) {
+                throw e;
+            }
+            if (queued == null) {
+                throw e;
+            }
+            throw new RequestQueuedException(key, e);
+        }
+    }
+}
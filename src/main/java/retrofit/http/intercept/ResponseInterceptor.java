@@ -1,52 +1,139 @@
 package retrofit.http.intercept;
 
-import android.util.Log;
-
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import retrofit.http.retrofit.HttpCallContext;
 
 /**
  * 结果拦截器,这个类的执行时间是返回结果返回的时候,返回一个json的String,对里面一些特殊字符做处理
  * 主要用来处理一些后台上会出现的bug,比如下面声明的这三种情况下统一替换为:null
+ * UTF-8 编码的返回通过 {@link JsonRewriteResponseBody} 边读边替换，不再把整个body读成String
+ * 以下情况直接返回原始body，不做处理，下载等大文件可以保持流式读取:
+ * 1.返回的不是json或文本，比如图片、apk等二进制文件
+ * 2.返回的长度超过 maxRewriteLength
+ * 3.请求头带有 {@link #HEADER_SKIP_REWRITE}，比如 @Headers(ResponseInterceptor.HEADER_SKIP_REWRITE + ": true")
+ * 当前请求的url等信息记录在 {@link HttpCallContext}，解析返回结果时通过 {@link HttpCallContext#current()} 获取，
+ * 返回的body关闭时结束，不经过Gson解析的返回(scalars、ResponseBody、后台刷新缓存)不会留在线程上
  * Created by aojiaoqiang on 2018/1/31.
  */
 
 public class ResponseInterceptor implements Interceptor {
-    public static String url="";
+    /**
+     * 不处理返回结果的请求头，只在本地使用，不会发送到服务器
+     */
+    public static final String HEADER_SKIP_REWRITE = "Skip-Response-Rewrite";
+    public static final long DEFAULT_MAX_REWRITE_LENGTH = 10 * 1024 * 1024;//默认超过10M不处理
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final long maxRewriteLength;
 
     private String emptyString = ":\"\"";
     private String emptyObject = ":{}";
     private String emptyArray = ":[]";
     private String newChars = ":null";
 
+    public ResponseInterceptor() {
+        this(DEFAULT_MAX_REWRITE_LENGTH);
+    }
+
+    /**
+     * @param maxRewriteLength 返回长度超过这个值时不做处理，小于等于0表示不限制
+     */
+    public ResponseInterceptor(long maxRewriteLength) {
+        this.maxRewriteLength = maxRewriteLength;
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
 
         Request request = chain.request();
-        url=chain.request().url().toString();
-        Log.w("数据·url",""+chain.request().url());
-        Response response = chain.proceed(request);
+        HttpCallContext context = HttpCallContext.begin(request);
+        boolean skip = request.header(HEADER_SKIP_REWRITE) != null;
+        Request.Builder builder = request.newBuilder().tag(HttpCallContext.class, context);
+        if (skip) {
+            builder.removeHeader(HEADER_SKIP_REWRITE);
+        }
+        Response response;
+        try {
+            response = chain.proceed(builder.build());
+        } catch (IOException | RuntimeException e) {
+            HttpCallContext.end(context);
+            throw e;
+        }
+        context.onResponse(response);
+        if (!willConvert(response)) {
+            // Retrofit 不会解析这个返回，上下文到这里结束
+            HttpCallContext.end(context);
+            return rewrite(response, skip);
+        }
+        Response rewritten;
+        try {
+            rewritten = rewrite(response, skip);
+        } catch (IOException | RuntimeException e) {
+            HttpCallContext.end(context);
+            throw e;
+        }
+        return rewritten.newBuilder().body(new ContextResponseBody(rewritten.body(), context)).build();
+    }
+
+    private Response rewrite(Response response, boolean skip) throws IOException {
         ResponseBody responseBody = response.body();
-        if (responseBody != null) {
-            String json = responseBody.string();
+        if (responseBody != null && !skip && shouldRewrite(responseBody)) {
             MediaType contentType = responseBody.contentType();
-            if (!json.contains(emptyString)) {
-                ResponseBody body = ResponseBody.create(contentType, json);
-                return response.newBuilder().body(body).build();
-            } else {
-                String replace = json.replace(emptyString, newChars);/*
-                String replace1 = replace.replace(emptyObject, newChars);
-                String replace2 = replace1.replace(emptyArray, newChars);*/
-                String replace2 = json.replace("\"result\":null","\"result\":{}");
-                ResponseBody body = ResponseBody.create(contentType, replace2);
-                return response.newBuilder().body(body).build();
+            Charset charset = contentType != null ? contentType.charset(UTF_8) : UTF_8;
+            if (UTF_8.equals(charset)) {
+                // 替换的都是ASCII字符，UTF-8 下可以直接按字节替换
+                return response.newBuilder().body(new JsonRewriteResponseBody(responseBody)).build();
             }
+            return rewriteString(response, responseBody, contentType);
         }
         return response;
     }
+
+    /**
+     * 和 Retrofit 的处理一致:只有 2xx 并且不是 204、205 的返回会交给 Converter 解析
+     */
+    private static boolean willConvert(Response response) {
+        int code = response.code();
+        return response.body() != null && response.isSuccessful() && code != 204 && code != 205;
+    }
+
+    /**
+     * 只处理json和文本，并且长度没有超过限制的返回
+     */
+    private boolean shouldRewrite(ResponseBody responseBody) {
+        if (maxRewriteLength > 0 && responseBody.contentLength() > maxRewriteLength) {
+            return false;
+        }
+        MediaType contentType = responseBody.contentType();
+        if (contentType == null) {
+            return true;
+        }
+        String subtype = contentType.subtype().toLowerCase();
+        return "text".equalsIgnoreCase(contentType.type()) || subtype.contains("json");
+    }
+
+    /**
+     * 其他编码的返回按原来的方式读成String再替换
+     */
+    private Response rewriteString(Response response, ResponseBody responseBody, MediaType contentType) throws IOException {
+        String json = responseBody.string();
+        if (!json.contains(emptyString)) {
+            ResponseBody body = ResponseBody.create(contentType, json);
+            return response.newBuilder().body(body).build();
+        } else {
+            String replace = json.replace(emptyString, newChars);/*
+            String replace1 = replace.replace(emptyObject, newChars);
+            String replace2 = replace1.replace(emptyArray, newChars);*/
+            String replace2 = json.replace("\"result\":null","\"result\":{}");
+            ResponseBody body = ResponseBody.create(contentType, replace2);
+            return response.newBuilder().body(body).build();
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package retrofit.http.intercept;
+
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import retrofit.http.retrofit.HttpConfig;
+
+/**
+ * 按接口路径前缀设置超时时间的拦截器，配置见 {@link HttpConfig.Builder#routeTimeout(String, HttpConfig.RouteTimeout)}
+ */
+
+public class RouteTimeoutInterceptor implements Interceptor {
+    private final Map<String, HttpConfig.RouteTimeout> mRouteTimeouts;
+
+    public RouteTimeoutInterceptor(Map<String, HttpConfig.RouteTimeout> routeTimeouts) {
+        mRouteTimeouts = routeTimeouts;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        HttpConfig.RouteTimeout timeout = find(chain.request().url().encodedPath());
+        if (timeout == null) {
+            return chain.proceed(chain.request());
+        }
+        Chain timeoutChain = chain;
+        if (timeout.getConnectTimeoutMillis() > 0) {
+            timeoutChain = timeoutChain.withConnectTimeout((int) timeout.getConnectTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (timeout.getReadTimeoutMillis() > 0) {
+            timeoutChain = timeoutChain.withReadTimeout((int) timeout.getReadTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (timeout.getWriteTimeoutMillis() > 0) {
+            timeoutChain = timeoutChain.withWriteTimeout((int) timeout.getWriteTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        return timeoutChain.proceed(chain.request());
+    }
+
+    /**
+     * 匹配最长的路径前缀
+     */
+    private HttpConfig.RouteTimeout find(String path) {
+        HttpConfig.RouteTimeout found = null;
+        int length = -1;
+        for (Map.Entry<String, HttpConfig.RouteTimeout> entry : mRouteTimeouts.entrySet()) {
+            String prefix = entry.getKey();
+            if (path.startsWith(prefix) && prefix.length() > length) {
+                found = entry.getValue();
+                length = prefix.length();
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,62 @@
+package retrofit.http.metrics;
+
+/**
+ * @class describe {@link LatencyHistogram} 某一时刻的快照，不会再变化
+ */
+public final class HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long total;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long count, long total, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.total = total;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * @param percentile 0~100，比如 99 表示p99
+     * @return 没有数据时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        if (target < 1) {
+            target = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(LatencyHistogram.highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + count +
+            ", p50=" + getValueAtPercentile(50) +
+            ", p90=" + getValueAtPercentile(90) +
+            ", p99=" + getValueAtPercentile(99) +
+            ", max=" + max +
+            '}';
+    }
+}
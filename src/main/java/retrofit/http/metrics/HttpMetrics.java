@@ -0,0 +1,116 @@
+package retrofit.http.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+
+/**
+ * @class describe 网络请求统计，作为 EventListener.Factory 设置到 OkHttpClient 上
+ * 按接口(host + path，path中的数字id统一替换为*)分别统计 DNS、连接、TLS、首字节、读取body、解析 各阶段耗时
+ * 通过 {@link #snapshot()} 获取统计结果
+ */
+public class HttpMetrics implements EventListener.Factory {
+    private static final int MAX_ROUTES = 256;//最多统计的接口数量，超出后统一记录到 OTHER_ROUTE
+    private static final String OTHER_ROUTE = "other";
+
+    private static volatile HttpMetrics mInstance;
+    private final ConcurrentHashMap<String, RouteMetrics> mRoutes = new ConcurrentHashMap<>();
+
+    public static HttpMetrics getInstance() {
+        if (mInstance == null) {
+            synchronized (HttpMetrics.class) {
+                if (mInstance == null) {
+                    mInstance = new HttpMetrics();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new MetricsEventListener(this, route(call.request().url()));
+    }
+
+    /**
+     * 请求对应的统计key
+     */
+    public static String route(HttpUrl url) {
+        StringBuilder sb = new StringBuilder(url.host());
+        List<String> segments = url.pathSegments();
+        for (String segment : segments) {
+            sb.append('/');
+            sb.append(isId(segment) ? "*" : segment);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isId(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 记录某个阶段的耗时
+     *
+     * @param nanos 纳秒，内部按微秒统计
+     */
+    public void record(String route, HttpPhase phase, long nanos) {
+        getRoute(route).record(phase, nanos / 1000);
+    }
+
+    void recordFailure(String route) {
+        getRoute(route).recordFailure();
+    }
+
+    void recordBytes(String route, long bytes) {
+        getRoute(route).recordBytes(bytes);
+    }
+
+    /**
+     * 获取接口的统计数据
+     */
+    public RouteMetrics getRoute(String route) {
+        RouteMetrics metrics = mRoutes.get(route);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (mRoutes.size() >= MAX_ROUTES && !OTHER_ROUTE.equals(route)) {
+            return getRoute(OTHER_ROUTE);
+        }
+        metrics = new RouteMetrics(route);
+        RouteMetrics old = mRoutes.putIfAbsent(route, metrics);
+        return old != null ? old : metrics;
+    }
+
+    /**
+     * 所有接口的统计快照
+     */
+    public Map<String, RouteMetrics.Snapshot> snapshot() {
+        Map<String, RouteMetrics.Snapshot> snapshot = new HashMap<>();
+        for (RouteMetrics metrics : mRoutes.values()) {
+            snapshot.put(metrics.getRoute(), metrics.snapshot());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * 清空统计数据
+     */
+    public void reset() {
+        mRoutes.clear();
+    }
+}
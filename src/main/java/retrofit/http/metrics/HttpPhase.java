@@ -0,0 +1,35 @@
+package retrofit.http.metrics;
+
+/**
+ * @class describe 一次请求中统计耗时的各个阶段
+ */
+public enum HttpPhase {
+    /**
+     * 从开始到结束的总耗时
+     */
+    CALL,
+    /**
+     * DNS解析
+     */
+    DNS,
+    /**
+     * 建立连接(包含TLS握手)
+     */
+    CONNECT,
+    /**
+     * TLS握手
+     */
+    TLS,
+    /**
+     * 从发送请求头到读完返回头(首字节)
+     */
+    TTFB,
+    /**
+     * 读取返回body
+     */
+    BODY,
+    /**
+     * Converter解析json
+     */
+    CONVERT
+}
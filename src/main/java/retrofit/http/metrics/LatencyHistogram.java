@@ -0,0 +1,88 @@
+package retrofit.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @class describe 无锁的耗时直方图，按2的幂分段、每段16个子区间(误差约6%)，记录时不分配对象
+ * 数值单位由调用方决定，{@link HttpMetrics} 中统一使用微秒
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_MSB = 40;//超过 2^41 的值按最大值统计
+    static final int BUCKET_COUNT = (MAX_MSB - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * 记录一个值，小于0时忽略
+     */
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        long max;
+        while (value > (max = maxValue.get())) {
+            if (maxValue.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new HistogramSnapshot(copy, count, totalValue.get(), maxValue.get());
+    }
+
+    /**
+     * 清空，用于按周期上报
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        if (msb > MAX_MSB) {
+            return BUCKET_COUNT - 1;
+        }
+        int magnitude = msb - SUB_BITS;
+        return magnitude * SUB_COUNT + (int) (value >>> magnitude);
+    }
+
+    /**
+     * 区间内的最大值
+     */
+    static long highestValueOf(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int magnitude = index / SUB_COUNT - 1;
+        long sub = index - (long) magnitude * SUB_COUNT;
+        return ((sub + 1) << magnitude) - 1;
+    }
+}
@@ -0,0 +1,113 @@
+package retrofit.http.metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * @class describe 单次请求的耗时统计，每个Call一个实例，由 {@link HttpMetrics} 创建
+ * OkHttp 对同一个Call的回调是按顺序的，这里不需要同步
+ */
+class MetricsEventListener extends EventListener {
+    private final HttpMetrics mMetrics;
+    private final String mRoute;
+    private long mCallStart;
+    private long mDnsStart;
+    private long mConnectStart;
+    private long mSecureConnectStart;
+    private long mRequestStart;
+    private long mBodyStart;
+
+    MetricsEventListener(HttpMetrics metrics, String route) {
+        mMetrics = metrics;
+        mRoute = route;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        mCallStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        mDnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        record(HttpPhase.DNS, mDnsStart);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        mConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        mSecureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        record(HttpPhase.TLS, mSecureConnectStart);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        record(HttpPhase.CONNECT, mConnectStart);
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+        record(HttpPhase.CONNECT, mConnectStart);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        mRequestStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        // responseHeadersStart 在开始读返回头之前回调，这时还没有收到数据
+        record(HttpPhase.TTFB, mRequestStart);
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        mBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        record(HttpPhase.BODY, mBodyStart);
+        mMetrics.recordBytes(mRoute, byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        record(HttpPhase.CALL, mCallStart);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        record(HttpPhase.CALL, mCallStart);
+        mMetrics.recordFailure(mRoute);
+    }
+
+    private void record(HttpPhase phase, long start) {
+        if (start == 0) {
+            return;
+        }
+        mMetrics.record(mRoute, phase, System.nanoTime() - start);
+    }
+}
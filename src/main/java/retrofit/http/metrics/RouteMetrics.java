@@ -0,0 +1,95 @@
+package retrofit.http.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class describe 单个接口(host + path)的统计数据
+ */
+public final class RouteMetrics {
+    private final String route;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[HttpPhase.values().length];
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+
+    RouteMetrics(String route) {
+        this.route = route;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(HttpPhase phase, long micros) {
+        histograms[phase.ordinal()].record(micros);
+    }
+
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    void recordBytes(long bytes) {
+        if (bytes > 0) {
+            responseBytes.addAndGet(bytes);
+        }
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public LatencyHistogram getHistogram(HttpPhase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    public Snapshot snapshot() {
+        Map<HttpPhase, HistogramSnapshot> phases = new EnumMap<>(HttpPhase.class);
+        for (HttpPhase phase : HttpPhase.values()) {
+            phases.put(phase, histograms[phase.ordinal()].snapshot());
+        }
+        return new Snapshot(route, phases, failures.get(), responseBytes.get());
+    }
+
+    /**
+     * 单个接口的统计快照，耗时单位为微秒
+     */
+    public static final class Snapshot {
+        private final String route;
+        private final Map<HttpPhase, HistogramSnapshot> phases;
+        private final long failures;
+        private final long responseBytes;
+
+        Snapshot(String route, Map<HttpPhase, HistogramSnapshot> phases, long failures, long responseBytes) {
+            this.route = route;
+            this.phases = phases;
+            this.failures = failures;
+            this.responseBytes = responseBytes;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public HistogramSnapshot get(HttpPhase phase) {
+            return phases.get(phase);
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getResponseBytes() {
+            return responseBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "RouteMetrics{" +
+                "route='" + route + '\'' +
+                ", failures=" + failures +
+                ", responseBytes=" + responseBytes +
+                ", phases=" + phases +
+                '}';
+        }
+    }
+}
@@ -2,19 +2,29 @@ package retrofit.http.observer;
 
 import android.util.Log;
 
+import androidx.lifecycle.Lifecycle;
+
 import com.google.gson.Gson;
 import com.trello.rxlifecycle2.LifecycleProvider;
 import com.trello.rxlifecycle2.android.ActivityEvent;
 import com.trello.rxlifecycle2.android.FragmentEvent;
 
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.schedulers.Schedulers;
+import retrofit.http.cache.RequestKey;
+import retrofit.http.cache.ResultCache;
 import retrofit.http.function.HttpResultFunction;
 import retrofit.http.function.ServerResultFunction;
 import retrofit.http.retrofit.IHttpResponse;
+import retrofit.http.retry.RetryTransformer;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
 
 /**
  * 适用Retrofit网络请求Observable(被监听者)
@@ -34,13 +44,116 @@ public class HttpRxObservable {
         // showLog(request);
         Observable observable = apiObservable
                 .map(new ServerResultFunction())
+                .compose(subscribeOn(RequestPriority.NORMAL))
                 .onErrorResumeNext(new HttpResultFunction<>())
-                .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread());
         return observable;
     }
 
 
+    /**
+     * 获取被监听者
+     * 备注:网络请求Observable构建
+     * data:网络请求参数
+     * <h1>补充说明</h1>
+     * 传入transformer处理解析后的结果,比如 {@link ResultCache#transformer(RequestKey, long, TimeUnit)}
+     * 无管理生命周期,容易导致内存溢出
+     *
+     * 
+     */
+    public static <T> Observable getObservable(Observable<? extends IHttpResponse<T>> apiObservable, ObservableTransformer<T, T> transformer) {
+        return getObservable(apiObservable, transformer, RequestPriority.NORMAL);
+    }
+
+    /**
+     * 获取被监听者
+     * 备注:网络请求Observable构建
+     * data:网络请求参数
+     * <h1>补充说明</h1>
+     * 按优先级执行,线程都在忙时 CRITICAL 的请求先执行,PREFETCH 按网络类型限制同时进行的数量,见 {@link RequestScheduler}
+     * 无管理生命周期,容易导致内存溢出
+     *
+     * 
+     */
+    public static <T> Observable getObservable(Observable<? extends IHttpResponse<T>> apiObservable, RequestPriority priority) {
+        Observable observable = apiObservable
+                .map(new ServerResultFunction())
+                .compose(subscribeOn(priority))
+                .onErrorResumeNext(new HttpResultFunction<>())
+                .observeOn(AndroidSchedulers.mainThread());
+        return observable;
+    }
+
+    /**
+     * 获取被监听者
+     * 备注:网络请求Observable构建
+     * data:网络请求参数
+     * <h1>补充说明</h1>
+     * 传入transformer处理解析后的结果,并按优先级执行
+     * 无管理生命周期,容易导致内存溢出
+     *
+     * 
+     */
+    public static <T> Observable getObservable(Observable<? extends IHttpResponse<T>> apiObservable, ObservableTransformer<T, T> transformer, RequestPriority priority) {
+        Observable observable = apiObservable
+                .map(new ServerResultFunction())
+                .compose(transformer)
+                .compose(subscribeOn(priority))
+                .onErrorResumeNext(new HttpResultFunction<>())
+                .observeOn(AndroidSchedulers.mainThread());
+        return observable;
+    }
+
+    /**
+     * 获取被监听者
+     * 备注:网络请求Observable构建
+     * data:网络请求参数
+     * <h1>补充说明</h1>
+     * 结果在内存中缓存ttl时长,有效期内相同key的请求直接返回缓存,不再请求网络和解析json
+     * 缓存命中时不经过 {@link RequestScheduler},不会因为排队的请求太多被拒绝
+     *
+     * 
+     */
+    public static <T> Observable getObservable(final Observable<? extends IHttpResponse<T>> apiObservable, final RequestKey key, final long ttl, final TimeUnit unit) {
+        return Observable.defer(new Callable<ObservableSource<Object>>() {
+            @Override
+            public ObservableSource<Object> call() throws Exception {
+                Object cached = ResultCache.getInstance().get(key);
+                if (cached != null) {
+                    return Observable.just(cached).observeOn(AndroidSchedulers.mainThread());
+                }
+                return getObservable(apiObservable, ResultCache.getInstance().<T>transformer(key, ttl, unit));
+            }
+        });
+    }
+
+    /**
+     * 获取被监听者
+     * 备注:网络请求Observable构建
+     * data:网络请求参数
+     * <h1>补充说明</h1>
+     * 相同key并且同时进行的请求只请求一次网络,结果分发给所有订阅者,见 {@link RequestCoalescer}
+     *
+     * 
+     */
+    public static <T> Observable getObservable(Observable<? extends IHttpResponse<T>> apiObservable, RequestKey key) {
+        return getObservable(apiObservable, RequestCoalescer.getInstance().<T>transformer(key));
+    }
+
+    /**
+     * 获取被监听者
+     * 备注:网络请求Observable构建
+     * data:网络请求参数
+     * <h1>补充说明</h1>
+     * 连接超时、连接失败时按指数退避自动重试,受全局重试预算限制,见 {@link RetryTransformer}
+     * 读写超时不会重试,幂等的接口用 getObservable(apiObservable, new RetryTransformer.Builder().idempotent(true).build())
+     *
+     * 
+     */
+    public static <T> Observable getRetryObservable(Observable<? extends IHttpResponse<T>> apiObservable) {
+        return getObservable(apiObservable, RetryTransformer.<T>create());
+    }
+
     /**
      * 获取被监听者
      * 备注:网络请求Observable构建
@@ -60,8 +173,8 @@ public class HttpRxObservable {
             observable = apiObservable
                     .map(new ServerResultFunction())
                     .compose(lifecycle.bindToLifecycle())//需要在这个位置添加
+                    .compose(subscribeOn(RequestPriority.NORMAL))
                     .onErrorResumeNext(new HttpResultFunction<>())
-                    .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread());
         } else {
             observable = getObservable(apiObservable);
@@ -87,8 +200,8 @@ public class HttpRxObservable {
             observable = apiObservable
                     .map(new ServerResultFunction())
                     .compose(lifecycle.bindUntilEvent(event))//需要在这个位置添加
+                    .compose(subscribeOn(RequestPriority.NORMAL))
                     .onErrorResumeNext(new HttpResultFunction<>())
-                    .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread());
         } else {
             observable = getObservable(apiObservable);
@@ -115,8 +228,8 @@ public class HttpRxObservable {
             observable = apiObservable
                     .map(new ServerResultFunction())
                     .compose(lifecycle.bindUntilEvent(event))//需要在这个位置添加
+                    .compose(subscribeOn(RequestPriority.NORMAL))
                     .onErrorResumeNext(new HttpResultFunction<>())
-                    .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread());
         } else {
             observable = getObservable(apiObservable);
@@ -125,6 +238,48 @@ public class HttpRxObservable {
     }
 
 
+    /**
+     * 获取被监听者
+     * 备注:网络请求Observable构建
+     * data:网络请求参数
+     * <h1>补充说明</h1>
+     * 传入androidx的Lifecycle(getLifecycle())自动管理生命周期,避免内存溢出
+     * 备注:不需要继承RxActivity/RxFragment,见 {@link LifecycleOwnerTransformer}
+     *
+     * 
+     */
+    public static <T> Observable getObservable(Observable<? extends IHttpResponse<T>> apiObservable, Lifecycle lifecycle) {
+        if (lifecycle == null) {
+            return getObservable(apiObservable);
+        }
+        return getObservable(apiObservable, LifecycleOwnerTransformer.<T>bind(lifecycle));
+    }
+
+    /**
+     * 获取被监听者
+     * 备注:网络请求Observable构建
+     * data:网络请求参数
+     * <h1>补充说明</h1>
+     * 传入androidx的Lifecycle(getLifecycle())手动管理生命周期,避免内存溢出
+     * 备注:不需要继承RxActivity/RxFragment,eg:Lifecycle.Event.ON_STOP
+     *
+     * 
+     */
+    public static <T> Observable getObservable(Observable<? extends IHttpResponse<T>> apiObservable, Lifecycle lifecycle, Lifecycle.Event event) {
+        if (lifecycle == null) {
+            return getObservable(apiObservable);
+        }
+        return getObservable(apiObservable, LifecycleOwnerTransformer.<T>bindUntilEvent(lifecycle, event));
+    }
+
+
+    /**
+     * 请求执行的线程,代替 subscribeOn(Schedulers.io()),排队的请求太多时返回错误,见 {@link RequestScheduler}
+     */
+    private static <T> ObservableTransformer<T, T> subscribeOn(RequestPriority priority) {
+        return RequestScheduler.getInstance().subscribeOn(priority);
+    }
+
     /**
      * 打印log
      *
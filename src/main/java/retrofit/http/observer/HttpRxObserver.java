@@ -24,6 +24,9 @@ import retrofit.http.retrofit.RxActionManagerImpl;
 public abstract class HttpRxObserver<T> implements Observer<T>, HttpRequestListener {
 
     private String mTag;//请求标识
+    private Object mScope;//请求分组,比如页面
+    private Disposable mDisposable;
+    private long mHandle;//在RxActionManagerImpl中的handle,没有tag和scope时为0
 
     public HttpRxObserver() {
     }
@@ -32,9 +35,20 @@ public abstract class HttpRxObserver<T> implements Observer<T>, HttpRequestListe
         this.mTag = tag;
     }
 
+    /**
+     * @param tag   可以为空,这时只按scope分组
+     * @param scope 请求分组,通过 RxActionManagerImpl.getInstance().cancelScope(scope) 取消整组请求
+     */
+    public HttpRxObserver(String tag, Object scope) {
+        this.mTag = tag;
+        this.mScope = scope;
+    }
+
     @Override
     public void onError(Throwable e) {
-        RxActionManagerImpl.getInstance().remove(mTag);
+        if (mHandle != 0) {
+            RxActionManagerImpl.getInstance().removeHandle(mHandle);
+        }
         // 这里做错误处理，如果是api错误 就是自己和服务器定义好的错误就直接返回，否者就返回统一的错误码
         if (e instanceof ApiException) {
             onError((ApiException) e);
@@ -43,30 +57,43 @@ public abstract class HttpRxObserver<T> implements Observer<T>, HttpRequestListe
         }
     }
 
+    /**
+     * 绑定生命周期时(takeUntil)请求被取消后只会收到onComplete，这里同样移除请求
+     */
     @Override
     public void onComplete() {
+        if (mHandle != 0) {
+            RxActionManagerImpl.getInstance().removeHandle(mHandle);
+        }
     }
 
     @Override
     public void onNext(@NonNull T t) {
-        if (!TextUtils.isEmpty(mTag)) {
-            RxActionManagerImpl.getInstance().remove(mTag);
+        if (mHandle != 0) {
+            RxActionManagerImpl.getInstance().removeHandle(mHandle);
         }
         onSuccess(t);
     }
 
     @Override
     public void onSubscribe(@NonNull Disposable d) {
-        if (!TextUtils.isEmpty(mTag)) {
-            RxActionManagerImpl.getInstance().add(mTag, d);
+        mDisposable = d;
+        boolean hasTag = !TextUtils.isEmpty(mTag);
+        if (hasTag || mScope != null) {
+            mHandle = RxActionManagerImpl.getInstance().addHandle(hasTag ? mTag : null, mScope, d);
         }
         onStart(d);
     }
 
+    /**
+     * 只取消这个请求,取消tag下的所有请求用 RxActionManagerImpl.getInstance().cancel(tag)
+     */
     @Override
     public void cancel() {
-        if (!TextUtils.isEmpty(mTag)) {
-            RxActionManagerImpl.getInstance().cancel(mTag);
+        if (mHandle != 0) {
+            RxActionManagerImpl.getInstance().cancelHandle(mHandle);
+        } else if (mDisposable != null && !mDisposable.isDisposed()) {
+            mDisposable.dispose();
         }
     }
 
@@ -74,10 +101,7 @@ public abstract class HttpRxObserver<T> implements Observer<T>, HttpRequestListe
      * 是否已经处理
      */
     public boolean isDisposed() {
-        if (TextUtils.isEmpty(mTag)) {
-            return true;
-        }
-        return RxActionManagerImpl.getInstance().isDisposed(mTag);
+        return mDisposable == null || mDisposable.isDisposed();
     }
 
     protected abstract void onStart(Disposable d);
@@ -0,0 +1,146 @@
+package retrofit.http.observer;
+
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.Callable;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Action;
+
+/**
+ * 绑定androidx的Lifecycle，不需要继承RxActivity/RxFragment，普通的AppCompatActivity、Fragment都可以使用
+ * 到达指定的生命周期事件时取消上游(网络请求会被取消)，下游收到onComplete
+ * 没有指定事件时和trello的bindToLifecycle一致:onCreate->onDestroy, onStart->onStop, onResume->onPause
+ * 监听的注册和移除都在主线程，已经在主线程时直接注册、移除，不再切换线程
+ */
+public class LifecycleOwnerTransformer<T> implements ObservableTransformer<T, T>, FlowableTransformer<T, T> {
+    private final Lifecycle mLifecycle;
+    private final Lifecycle.Event mEvent;//为null时按订阅时的状态决定
+
+    private LifecycleOwnerTransformer(Lifecycle lifecycle, Lifecycle.Event event) {
+        mLifecycle = lifecycle;
+        mEvent = event;
+    }
+
+    public static <T> LifecycleOwnerTransformer<T> bind(Lifecycle lifecycle) {
+        return new LifecycleOwnerTransformer<T>(lifecycle, null);
+    }
+
+    public static <T> LifecycleOwnerTransformer<T> bind(LifecycleOwner owner) {
+        return bind(owner.getLifecycle());
+    }
+
+    /**
+     * @param event 取消的事件，比如 Lifecycle.Event.ON_STOP，无论指定什么事件，ON_DESTROY 时都会取消
+     */
+    public static <T> LifecycleOwnerTransformer<T> bindUntilEvent(Lifecycle lifecycle, Lifecycle.Event event) {
+        return new LifecycleOwnerTransformer<T>(lifecycle, event);
+    }
+
+    public static <T> LifecycleOwnerTransformer<T> bindUntilEvent(LifecycleOwner owner, Lifecycle.Event event) {
+        return bindUntilEvent(owner.getLifecycle(), event);
+    }
+
+    @Override
+    public ObservableSource<T> apply(Observable<T> upstream) {
+        return upstream.takeUntil(untilEvent());
+    }
+
+    @Override
+    public Publisher<T> apply(Flowable<T> upstream) {
+        return upstream.takeUntil(untilEvent().toFlowable(BackpressureStrategy.LATEST));
+    }
+
+    private Observable<Lifecycle.Event> untilEvent() {
+        final Observable<Lifecycle.Event> events = Observable.create(new ObservableOnSubscribe<Lifecycle.Event>() {
+            @Override
+            public void subscribe(ObservableEmitter<Lifecycle.Event> emitter) throws Exception {
+                Lifecycle.State state = mLifecycle.getCurrentState();
+                if (state == Lifecycle.State.DESTROYED) {
+                    emitter.onNext(Lifecycle.Event.ON_DESTROY);
+                    return;
+                }
+                Lifecycle.Event event = mEvent != null ? mEvent : correspondingEvent(state);
+                final EventObserver observer = new EventObserver(emitter, event);
+                mLifecycle.addObserver(observer);
+                // addObserver会同步补发之前的事件，这些事件不处理
+                observer.attached = true;
+                emitter.setDisposable(Disposables.fromAction(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        removeObserver(observer);
+                    }
+                }));
+            }
+        });
+        return Observable.defer(new Callable<ObservableSource<Lifecycle.Event>>() {
+            @Override
+            public ObservableSource<Lifecycle.Event> call() throws Exception {
+                return isMainThread() ? events : events.subscribeOn(AndroidSchedulers.mainThread());
+            }
+        })
+            .take(1);
+    }
+
+    private void removeObserver(final EventObserver observer) {
+        if (isMainThread()) {
+            mLifecycle.removeObserver(observer);
+            return;
+        }
+        AndroidSchedulers.mainThread().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                mLifecycle.removeObserver(observer);
+            }
+        });
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static Lifecycle.Event correspondingEvent(Lifecycle.State state) {
+        switch (state) {
+            case RESUMED:
+                return Lifecycle.Event.ON_PAUSE;
+            case STARTED:
+                return Lifecycle.Event.ON_STOP;
+            default:
+                return Lifecycle.Event.ON_DESTROY;
+        }
+    }
+
+    static final class EventObserver implements LifecycleObserver {
+        private final ObservableEmitter<Lifecycle.Event> emitter;
+        private final Lifecycle.Event event;
+        boolean attached;
+
+        EventObserver(ObservableEmitter<Lifecycle.Event> emitter, Lifecycle.Event event) {
+            this.emitter = emitter;
+            this.event = event;
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_ANY)
+        void onEvent(LifecycleOwner owner, Lifecycle.Event current) {
+            if (attached && (current == event || current == Lifecycle.Event.ON_DESTROY)) {
+                emitter.onNext(current);
+            }
+        }
+    }
+}
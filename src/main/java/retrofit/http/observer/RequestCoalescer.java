@@ -0,0 +1,85 @@
+package retrofit.http.observer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import retrofit.http.cache.RequestKey;
+
+/**
+ * 合并同时进行的相同请求:相同 {@link RequestKey} 的请求只请求一次网络、解析一次，结果分发给所有订阅者
+ * 取消按引用计数处理:单个订阅者取消(比如 RxActionManagerImpl.cancel(tag))只取消自己的订阅，
+ * 所有订阅者都取消后才会取消网络请求
+ */
+public class RequestCoalescer {
+
+    private static volatile RequestCoalescer mInstance;
+    private final ConcurrentHashMap<RequestKey, Observable<?>> mInFlight = new ConcurrentHashMap<>();//正在进行的请求
+
+    public static RequestCoalescer getInstance() {
+        if (mInstance == null) {
+            synchronized (RequestCoalescer.class) {
+                if (mInstance == null) {
+                    mInstance = new RequestCoalescer();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    public <T> ObservableTransformer<T, T> transformer(final RequestKey key) {
+        return new ObservableTransformer<T, T>() {
+            @Override
+            public ObservableSource<T> apply(final Observable<T> upstream) {
+                return Observable.defer(new Callable<ObservableSource<T>>() {
+                    @Override
+                    public ObservableSource<T> call() throws Exception {
+                        return obtain(key, upstream);
+                    }
+                });
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Observable<T> obtain(final RequestKey key, Observable<T> upstream) {
+        Observable<T> shared = (Observable<T>) mInFlight.get(key);
+        if (shared != null) {
+            return shared;
+        }
+        final AtomicReference<Observable<T>> created = new AtomicReference<>();
+        final Action remove = new Action() {
+            @Override
+            public void run() throws Exception {
+                mInFlight.remove(key, created.get());
+            }
+        };
+        // 在 share 之前、结果分发给订阅者之前移除:网络请求只返回一个结果，收到结果后就不能再加入，
+        // 否则之后加入的订阅者(其他线程、在 onNext 中重新发起的相同请求)只会收到 onComplete；
+        // 所有订阅者都取消时 share 取消上游，由 doOnDispose 移除
+        created.set(upstream
+                .doOnNext(new Consumer<T>() {
+                    @Override
+                    public void accept(T t) throws Exception {
+                        remove.run();
+                    }
+                })
+                .doOnTerminate(remove)
+                .doOnDispose(remove)
+                .share());
+        Observable<T> old = (Observable<T>) mInFlight.putIfAbsent(key, created.get());
+        return old != null ? old : created.get();
+    }
+
+    /**
+     * 正在进行的请求数量
+     */
+    public int size() {
+        return mInFlight.size();
+    }
+}
@@ -0,0 +1,20 @@
+package retrofit.http.offline;
+
+/**
+ * @class describe 网络连接状态来源，App中使用 {@link NetworkMonitorSource}，测试时可以传入自己控制的实现
+ */
+public interface ConnectivitySource {
+
+    boolean isConnected();
+
+    void addListener(Listener listener);
+
+    void removeListener(Listener listener);
+
+    interface Listener {
+        /**
+         * @param connected true 网络可用 false网络不可用
+         */
+        void onConnectivityChanged(boolean connected);
+    }
+}
@@ -0,0 +1,44 @@
+package retrofit.http.offline;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import retrofit.utils.NetworkMonitor;
+import retrofit.utils.NetworkState;
+
+/**
+ * @class describe 使用 {@link NetworkMonitor} 的网络状态，需要先调用 NetWorkUtil.init
+ */
+public class NetworkMonitorSource implements ConnectivitySource {
+    private final Map<Listener, NetworkMonitor.Listener> mListeners = new ConcurrentHashMap<>();
+
+    /**
+     * 没有调用 NetWorkUtil.init 时无法判断，按有网络处理
+     */
+    @Override
+    public boolean isConnected() {
+        NetworkMonitor monitor = NetworkMonitor.getInstance();
+        return !monitor.isStarted() || monitor.getState().isConnected();
+    }
+
+    @Override
+    public void addListener(final Listener listener) {
+        NetworkMonitor.Listener wrapper = new NetworkMonitor.Listener() {
+            @Override
+            public void onNetworkChanged(NetworkState state) {
+                listener.onConnectivityChanged(state.isConnected());
+            }
+        };
+        if (mListeners.put(listener, wrapper) == null) {
+            NetworkMonitor.getInstance().addListener(wrapper);
+        }
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        NetworkMonitor.Listener wrapper = mListeners.remove(listener);
+        if (wrapper != null) {
+            NetworkMonitor.getInstance().removeListener(wrapper);
+        }
+    }
+}
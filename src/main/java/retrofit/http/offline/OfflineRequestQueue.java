@@ -0,0 +1,521 @@
+package retrofit.http.offline;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import retrofit.AppConfig;
+
+/**
+ * @class describe 离线请求队列，没有网络或请求失败时保存修改类的请求，网络恢复后按顺序重新发送
+ * <p>
+ * 1.请求追加写到 queue.log，发送成功后把 idempotencyKey 追加写到 ack.log，每条记录带CRC，写了一半的记录在读取时丢弃
+ * 2.读取、写入、清空和fsync都在队列自己的线程按顺序执行，不持有队列的锁，在主线程调用 {@link #flush()} 等方法不会等待磁盘；
+ * 写入后最多等待 {@link #SYNC_DELAY_MILLIS} 统一fsync，这段时间内进程被杀可能丢失请求，需要时可以调用 {@link #sync()}
+ * 3.至少发送一次:收到返回后才写ack，所以同一个请求可能重复发送，服务器需要按 {@link #HEADER_IDEMPOTENCY_KEY} 去重
+ * 4.按入队顺序发送，同时最多 maxConcurrency 个，遇到网络错误或5xx暂停，网络变化或 {@link #RETRY_DELAY_MILLIS} 后继续
+ * 5.4xx(408、429除外)不再重试，和成功一样从队列移除，通过 {@link Listener} 通知
+ * 6.请求由放入队列的OkHttpClient重新发送，经过同样的拦截器；命名实例的请求在实例 {@link #attach(String, OkHttpClient)} 之后才发送
+ * <p>
+ * 只依赖OkHttp和 {@link ConnectivitySource}，可以在JVM上测试
+ */
+public class OfflineRequestQueue {
+    public static final String HEADER = "Offline-Queue";
+    /**
+     * 在接口上添加 @Headers(OfflineRequestQueue.QUEUE)，没有网络或网络错误时放入离线队列，
+     * 这时请求返回 {@link retrofit.http.exception.RequestQueuedException}
+     */
+    public static final String QUEUE = HEADER + ": true";
+    public static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    static final long MAX_BODY_LENGTH = 1024 * 1024;//body超过这个大小的请求不放入队列
+    private static final long SYNC_DELAY_MILLIS = 200;
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int MAX_RECORD_LENGTH = (int) MAX_BODY_LENGTH + 256 * 1024;
+    private static final String QUEUE_FILE = "queue.log";
+    private static final String ACK_FILE = "ack.log";
+
+    private final File mDirectory;
+    private final File mQueueFile;
+    private final File mAckFile;
+    private final ConnectivitySource mConnectivity;
+    private final int mMaxConcurrency;
+    private final ScheduledExecutorService mExecutor;
+    private final LinkedHashMap<String, QueuedRequest> mPending = new LinkedHashMap<>();
+    private final Set<String> mInFlight = new HashSet<>();
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private FileOutputStream mQueueOut;//只在 mExecutor 线程访问，无法读写文件时为null，只保存在内存中
+    private FileOutputStream mAckOut;
+    private boolean mLoaded;//上次没有发送完的请求已经读取，之后才开始发送
+    private boolean mSyncScheduled;
+    private boolean mRetryScheduled;
+    private boolean mPaused;//上次发送失败，等待网络变化或定时重试
+    private final Map<String, OkHttpClient> mClients = new HashMap<>();//实例名称到OkHttpClient，默认实例为null
+
+    private final ConnectivitySource.Listener mConnectivityListener = new ConnectivitySource.Listener() {
+        @Override
+        public void onConnectivityChanged(boolean connected) {
+            if (connected) {
+                flush();
+            }
+        }
+    };
+
+    private final Runnable mSync = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (OfflineRequestQueue.this) {
+                mSyncScheduled = false;
+            }
+            syncFiles();
+        }
+    };
+
+    private final Runnable mTruncate = new Runnable() {
+        @Override
+        public void run() {
+            if (mQueueOut == null) {
+                return;
+            }
+            try {
+                mQueueOut.close();
+                mAckOut.close();
+                mQueueOut = new FileOutputStream(mQueueFile, false);
+                mAckOut = new FileOutputStream(mAckFile, false);
+            } catch (IOException e) {
+                // 之后只保存在内存中
+                e.printStackTrace();
+                mQueueOut = null;
+                mAckOut = null;
+            }
+        }
+    };
+
+    private final Runnable mRetry = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (OfflineRequestQueue.this) {
+                mRetryScheduled = false;
+            }
+            flush();
+        }
+    };
+
+    public interface Listener {
+        /**
+         * 队列中的请求已经发送并从队列移除，在OkHttp的线程回调
+         *
+         * @param code 服务器返回的状态码，4xx表示请求被拒绝，不会再重试
+         */
+        void onCompleted(QueuedRequest request, int code);
+    }
+
+    /**
+     * 默认的队列目录，在SD卡的应用目录下；不作为常量，加载这个类时不依赖Android环境
+     */
+    public static File defaultDirectory() {
+        return new File(AppConfig.APP_PATH, "offline");
+    }
+
+    public OfflineRequestQueue(File directory, ConnectivitySource connectivity) {
+        this(directory, connectivity, 2);
+    }
+
+    /**
+     * 在队列的线程读取上次没有发送完的请求，构造方法不访问磁盘；目录无法创建或读写时只在内存中保存
+     *
+     * @param maxConcurrency 网络恢复后同时发送的请求数
+     */
+    public OfflineRequestQueue(File directory, ConnectivitySource connectivity, int maxConcurrency) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency < 1: " + maxConcurrency);
+        mDirectory = directory;
+        mQueueFile = new File(directory, QUEUE_FILE);
+        mAckFile = new File(directory, ACK_FILE);
+        mConnectivity = connectivity;
+        mMaxConcurrency = maxConcurrency;
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "OfflineRequestQueue");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * 设置默认实例发送请求的OkHttpClient，见 {@link #attach(String, OkHttpClient)}
+     */
+    public void attach(OkHttpClient client) {
+        attach(null, client);
+    }
+
+    /**
+     * 设置发送请求的OkHttpClient，开始监听网络，有网络时立即发送队列中的请求
+     *
+     * @param clientName 放入队列时使用的名称，和 {@link retrofit.http.intercept.OfflineQueueInterceptor} 的一致，
+     *                   这个名称的请求只通过这个OkHttpClient发送
+     */
+    public void attach(String clientName, OkHttpClient client) {
+        boolean first;
+        synchronized (this) {
+            first = mClients.isEmpty();
+            mClients.put(clientName, client);
+        }
+        if (first) {
+            mConnectivity.addListener(mConnectivityListener);
+        }
+        flush();
+    }
+
+    public boolean isConnected() {
+        return mConnectivity.isConnected();
+    }
+
+    /**
+     * 放入队列，由默认实例重新发送
+     *
+     * @return body太大等无法保存的请求返回null
+     */
+    public QueuedRequest enqueue(Request request, String idempotencyKey) throws IOException {
+        return enqueue(request, idempotencyKey, null);
+    }
+
+    /**
+     * 放入队列
+     *
+     * @param clientName 重新发送时使用的OkHttpClient，见 {@link #attach(String, OkHttpClient)}
+     * @return body太大等无法保存的请求返回null
+     */
+    public QueuedRequest enqueue(Request request, String idempotencyKey, String clientName) throws IOException {
+        RequestBody body = request.body();
+        byte[] bytes = null;
+        String contentType = null;
+        if (body != null) {
+            if (body.contentLength() > MAX_BODY_LENGTH) {
+                return null;
+            }
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            if (buffer.size() > MAX_BODY_LENGTH) {
+                return null;
+            }
+            bytes = buffer.readByteArray();
+            contentType = body.contentType() != null ? body.contentType().toString() : null;
+        }
+        QueuedRequest queued = new QueuedRequest(idempotencyKey, request.method(), request.url().toString(),
+            request.headers().newBuilder().removeAll(HEADER).removeAll(HEADER_IDEMPOTENCY_KEY).build(),
+            contentType, bytes, clientName);
+        byte[] record = toBytes(queued);
+        synchronized (this) {
+            if (mPending.containsKey(idempotencyKey)) {
+                return mPending.get(idempotencyKey);
+            }
+            write(false, record);
+            mPending.put(idempotencyKey, queued);
+            scheduleSync();
+            dispatch();
+        }
+        return queued;
+    }
+
+    /**
+     * 立即发送队列中的请求
+     */
+    public synchronized void flush() {
+        mPaused = false;
+        dispatch();
+    }
+
+    /**
+     * 等待已经放入队列的请求和ack写入文件并fsync，会阻塞，不要在主线程调用
+     */
+    public void sync() throws InterruptedException {
+        try {
+            mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    syncFiles();
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 队列中还没发送成功的请求，按入队顺序
+     */
+    public synchronized List<QueuedRequest> getPending() {
+        return new ArrayList<>(mPending.values());
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    private void dispatch() {
+        if (!mLoaded || mClients.isEmpty() || mPaused || !mConnectivity.isConnected()) {
+            return;
+        }
+        for (QueuedRequest queued : mPending.values()) {
+            if (mInFlight.size() >= mMaxConcurrency) {
+                break;
+            }
+            // 实例还没有attach时跳过，之后attach会重新发送
+            OkHttpClient client = mClients.get(queued.getClientName());
+            if (client != null && mInFlight.add(queued.getIdempotencyKey())) {
+                send(client, queued);
+            }
+        }
+    }
+
+    private void send(OkHttpClient client, final QueuedRequest queued) {
+        client.newCall(queued.toRequest()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                onFailed(queued);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                int code = response.code();
+                response.close();
+                if (code >= 500 || code == 408 || code == 429) {
+                    onFailed(queued);
+                } else {
+                    onCompleted(queued, code);
+                }
+            }
+        });
+    }
+
+    private void onFailed(QueuedRequest queued) {
+        synchronized (this) {
+            mInFlight.remove(queued.getIdempotencyKey());
+            mPaused = true;
+            if (!mRetryScheduled) {
+                mRetryScheduled = true;
+                mExecutor.schedule(mRetry, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void onCompleted(QueuedRequest queued, int code) {
+        synchronized (this) {
+            String key = queued.getIdempotencyKey();
+            mInFlight.remove(key);
+            mPending.remove(key);
+            if (mPending.isEmpty()) {
+                // 全部发送完成，清空两个文件
+                mExecutor.execute(mTruncate);
+            } else {
+                write(true, utf8(key));
+            }
+            scheduleSync();
+            dispatch();
+        }
+        for (Listener listener : mListeners) {
+            listener.onCompleted(queued, code);
+        }
+    }
+
+    /**
+     * 在队列的线程追加一条记录，持有锁时提交，文件中的顺序和内存中一致
+     */
+    private void write(final boolean ack, final byte[] payload) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                FileOutputStream out = ack ? mAckOut : mQueueOut;
+                if (out == null) {
+                    return;
+                }
+                try {
+                    writeRecord(out, payload);
+                } catch (IOException e) {
+                    // 没有记录ack时下次启动会重新发送，没有记录请求时进程被杀后丢失
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * 只在 mExecutor 线程调用
+     */
+    private void syncFiles() {
+        if (mQueueOut == null) {
+            return;
+        }
+        try {
+            mQueueOut.getFD().sync();
+            mAckOut.getFD().sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void scheduleSync() {
+        if (!mSyncScheduled) {
+            mSyncScheduled = true;
+            mExecutor.schedule(mSync, SYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 读取两个文件，去掉已经发送的请求后重写 queue.log，在 mExecutor 线程执行
+     * 读取期间放入的请求排在读取的请求之后，它们的写入在这之后执行
+     */
+    private void load() {
+        LinkedHashMap<String, QueuedRequest> loaded = new LinkedHashMap<>();
+        try {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                throw new FileNotFoundException("can't create " + mDirectory);
+            }
+            Set<String> acked = new HashSet<>();
+            for (byte[] record : readRecords(mAckFile)) {
+                acked.add(new String(record, "UTF-8"));
+            }
+            for (byte[] record : readRecords(mQueueFile)) {
+                QueuedRequest queued = QueuedRequest.readFrom(new DataInputStream(new ByteArrayInputStream(record)));
+                if (!acked.contains(queued.getIdempotencyKey())) {
+                    loaded.put(queued.getIdempotencyKey(), queued);
+                }
+            }
+            File tmp = new File(mQueueFile.getPath() + ".tmp");
+            FileOutputStream out = new FileOutputStream(tmp, false);
+            try {
+                for (QueuedRequest queued : loaded.values()) {
+                    writeRecord(out, toBytes(queued));
+                }
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(mQueueFile)) {
+                throw new IOException("can't rename " + tmp);
+            }
+            mQueueOut = new FileOutputStream(mQueueFile, true);
+            mAckOut = new FileOutputStream(mAckFile, false);
+        } catch (IOException e) {
+            // 无法读写文件，只在内存中保存
+            e.printStackTrace();
+            mQueueOut = null;
+            mAckOut = null;
+        }
+        synchronized (this) {
+            for (QueuedRequest queued : mPending.values()) {
+                if (!loaded.containsKey(queued.getIdempotencyKey())) {
+                    loaded.put(queued.getIdempotencyKey(), queued);
+                }
+            }
+            mPending.clear();
+            mPending.putAll(loaded);
+            mLoaded = true;
+            dispatch();
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[] toBytes(QueuedRequest queued) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        queued.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 记录格式:[长度][内容][CRC32]，一次write写入
+     */
+    private static void writeRecord(FileOutputStream out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 12);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(payload.length);
+        data.write(payload);
+        data.writeLong(crc.getValue());
+        out.write(bytes.toByteArray());
+    }
+
+    /**
+     * 读取所有完整的记录，遇到不完整或校验失败的记录时停止
+     */
+    private static List<byte[]> readRecords(File file) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            DataInputStream data = new DataInputStream(in);
+            while (true) {
+                int length = data.readInt();
+                if (length < 0 || length > MAX_RECORD_LENGTH) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                data.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (data.readLong() != crc.getValue()) {
+                    break;
+                }
+                records.add(payload);
+            }
+        } catch (EOFException e) {
+            // 最后一条记录没有写完
+        } finally {
+            in.close();
+        }
+        return records;
+    }
+}
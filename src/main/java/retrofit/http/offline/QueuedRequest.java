@@ -0,0 +1,120 @@
+package retrofit.http.offline;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * @class describe 离线队列中的一个请求，body已经读到内存中
+ */
+public final class QueuedRequest {
+    private final String idempotencyKey;
+    private final String method;
+    private final String url;
+    private final Headers headers;
+    private final String contentType;//没有body时为null
+    private final byte[] body;//没有body时为null
+    private final String clientName;//放入队列的命名实例，默认实例为null
+
+    QueuedRequest(String idempotencyKey, String method, String url, Headers headers, String contentType, byte[] body,
+                  String clientName) {
+        this.idempotencyKey = idempotencyKey;
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.contentType = contentType;
+        this.body = body;
+        this.clientName = clientName;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * 放入队列的命名实例，由这个实例的OkHttpClient重新发送，默认实例为null
+     */
+    public String getClientName() {
+        return clientName;
+    }
+
+    /**
+     * 重新发送的请求，带上 {@link OfflineRequestQueue#HEADER_IDEMPOTENCY_KEY}，服务器按这个值去重
+     */
+    Request toRequest() {
+        RequestBody requestBody = null;
+        if (body != null) {
+            requestBody = RequestBody.create(contentType != null ? MediaType.parse(contentType) : null, body);
+        }
+        return new Request.Builder()
+            .url(url)
+            .headers(headers)
+            .header(OfflineRequestQueue.HEADER_IDEMPOTENCY_KEY, idempotencyKey)
+            .method(method, requestBody)
+            .build();
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(idempotencyKey);
+        out.writeUTF(method);
+        out.writeUTF(url);
+        out.writeInt(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            out.writeUTF(headers.name(i));
+            out.writeUTF(headers.value(i));
+        }
+        out.writeUTF(contentType != null ? contentType : "");
+        if (body == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(body.length);
+            out.write(body);
+        }
+        // 放在最后，之前版本写入的记录没有这个字段
+        out.writeUTF(clientName != null ? clientName : "");
+    }
+
+    static QueuedRequest readFrom(DataInputStream in) throws IOException {
+        String idempotencyKey = in.readUTF();
+        String method = in.readUTF();
+        String url = in.readUTF();
+        int headerCount = in.readInt();
+        Headers.Builder headers = new Headers.Builder();
+        for (int i = 0; i < headerCount; i++) {
+            headers.add(in.readUTF(), in.readUTF());
+        }
+        String contentType = in.readUTF();
+        int length = in.readInt();
+        byte[] body = null;
+        if (length >= 0) {
+            body = new byte[length];
+            in.readFully(body);
+        }
+        String clientName = in.available() > 0 ? in.readUTF() : "";
+        return new QueuedRequest(idempotencyKey, method, url, headers.build(),
+            contentType.isEmpty() ? null : contentType, body, clientName.isEmpty() ? null : clientName);
+    }
+
+    @Override
+    public String toString() {
+        return "QueuedRequest{" +
+            "idempotencyKey='" + idempotencyKey + '\'' +
+            ", method='" + method + '\'' +
+            ", url='" + url + '\'' +
+            ", clientName='" + clientName + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,154 @@
+package retrofit.http.retrofit;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit.http.metrics.HttpMetrics;
+
+/**
+ * @class describe 单次请求的上下文，记录url、耗时、返回长度等
+ * 由 {@link retrofit.http.intercept.ResponseInterceptor} 在执行请求的线程上创建，
+ * 同一个线程上的 Converter 解析时通过 {@link #current()} 拿到当前请求，不需要全局的静态变量
+ * 只在单次请求内有效:请求失败、返回不需要解析、Gson解析结束或者返回的body关闭(scalars、ResponseBody、后台刷新缓存等
+ * 不经过Gson解析的返回)后通过 {@link #end(HttpCallContext)} 结束，线程池复用线程时不会拿到上一次请求的上下文；
+ * 在其他线程结束时，原来的线程在下次 {@link #current()} 时解除绑定
+ * 发给服务器的Request上也带有这个上下文，见 {@link #of(Request)}
+ */
+public final class HttpCallContext {
+    private static final ThreadLocal<HttpCallContext> CURRENT = new ThreadLocal<>();
+
+    private final String url;
+    private final String method;
+    private final String route;
+    private final long startNanos;
+    private volatile long responseNanos;
+    private volatile int code;
+    private volatile long contentLength = -1;
+    private volatile boolean converting;//Converter正在解析，关闭body时不结束
+    private volatile boolean ended;
+
+    private HttpCallContext(Request request) {
+        this.url = request.url().toString();
+        this.method = request.method();
+        this.route = HttpMetrics.route(request.url());
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 开始请求，绑定到当前线程
+     */
+    public static HttpCallContext begin(Request request) {
+        HttpCallContext context = new HttpCallContext(request);
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * 结束请求，解除和当前线程的绑定
+     */
+    public static void end(HttpCallContext context) {
+        if (context == null) {
+            return;
+        }
+        context.ended = true;
+        if (CURRENT.get() == context) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 返回的body关闭时调用，Converter正在解析时由Converter结束
+     */
+    public static void release(HttpCallContext context) {
+        if (context != null && !context.converting) {
+            end(context);
+        }
+    }
+
+    /**
+     * Converter开始解析，返回当前请求的上下文，解析过程中关闭body不会结束，解析结束后调用 {@link #end(HttpCallContext)}
+     */
+    public static HttpCallContext beginConvert() {
+        HttpCallContext context = current();
+        if (context != null) {
+            context.converting = true;
+        }
+        return context;
+    }
+
+    /**
+     * 当前线程上正在进行的请求的上下文，没有时返回null
+     */
+    public static HttpCallContext current() {
+        HttpCallContext context = CURRENT.get();
+        if (context != null && context.ended) {
+            CURRENT.remove();
+            return null;
+        }
+        return context;
+    }
+
+    /**
+     * 经过 {@link retrofit.http.intercept.ResponseInterceptor} 之后的Request(比如 response.request())上带的上下文，没有时返回null
+     */
+    public static HttpCallContext of(Request request) {
+        return request.tag(HttpCallContext.class);
+    }
+
+    /**
+     * 收到返回头
+     */
+    public void onResponse(Response response) {
+        responseNanos = System.nanoTime();
+        code = response.code();
+        if (response.body() != null) {
+            contentLength = response.body().contentLength();
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * 统计用的接口key，见 {@link HttpMetrics#route(okhttp3.HttpUrl)}
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * http状态码，还没有返回时为0
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * 返回的长度，未知时为-1
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * 从发出请求到收到返回头的耗时(毫秒)，还没有返回时为-1
+     */
+    public long getResponseMillis() {
+        return responseNanos == 0 ? -1 : (responseNanos - startNanos) / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpCallContext{" +
+            "method='" + method + '\'' +
+            ", url='" + url + '\'' +
+            ", code=" + code +
+            ", contentLength=" + contentLength +
+            ", responseMillis=" + getResponseMillis() +
+            '}';
+    }
+}
@@ -0,0 +1,453 @@
+package retrofit.http.retrofit;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import retrofit.http.breaker.CircuitBreakerConfig;
+import retrofit.http.intercept.ResponseInterceptor;
+import retrofit.http.metrics.HttpMetrics;
+import retrofit.http.scheduler.RequestScheduler;
+
+/**
+ * @class describe RetrofitUtils 的网络配置:超时、并发数、连接池、协议、单个接口的超时等
+ * 通过 {@link RetrofitUtils#init(retrofit.http.gson.IGsonConverterFactory, HttpConfig)} 设置，不设置时使用默认值
+ */
+public final class HttpConfig {
+    private final long connectTimeoutMillis;
+    private final long readTimeoutMillis;
+    private final long writeTimeoutMillis;
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final int maxIdleConnections;
+    private final long keepAliveMillis;
+    private final List<Protocol> protocols;
+    private final Map<String, RouteTimeout> routeTimeouts;
+    private final boolean asyncCall;
+    private final boolean validateEagerly;
+    private final long maxRewriteLength;
+    private final long cacheSize;
+    private final EventListener.Factory eventListenerFactory;
+    private final CircuitBreakerConfig circuitBreaker;
+    private final boolean adaptiveTimeout;
+    private final File offlineQueueDirectory;
+    private final int requestThreads;
+    private final int maxQueue;
+    private final int maxPrefetchQueue;
+    private final int taskThreads;
+    private final int taskMaxQueue;
+    private final RequestScheduler.RejectPolicy rejectPolicy;
+
+    private HttpConfig(Builder builder) {
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.readTimeoutMillis = builder.readTimeoutMillis;
+        this.writeTimeoutMillis = builder.writeTimeoutMillis;
+        this.maxRequests = builder.maxRequests;
+        this.maxRequestsPerHost = builder.maxRequestsPerHost;
+        this.maxIdleConnections = builder.maxIdleConnections;
+        this.keepAliveMillis = builder.keepAliveMillis;
+        this.protocols = builder.protocols == null ? null : Collections.unmodifiableList(new ArrayList<>(builder.protocols));
+        this.routeTimeouts = Collections.unmodifiableMap(new LinkedHashMap<>(builder.routeTimeouts));
+        this.asyncCall = builder.asyncCall;
+        this.validateEagerly = builder.validateEagerly;
+        this.maxRewriteLength = builder.maxRewriteLength;
+        this.cacheSize = builder.cacheSize;
+        this.eventListenerFactory = builder.eventListenerFactory;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.adaptiveTimeout = builder.adaptiveTimeout;
+        this.offlineQueueDirectory = builder.offlineQueueDirectory;
+        this.requestThreads = builder.requestThreads;
+        this.maxQueue = builder.maxQueue;
+        this.maxPrefetchQueue = builder.maxPrefetchQueue;
+        this.taskThreads = builder.taskThreads;
+        this.taskMaxQueue = builder.taskMaxQueue;
+        this.rejectPolicy = builder.rejectPolicy;
+    }
+
+    public static HttpConfig defaultConfig() {
+        return new Builder().build();
+    }
+
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public long getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public long getWriteTimeoutMillis() {
+        return writeTimeoutMillis;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * @return 为null时使用OkHttp默认的协议(HTTP/2 优先)
+     */
+    public List<Protocol> getProtocols() {
+        return protocols;
+    }
+
+    public Map<String, RouteTimeout> getRouteTimeouts() {
+        return routeTimeouts;
+    }
+
+    public boolean isAsyncCall() {
+        return asyncCall;
+    }
+
+    public boolean isValidateEagerly() {
+        return validateEagerly;
+    }
+
+    public long getMaxRewriteLength() {
+        return maxRewriteLength;
+    }
+
+    /**
+     * @return 小于等于0表示不使用缓存
+     */
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    public EventListener.Factory getEventListenerFactory() {
+        return eventListenerFactory;
+    }
+
+    /**
+     * @return 为null时不熔断
+     */
+    public CircuitBreakerConfig getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public boolean isAdaptiveTimeout() {
+        return adaptiveTimeout;
+    }
+
+    /**
+     * @return 为null时不使用离线队列
+     */
+    public File getOfflineQueueDirectory() {
+        return offlineQueueDirectory;
+    }
+
+    public int getRequestThreads() {
+        return requestThreads;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public int getMaxPrefetchQueue() {
+        return maxPrefetchQueue;
+    }
+
+    public int getTaskThreads() {
+        return taskThreads;
+    }
+
+    public int getTaskMaxQueue() {
+        return taskMaxQueue;
+    }
+
+    public RequestScheduler.RejectPolicy getRejectPolicy() {
+        return rejectPolicy;
+    }
+
+    /**
+     * 单个接口的超时时间，小于等于0的项使用全局设置
+     */
+    public static final class RouteTimeout {
+        final long connectTimeoutMillis;
+        final long readTimeoutMillis;
+        final long writeTimeoutMillis;
+
+        public RouteTimeout(long connectTimeout, long readTimeout, long writeTimeout, TimeUnit unit) {
+            this.connectTimeoutMillis = unit.toMillis(connectTimeout);
+            this.readTimeoutMillis = unit.toMillis(readTimeout);
+            this.writeTimeoutMillis = unit.toMillis(writeTimeout);
+        }
+
+        public long getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        public long getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        public long getWriteTimeoutMillis() {
+            return writeTimeoutMillis;
+        }
+    }
+
+    public static final class Builder {
+        private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(30);//连接超时时长
+        private long readTimeoutMillis = TimeUnit.SECONDS.toMillis(30);//读数据超时时长
+        private long writeTimeoutMillis = TimeUnit.SECONDS.toMillis(30);//写数据接超时时长
+        private int maxRequests = 64;//和OkHttp默认值一致
+        private int maxRequestsPerHost = 5;
+        private int maxIdleConnections = 5;
+        private long keepAliveMillis = TimeUnit.MINUTES.toMillis(5);
+        private List<Protocol> protocols;
+        private final Map<String, RouteTimeout> routeTimeouts = new LinkedHashMap<>();
+        private boolean asyncCall;
+        private boolean validateEagerly;
+        private long maxRewriteLength = ResponseInterceptor.DEFAULT_MAX_REWRITE_LENGTH;
+        private long cacheSize;//默认不使用缓存
+        private EventListener.Factory eventListenerFactory = HttpMetrics.getInstance();
+        private CircuitBreakerConfig circuitBreaker;//默认不熔断
+        private boolean adaptiveTimeout;
+        private File offlineQueueDirectory;
+        private int requestThreads = RequestScheduler.DEFAULT_THREADS;
+        private int maxQueue = RequestScheduler.DEFAULT_MAX_QUEUE;
+        private int maxPrefetchQueue = RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE;
+        private int taskThreads = RequestScheduler.DEFAULT_TASK_THREADS;
+        private int taskMaxQueue = RequestScheduler.DEFAULT_TASK_MAX_QUEUE;
+        private RequestScheduler.RejectPolicy rejectPolicy = RequestScheduler.RejectPolicy.ABORT;
+
+        public Builder() {
+        }
+
+        Builder(HttpConfig config) {
+            this.connectTimeoutMillis = config.connectTimeoutMillis;
+            this.readTimeoutMillis = config.readTimeoutMillis;
+            this.writeTimeoutMillis = config.writeTimeoutMillis;
+            this.maxRequests = config.maxRequests;
+            this.maxRequestsPerHost = config.maxRequestsPerHost;
+            this.maxIdleConnections = config.maxIdleConnections;
+            this.keepAliveMillis = config.keepAliveMillis;
+            this.protocols = config.protocols;
+            this.routeTimeouts.putAll(config.routeTimeouts);
+            this.asyncCall = config.asyncCall;
+            this.validateEagerly = config.validateEagerly;
+            this.maxRewriteLength = config.maxRewriteLength;
+            this.cacheSize = config.cacheSize;
+            this.eventListenerFactory = config.eventListenerFactory;
+            this.circuitBreaker = config.circuitBreaker;
+            this.adaptiveTimeout = config.adaptiveTimeout;
+            this.offlineQueueDirectory = config.offlineQueueDirectory;
+            this.requestThreads = config.requestThreads;
+            this.maxQueue = config.maxQueue;
+            this.maxPrefetchQueue = config.maxPrefetchQueue;
+            this.taskThreads = config.taskThreads;
+            this.taskMaxQueue = config.taskMaxQueue;
+            this.rejectPolicy = config.rejectPolicy;
+        }
+
+        public Builder connectTimeout(long timeout, TimeUnit unit) {
+            this.connectTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public Builder readTimeout(long timeout, TimeUnit unit) {
+            this.readTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public Builder writeTimeout(long timeout, TimeUnit unit) {
+            this.writeTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * 同时进行的最大请求数，只对异步请求生效，见 {@link #asyncCall(boolean)}
+         */
+        public Builder maxRequests(int maxRequests) {
+            if (maxRequests < 1) throw new IllegalArgumentException("maxRequests < 1: " + maxRequests);
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * 同一个host同时进行的最大请求数，只对异步请求生效，见 {@link #asyncCall(boolean)}
+         */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            if (maxRequestsPerHost < 1) throw new IllegalArgumentException("maxRequestsPerHost < 1: " + maxRequestsPerHost);
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * 连接池最多保留的空闲连接数和保留时长
+         */
+        public Builder connectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+            if (maxIdleConnections < 0) throw new IllegalArgumentException("maxIdleConnections < 0: " + maxIdleConnections);
+            this.maxIdleConnections = maxIdleConnections;
+            this.keepAliveMillis = unit.toMillis(keepAlive);
+            return this;
+        }
+
+        /**
+         * 协议优先级，比如只使用 HTTP/1.1 时传入 [HTTP_1_1]
+         */
+        public Builder protocols(List<Protocol> protocols) {
+            this.protocols = protocols;
+            return this;
+        }
+
+        /**
+         * 设置单个接口的超时时间
+         *
+         * @param pathPrefix 接口路径前缀，比如 /api/upload
+         */
+        public Builder routeTimeout(String pathPrefix, RouteTimeout timeout) {
+            routeTimeouts.put(pathPrefix, timeout);
+            return this;
+        }
+
+        /**
+         * 是否使用OkHttp的异步请求，true 时请求并发由OkHttp的Dispatcher控制(maxRequests、maxRequestsPerHost)，
+         * false 时在RxJava的线程上同步请求，和原来一致
+         * <p>
+         * 注意:true 时 {@link RequestScheduler} 的线程只负责把请求交给Dispatcher，Dispatcher按提交顺序执行，
+         * {@link retrofit.http.scheduler.RequestPriority} 和预加载的并发限制都不起作用，
+         * 预加载较多时 CRITICAL 的请求同样要排在后面；需要优先级时保持默认的 false
+         */
+        public Builder asyncCall(boolean asyncCall) {
+            this.asyncCall = asyncCall;
+            return this;
+        }
+
+        /**
+         * 创建接口代理时是否立即解析接口的所有方法，配合 {@link RetrofitUtils#preload(Class[])} 在后台线程提前解析，
+         * 避免第一次请求时在主线程解析注解
+         */
+        public Builder validateEagerly(boolean validateEagerly) {
+            this.validateEagerly = validateEagerly;
+            return this;
+        }
+
+        /**
+         * 返回长度超过这个值时 {@link ResponseInterceptor} 不做处理
+         */
+        public Builder maxRewriteLength(long maxRewriteLength) {
+            this.maxRewriteLength = maxRewriteLength;
+            return this;
+        }
+
+        /**
+         * 设置磁盘缓存大小(字节)，缓存在 context.getCacheDir()/http 下，
+         * 接口通过 {@link retrofit.http.intercept.CachePolicy} 设置缓存策略
+         */
+        public Builder cache(long cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * 请求事件监听，默认为 {@link HttpMetrics}
+         */
+        public Builder eventListenerFactory(EventListener.Factory eventListenerFactory) {
+            if (eventListenerFactory == null) throw new NullPointerException("eventListenerFactory == null");
+            this.eventListenerFactory = eventListenerFactory;
+            return this;
+        }
+
+        /**
+         * 开启按接口熔断，状态通过 {@link retrofit.http.breaker.CircuitBreakerRegistry} 查看，传入null关闭
+         */
+        public Builder circuitBreaker(CircuitBreakerConfig circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * 是否按网络类型和最近的响应耗时调整超时时间，见 {@link retrofit.http.intercept.AdaptiveTimeoutInterceptor}，
+         * 开启后全局的超时设置只在没有网络或无法判断网络类型时使用
+         */
+        public Builder adaptiveTimeout(boolean adaptiveTimeout) {
+            this.adaptiveTimeout = adaptiveTimeout;
+            return this;
+        }
+
+        /**
+         * 开启离线队列，接口通过 {@link retrofit.http.offline.OfflineRequestQueue#QUEUE} 请求头使用，
+         * 传入null关闭
+         *
+         * @param directory 队列文件保存的目录，一般为 {@link retrofit.http.offline.OfflineRequestQueue#defaultDirectory()}
+         */
+        public Builder offlineQueue(File directory) {
+            this.offlineQueueDirectory = directory;
+            return this;
+        }
+
+        /**
+         * 网络请求使用的线程池，见 {@link RequestScheduler#getInstance()}
+         *
+         * @param threads  线程数
+         * @param maxQueue 排队数量超过后按 {@link #rejectPolicy(RequestScheduler.RejectPolicy)} 处理，CRITICAL 的请求不受限制
+         */
+        public Builder requestThreads(int threads, int maxQueue) {
+            if (threads < 1) throw new IllegalArgumentException("threads < 1: " + threads);
+            if (maxQueue < 1) throw new IllegalArgumentException("maxQueue < 1: " + maxQueue);
+            this.requestThreads = threads;
+            this.maxQueue = maxQueue;
+            return this;
+        }
+
+        /**
+         * 等待中的预加载数量上限，单独计算，不占用 {@link #requestThreads(int, int)} 的 maxQueue
+         */
+        public Builder maxPrefetchQueue(int maxPrefetchQueue) {
+            if (maxPrefetchQueue < 1) throw new IllegalArgumentException("maxPrefetchQueue < 1: " + maxPrefetchQueue);
+            this.maxPrefetchQueue = maxPrefetchQueue;
+            return this;
+        }
+
+        /**
+         * RxAsyncTask 使用的线程池，和网络请求分开，见 {@link RequestScheduler#getTaskInstance()}
+         *
+         * @param threads  线程数，默认4
+         * @param maxQueue 排队数量上限，默认128
+         */
+        public Builder taskThreads(int threads, int maxQueue) {
+            if (threads < 1) throw new IllegalArgumentException("threads < 1: " + threads);
+            if (maxQueue < 1) throw new IllegalArgumentException("maxQueue < 1: " + maxQueue);
+            this.taskThreads = threads;
+            this.taskMaxQueue = maxQueue;
+            return this;
+        }
+
+        /**
+         * 排队数量超过上限时的处理，默认 ABORT 返回错误
+         */
+        public Builder rejectPolicy(RequestScheduler.RejectPolicy rejectPolicy) {
+            if (rejectPolicy == null) throw new NullPointerException("rejectPolicy == null");
+            this.rejectPolicy = rejectPolicy;
+            return this;
+        }
+
+        public HttpConfig build() {
+            return new HttpConfig(this);
+        }
+    }
+}
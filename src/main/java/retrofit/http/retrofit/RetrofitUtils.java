@@ -10,57 +10,214 @@ import com.franmontiel.persistentcookiejar.cache.SetCookieCache;
 import com.franmontiel.persistentcookiejar.persistence.SharedPrefsCookiePersistor;
 import com.lyx.skio.BuildConfig;
 
+import io.reactivex.schedulers.Schedulers;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import me.jessyan.progressmanager.ProgressManager;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit.http.gson.IGsonConverterFactory;
+import retrofit.http.intercept.AdaptiveTimeoutInterceptor;
+import retrofit.http.intercept.CacheNetworkInterceptor;
+import retrofit.http.intercept.CachePolicyInterceptor;
+import retrofit.http.intercept.CircuitBreakerInterceptor;
+import retrofit.http.intercept.ConnectPhaseInterceptor;
+import retrofit.http.intercept.OfflineQueueInterceptor;
 import retrofit.http.intercept.ResponseInterceptor;
+import retrofit.http.intercept.RouteTimeoutInterceptor;
+import retrofit.http.offline.NetworkMonitorSource;
+import retrofit.http.offline.OfflineRequestQueue;
+import retrofit.http.scheduler.RequestScheduler;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 
 /**
  * RetrofitUtils工具类
+ * 默认实例通过 {@link #getInstance()} 获取，其他后台地址通过 {@link #register(String, String, Interceptor)} 注册命名实例，
+ * 命名实例的OkHttpClient由默认实例 newBuilder() 得到，共用线程池、连接池和cookie
  */
 @SuppressLint("StaticFieldLeak")
 public final class RetrofitUtils {
 
-    private static final int CONNECT_TIME_OUT = 30;//连接超时时长x秒
-    private static final int READ_TIME_OUT = 30;//读数据超时时长x秒
-    private static final int WRITE_TIME_OUT = 30;//写数据接超时时长x秒
-
     private Retrofit mRetrofit;
     private OkHttpClient okHttpClient;
     private static volatile RetrofitUtils instance;
-    private static IGsonConverterFactory mGsonfactory;
+    private static volatile IGsonConverterFactory mGsonfactory;
+    private static volatile HttpConfig mGsonConfig = HttpConfig.defaultConfig();
+    private static final ConcurrentHashMap<String, RetrofitUtils> mInstances = new ConcurrentHashMap<>();//命名实例
     private IGsonConverterFactory mFactory;
+    private HttpConfig mConfig;
+    private final ConcurrentHashMap<Class<?>, Object> mServices = new ConcurrentHashMap<>();//create() 创建的接口代理
+    private OfflineRequestQueue mOfflineQueue;//没有开启时为null
 
+    /**
+     * 使用默认的网络配置，见 {@link HttpConfig#defaultConfig()}
+     */
     public static void init(IGsonConverterFactory factory) {
+        init(factory, null);
+    }
+
+    /**
+     * @param config 超时、并发数、连接池等网络配置，为null时使用默认配置
+     */
+    public static void init(IGsonConverterFactory factory, HttpConfig config) {
         mGsonfactory = factory;
+        mGsonConfig = config != null ? config : HttpConfig.defaultConfig();
+        RequestScheduler.getInstance().configure(mGsonConfig.getRequestThreads(), mGsonConfig.getMaxQueue(),
+            mGsonConfig.getMaxPrefetchQueue(), mGsonConfig.getRejectPolicy());
+        RequestScheduler.getTaskInstance().configure(mGsonConfig.getTaskThreads(), mGsonConfig.getTaskMaxQueue(),
+            mGsonConfig.getTaskMaxQueue(), mGsonConfig.getRejectPolicy());
     }
 
-    public static synchronized RetrofitUtils getInstance() {
-        if (instance == null) {
+    /**
+     * 已经创建后只读一次volatile变量，不再加锁
+     * 需要先调用 init 传入配置，所以不能使用静态内部类的单例写法
+     * {@link #warmUp(Class[])} 还在创建时，第一次调用会在锁上等待创建完成
+     *
+     * @throws IllegalStateException 没有调用 init 时抛出
+     */
+    public static RetrofitUtils getInstance() {
+        RetrofitUtils utils = instance;
+        if (utils == null) {
             synchronized (RetrofitUtils.class) {
-                if (instance == null) {
-                    instance = new RetrofitUtils(mGsonfactory);
+                utils = instance;
+                if (utils == null) {
+                    checkInit();
+                    utils = new RetrofitUtils(mGsonfactory, mGsonConfig);
+                    instance = utils;
+                }
+            }
+        }
+        return utils;
+    }
+
+    /**
+     * 在后台线程提前创建OkHttpClient、cookie、Converter等，在 init 之后调用，
+     * 避免第一次请求时在主线程创建
+     * 只是让创建提前开始，不保证第一次 {@link #getInstance()} 不阻塞：调用时还没有创建完成的话，会等待这里创建完成
+     *
+     * @param services 需要提前创建的接口，见 {@link #preload(Class[])}
+     * @throws IllegalStateException 没有调用 init 时直接抛出，不会等到后台线程创建时才失败
+     */
+    public static void warmUp(final Class<?>... services) {
+        checkInit();
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                RetrofitUtils utils = getInstance();
+                if (services != null && services.length > 0) {
+                    utils.preload(services);
                 }
             }
+        });
+    }
+
+    private static void checkInit() {
+        if (mGsonfactory == null || mGsonConfig == null) {
+            throw new IllegalStateException("RetrofitUtils.init must be called first");
+        }
+    }
+
+    /**
+     * 注册命名实例，已注册时返回已有的实例
+     *
+     * @param name        实例名称
+     * @param baseUrl     后台地址
+     * @param interceptor 这个实例单独使用的拦截器，可以为null
+     * @throws IllegalStateException 同一个名称已经用其他后台地址注册过
+     */
+    public static RetrofitUtils register(String name, String baseUrl, Interceptor interceptor) {
+        RetrofitUtils utils = mInstances.get(name);
+        if (utils != null) {
+            return checkBaseUrl(name, utils, baseUrl);
+        }
+        utils = new RetrofitUtils(getInstance(), name, baseUrl, interceptor);
+        RetrofitUtils old = mInstances.putIfAbsent(name, utils);
+        return old != null ? checkBaseUrl(name, old, baseUrl) : utils;
+    }
+
+    /**
+     * 已注册的实例地址不同时直接抛出，避免请求静默发到之前注册的地址
+     */
+    private static RetrofitUtils checkBaseUrl(String name, RetrofitUtils utils, String baseUrl) {
+        HttpUrl registered = utils.mRetrofit.baseUrl();
+        if (!registered.equals(HttpUrl.parse(baseUrl))) {
+            throw new IllegalStateException("RetrofitUtils " + name + " is already registered with " + registered
+                    + ", not " + baseUrl);
+        }
+        return utils;
+    }
+
+    /**
+     * 获取命名实例
+     *
+     * @throws IllegalStateException 没有注册时抛出
+     */
+    public static RetrofitUtils getInstance(String name) {
+        RetrofitUtils utils = mInstances.get(name);
+        if (utils == null) {
+            throw new IllegalStateException("RetrofitUtils " + name + " is not registered");
         }
-        return instance;
+        return utils;
+    }
+
+    /**
+     * 按后台地址获取实例，没有时以地址作为名称注册
+     */
+    public static RetrofitUtils getInstanceByUrl(String baseUrl) {
+        return register(baseUrl, baseUrl, null);
     }
 
     private RetrofitUtils() {
     }
 
-    private RetrofitUtils(IGsonConverterFactory factory) {
+    /**
+     * 由默认实例派生，共用OkHttpClient的线程池、连接池、cookie，以及Converter、CallAdapter
+     * 离线队列的拦截器换成这个实例的，队列中的请求通过这个实例的OkHttpClient重新发送
+     */
+    private RetrofitUtils(RetrofitUtils root, String name, String baseUrl, Interceptor interceptor) {
+        mFactory = root.mFactory;
+        mConfig = root.mConfig;
+        mOfflineQueue = root.mOfflineQueue;
+        OkHttpClient.Builder builder = root.okHttpClient.newBuilder();
+        List<Interceptor> interceptors = builder.interceptors();
+        for (int i = 0; i < interceptors.size(); i++) {
+            if (interceptors.get(i) instanceof OfflineQueueInterceptor) {
+                interceptors.set(i, new OfflineQueueInterceptor(mOfflineQueue, name));
+            }
+        }
+        if (interceptor != null) {
+            builder.addInterceptor(interceptor);
+        }
+        okHttpClient = builder.build();
+        if (mOfflineQueue != null) {
+            mOfflineQueue.attach(name, okHttpClient);
+        }
+        mRetrofit = root.mRetrofit.newBuilder()
+                .client(okHttpClient)
+                .baseUrl(baseUrl)
+                .build();
+    }
+
+    private RetrofitUtils(IGsonConverterFactory factory, HttpConfig config) {
         mFactory = factory;
+        mConfig = config;
         mRetrofit = new Retrofit.Builder()
                 .client(okHttpClient(mFactory.getContext()))
                 .baseUrl(mFactory.getBaseUrl())
                 .addConverterFactory(mFactory.create())
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                // 异步请求时并发由OkHttp的Dispatcher控制
+                .addCallAdapterFactory(mConfig.isAsyncCall() ? RxJava2CallAdapterFactory.createAsync() : RxJava2CallAdapterFactory.create())
+                .validateEagerly(mConfig.isValidateEagerly())
                 .build();
     }
 
@@ -71,6 +228,9 @@ public final class RetrofitUtils {
         if (okHttpClient == null) {
             // 构建 OkHttpClient 时,将 OkHttpClient.Builder() 传入 with() 方法,进行初始化配置 用于监听上传下载 url作为key
             okHttpClient = ProgressManager.getInstance().with(builderHttp(context)).build();
+            if (mOfflineQueue != null) {
+                mOfflineQueue.attach(okHttpClient);
+            }
         }
         return okHttpClient;
     }
@@ -79,16 +239,54 @@ public final class RetrofitUtils {
         //开启Log
         HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
         logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(mConfig.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(mConfig.getMaxRequestsPerHost());
         OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        builder.connectTimeout(CONNECT_TIME_OUT, TimeUnit.SECONDS)
-                .writeTimeout(WRITE_TIME_OUT, TimeUnit.SECONDS)
-                .readTimeout(READ_TIME_OUT, TimeUnit.SECONDS)
+        builder.connectTimeout(mConfig.getConnectTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .writeTimeout(mConfig.getWriteTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .readTimeout(mConfig.getReadTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(mConfig.getMaxIdleConnections(), mConfig.getKeepAliveMillis(), TimeUnit.MILLISECONDS))
                 // 失败是否重新请求
-                .retryOnConnectionFailure(true);
+                .retryOnConnectionFailure(true)
+                // 统计各阶段耗时，默认为 HttpMetrics，通过 HttpMetrics.getInstance().snapshot() 查看
+                .eventListenerFactory(mConfig.getEventListenerFactory());
+        if (mConfig.getProtocols() != null) {
+            builder.protocols(mConfig.getProtocols());
+        }
         if (BuildConfig.DEBUG) {
             builder.addInterceptor(logging);
         }
-        builder.addInterceptor(new ResponseInterceptor());
+        builder.addInterceptor(new ResponseInterceptor(mConfig.getMaxRewriteLength()));
+        // 在RouteTimeoutInterceptor之前添加，单个接口设置的超时优先
+        if (mConfig.isAdaptiveTimeout()) {
+            builder.addInterceptor(new AdaptiveTimeoutInterceptor());
+        }
+        if (!mConfig.getRouteTimeouts().isEmpty()) {
+            builder.addInterceptor(new RouteTimeoutInterceptor(mConfig.getRouteTimeouts()));
+        }
+        // 缓存，在ResponseInterceptor之后添加，读取缓存的返回也会经过ResponseInterceptor处理
+        boolean cacheEnabled = mConfig.getCacheSize() > 0;
+        if (cacheEnabled) {
+            builder.cache(new Cache(new File(context.getCacheDir(), "http"), mConfig.getCacheSize()));
+            builder.addNetworkInterceptor(new CacheNetworkInterceptor());
+        }
+        builder.addInterceptor(new CachePolicyInterceptor(cacheEnabled));
+        // 离线队列，在熔断之前添加，熔断时的请求也放入队列
+        if (mConfig.getOfflineQueueDirectory() != null) {
+            // 在队列自己的线程读取文件，这里不访问磁盘
+            mOfflineQueue = new OfflineRequestQueue(mConfig.getOfflineQueueDirectory(), new NetworkMonitorSource());
+            builder.addInterceptor(new OfflineQueueInterceptor(mOfflineQueue));
+        }
+        // 熔断，在CachePolicyInterceptor之后添加，熔断时 NETWORK_FIRST 的接口可以使用缓存
+        if (mConfig.getCircuitBreaker() != null) {
+            builder.addInterceptor(new CircuitBreakerInterceptor(mConfig.getCircuitBreaker()));
+        }
+        // 区分连接超时和读写超时，在上面的拦截器之后添加
+        ConnectPhaseInterceptor connectPhase = new ConnectPhaseInterceptor();
+        builder.addInterceptor(connectPhase);
+        builder.addNetworkInterceptor(connectPhase.networkInterceptor());
         // 保存session
         ClearableCookieJar cookieJar = new PersistentCookieJar(new SetCookieCache(), new SharedPrefsCookiePersistor(context));
         builder.cookieJar(cookieJar);
@@ -99,6 +297,13 @@ public final class RetrofitUtils {
         return builder;
     }
 
+    /**
+     * 离线队列，没有通过 {@link HttpConfig.Builder#offlineQueue(File)} 开启时为null
+     */
+    public OfflineRequestQueue getOfflineQueue() {
+        return mOfflineQueue;
+    }
+
     /**
      * 获取Retrofit
      */
@@ -106,8 +311,39 @@ public final class RetrofitUtils {
         return mRetrofit;
     }
 
+    /**
+     * 创建接口代理，同一个接口只会创建一次
+     */
+    @SuppressWarnings("unchecked")
     public <T> T create(Class<T> cls) {
-        return getRetrofit().create(cls);
+        Object service = mServices.get(cls);
+        if (service == null) {
+            service = getRetrofit().create(cls);
+            Object old = mServices.putIfAbsent(cls, service);
+            if (old != null) {
+                service = old;
+            }
+        }
+        return (T) service;
+    }
+
+    /**
+     * 在后台线程提前创建接口代理，{@link HttpConfig.Builder#validateEagerly(boolean)} 为true时同时解析所有方法，
+     * 之后在主线程调用 {@link #create(Class)} 直接返回缓存的代理
+     */
+    public void preload(final Class<?>... services) {
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                for (Class<?> service : services) {
+                    try {
+                        create(service);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
     }
 
 }
@@ -4,6 +4,7 @@ import io.reactivex.disposables.Disposable;
 
 /**
  * RxJavaAction管理接口
+ * 同一个tag可以添加多个请求，每个请求有唯一的handle
  *
  */
 
@@ -17,17 +18,40 @@ public interface RxActionManager<T> {
     void add(T tag, Disposable disposable);
 
     /**
-     * 移除
+     * 添加，返回这个请求的handle
+     *
+     * @param tag
+     * @param disposable
+     * @return 这个请求的handle
+     */
+    long addHandle(T tag, Disposable disposable);
+
+    /**
+     * 移除tag下的所有请求
      *
      * @param tag
      */
     void remove(T tag);
 
     /**
-     * 取消
+     * 移除一个请求
+     *
+     * @param handle {@link #addHandle(Object, Disposable)} 的返回值
+     */
+    void removeHandle(long handle);
+
+    /**
+     * 取消tag下的所有请求
      *
      * @param tag
      */
     void cancel(T tag);
 
+    /**
+     * 取消一个请求
+     *
+     * @param handle {@link #addHandle(Object, Disposable)} 的返回值
+     */
+    void cancelHandle(long handle);
+
 }
\ No newline at end of file
@@ -1,73 +1,369 @@
 package retrofit.http.retrofit;
 
-import android.annotation.TargetApi;
-import android.os.Build;
+import android.os.SystemClock;
 
-import androidx.collection.ArrayMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.reactivex.disposables.Disposable;
 
 /**
  * RxJavaAction管理实现类
+ * 1.同一个tag可以有多个请求，按tag、scope(页面、功能模块等)分组，添加、移除都是O(1)
+ * 2.可以在任意线程调用，每个tag/scope单独加锁
+ * 3.每次addHandle返回唯一的handle，通过 {@link #removeHandle(long)}、{@link #cancelHandle(long)} 只处理这一个请求
+ * 4.tag可以为null，这时不按tag分组，只能通过scope或handle处理；remove(null)、cancel(null)不做处理
+ * 5.通过 {@link #getLeaks(long, TimeUnit)} 查看长时间没有移除的请求
  */
 public class RxActionManagerImpl implements RxActionManager<Object> {
 
     private static volatile RxActionManagerImpl mInstance;
-    private ArrayMap<Object, Disposable> mMaps;//处理,请求列表
+    private final Clock mClock;
+    private final AtomicLong mNextHandle = new AtomicLong();
+    private final ConcurrentHashMap<Long, Entry> mHandles = new ConcurrentHashMap<>();//处理,请求列表
+    private final ConcurrentHashMap<Object, Group> mTags = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Object, Group> mScopes = new ConcurrentHashMap<>();
 
     public static RxActionManagerImpl getInstance() {
         if (mInstance == null) {
             synchronized (RxActionManagerImpl.class) {
                 if (mInstance == null) {
-                    mInstance = new RxActionManagerImpl();
+                    mInstance = new RxActionManagerImpl(Clock.SYSTEM);
                 }
             }
         }
         return mInstance;
     }
 
-    @TargetApi(Build.VERSION_CODES.KITKAT)
-    private RxActionManagerImpl() {
-        mMaps = new ArrayMap<>();
+    /**
+     * @param clock 记录添加时间，测试时可以传入自己控制的时间
+     */
+    RxActionManagerImpl(Clock clock) {
+        mClock = clock;
     }
 
-    @TargetApi(Build.VERSION_CODES.KITKAT)
     @Override
     public void add(Object tag, Disposable disposable) {
-        mMaps.put(tag, disposable);
+        addHandle(tag, null, disposable);
+    }
+
+    @Override
+    public long addHandle(Object tag, Disposable disposable) {
+        return addHandle(tag, null, disposable);
+    }
+
+    /**
+     * 添加，同一个tag已经有请求时不会覆盖
+     *
+     * @param scope 分组，通过 {@link #cancelScope(Object)} 取消整组请求，可以为null
+     */
+    public void add(Object tag, Object scope, Disposable disposable) {
+        addHandle(tag, scope, disposable);
+    }
+
+    /**
+     * 添加，同一个tag已经有请求时不会覆盖
+     *
+     * @param tag   可以为null，这时不按tag分组
+     * @param scope 分组，通过 {@link #cancelScope(Object)} 取消整组请求，可以为null
+     * @return 这个请求的handle
+     */
+    public long addHandle(Object tag, Object scope, Disposable disposable) {
+        Entry entry = new Entry(mNextHandle.incrementAndGet(), tag, scope, disposable, mClock.elapsedMillis());
+        mHandles.put(entry.handle, entry);
+        if (tag != null) {
+            addTo(mTags, tag, entry);
+        }
+        if (scope != null) {
+            addTo(mScopes, scope, entry);
+        }
+        return entry.handle;
     }
 
-    @TargetApi(Build.VERSION_CODES.KITKAT)
+    /**
+     * 移除tag下的所有请求，不取消
+     */
     @Override
     public void remove(Object tag) {
-        if (!mMaps.isEmpty()) {
-            mMaps.remove(tag);
+        if (tag == null) {
+            return;
+        }
+        Group group = mTags.get(tag);
+        if (group == null) {
+            return;
+        }
+        for (Entry entry : group.clear(mTags, tag)) {
+            mHandles.remove(entry.handle);
+            removeFrom(mScopes, entry.scope, entry);
         }
     }
 
-    @TargetApi(Build.VERSION_CODES.KITKAT)
+    /**
+     * 只移除一个请求，不取消
+     */
+    @Override
+    public void removeHandle(long handle) {
+        Entry entry = mHandles.remove(handle);
+        if (entry != null) {
+            removeFrom(mTags, entry.tag, entry);
+            removeFrom(mScopes, entry.scope, entry);
+        }
+    }
+
+    /**
+     * 取消并移除tag下的所有请求
+     */
     @Override
     public void cancel(Object tag) {
-        if (mMaps.isEmpty()) {
+        if (tag == null) {
+            return;
+        }
+        Group group = mTags.get(tag);
+        if (group == null) {
+            return;
+        }
+        for (Entry entry : group.clear(mTags, tag)) {
+            mHandles.remove(entry.handle);
+            removeFrom(mScopes, entry.scope, entry);
+            dispose(entry);
+        }
+    }
+
+    /**
+     * 只取消并移除一个请求
+     */
+    @Override
+    public void cancelHandle(long handle) {
+        Entry entry = mHandles.remove(handle);
+        if (entry != null) {
+            removeFrom(mTags, entry.tag, entry);
+            removeFrom(mScopes, entry.scope, entry);
+            dispose(entry);
+        }
+    }
+
+    /**
+     * 取消并移除scope下的所有请求，比如页面关闭时
+     */
+    public void cancelScope(Object scope) {
+        if (scope == null) {
             return;
         }
-        if (mMaps.get(tag) == null) {
+        Group group = mScopes.get(scope);
+        if (group == null) {
             return;
         }
-        if (!mMaps.get(tag).isDisposed()) {
-            mMaps.get(tag).dispose();
+        for (Entry entry : group.clear(mScopes, scope)) {
+            mHandles.remove(entry.handle);
+            removeFrom(mTags, entry.tag, entry);
+            dispose(entry);
         }
-        mMaps.remove(tag);
     }
 
     /**
-     * 判断是否取消了请求
+     * 判断是否取消了请求，tag下没有请求或者所有请求都已经处理时返回true
      *
      * @param tag
      * @return
      */
     public boolean isDisposed(Object tag) {
-        if (mMaps.isEmpty() || mMaps.get(tag) == null) return true;
-        return mMaps.get(tag).isDisposed();
+        if (tag == null) {
+            return true;
+        }
+        Group group = mTags.get(tag);
+        return group == null || group.isDisposed();
+    }
+
+    /**
+     * 当前管理的请求数
+     */
+    public int size() {
+        return mHandles.size();
+    }
+
+    /**
+     * 添加超过age还没有移除的请求，一般是没有在结束时调用remove，或者请求一直没有返回
+     */
+    public List<Leak> getLeaks(long age, TimeUnit unit) {
+        long now = mClock.elapsedMillis();
+        long ageMillis = unit.toMillis(age);
+        List<Leak> leaks = new ArrayList<>();
+        for (Entry entry : mHandles.values()) {
+            if (now - entry.addedAt >= ageMillis) {
+                leaks.add(new Leak(entry.tag, entry.scope, now - entry.addedAt, entry.disposable.isDisposed()));
+            }
+        }
+        return leaks;
+    }
+
+    /**
+     * 移除已经处理但没有移除的请求
+     *
+     * @return 移除的数量
+     */
+    public int purge() {
+        int purged = 0;
+        for (Entry entry : mHandles.values()) {
+            if (entry.disposable.isDisposed() && mHandles.remove(entry.handle, entry)) {
+                removeFrom(mTags, entry.tag, entry);
+                removeFrom(mScopes, entry.scope, entry);
+                purged++;
+            }
+        }
+        return purged;
+    }
+
+    private static void addTo(ConcurrentHashMap<Object, Group> map, Object key, Entry entry) {
+        while (true) {
+            Group group = map.get(key);
+            if (group == null) {
+                group = new Group();
+                Group old = map.putIfAbsent(key, group);
+                if (old != null) {
+                    group = old;
+                }
+            }
+            if (group.add(entry)) {
+                return;
+            }
+            // 分组刚被清空移除，重新创建
+        }
+    }
+
+    private static void removeFrom(ConcurrentHashMap<Object, Group> map, Object key, Entry entry) {
+        if (key == null) {
+            return;
+        }
+        Group group = map.get(key);
+        if (group != null) {
+            group.remove(map, key, entry.handle);
+        }
+    }
+
+    private static void dispose(Entry entry) {
+        if (!entry.disposable.isDisposed()) {
+            entry.disposable.dispose();
+        }
+    }
+
+    /**
+     * 同一个tag/scope下的请求，清空后标记为dead并从map中移除，之后的add会重新创建
+     */
+    private static final class Group {
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private boolean dead;
+
+        synchronized boolean add(Entry entry) {
+            if (dead) {
+                return false;
+            }
+            entries.put(entry.handle, entry);
+            return true;
+        }
+
+        synchronized void remove(ConcurrentHashMap<Object, Group> map, Object key, long handle) {
+            if (entries.remove(handle) != null && entries.isEmpty()) {
+                dead = true;
+                map.remove(key, this);
+            }
+        }
+
+        synchronized List<Entry> clear(ConcurrentHashMap<Object, Group> map, Object key) {
+            List<Entry> removed = new ArrayList<>(entries.values());
+            entries.clear();
+            dead = true;
+            map.remove(key, this);
+            return removed;
+        }
+
+        synchronized boolean isDisposed() {
+            for (Entry entry : entries.values()) {
+                if (!entry.disposable.isDisposed()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Entry {
+        final long handle;
+        final Object tag;
+        final Object scope;
+        final Disposable disposable;
+        final long addedAt;
+
+        Entry(long handle, Object tag, Object scope, Disposable disposable, long addedAt) {
+            this.handle = handle;
+            this.tag = tag;
+            this.scope = scope;
+            this.disposable = disposable;
+            this.addedAt = addedAt;
+        }
+    }
+
+    /**
+     * 单调递增的时间(毫秒)，只用于计算请求添加了多久
+     */
+    interface Clock {
+        Clock SYSTEM = new Clock() {
+            @Override
+            public long elapsedMillis() {
+                return SystemClock.elapsedRealtime();
+            }
+        };
+
+        long elapsedMillis();
+    }
+
+    /**
+     * 没有及时移除的请求
+     */
+    public static final class Leak {
+        private final Object tag;
+        private final Object scope;
+        private final long ageMillis;
+        private final boolean disposed;
+
+        Leak(Object tag, Object scope, long ageMillis, boolean disposed) {
+            this.tag = tag;
+            this.scope = scope;
+            this.ageMillis = ageMillis;
+            this.disposed = disposed;
+        }
+
+        public Object getTag() {
+            return tag;
+        }
+
+        public Object getScope() {
+            return scope;
+        }
+
+        public long getAgeMillis() {
+            return ageMillis;
+        }
+
+        /**
+         * true 已经取消或结束但没有移除，false 请求还在进行
+         */
+        public boolean isDisposed() {
+            return disposed;
+        }
+
+        @Override
+        public String toString() {
+            return "Leak{" +
+                "tag=" + tag +
+                ", scope=" + scope +
+                ", ageMillis=" + ageMillis +
+                ", disposed=" + disposed +
+                '}';
+        }
     }
 }
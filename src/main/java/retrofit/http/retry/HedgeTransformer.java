@@ -0,0 +1,254 @@
+package retrofit.http.retry;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Notification;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import retrofit.http.metrics.HistogramSnapshot;
+import retrofit.http.metrics.HttpMetrics;
+import retrofit.http.metrics.HttpPhase;
+import retrofit.http.metrics.LatencyHistogram;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
+
+/**
+ * @class describe 对冲请求:第一次请求超过耗时的某个百分位(默认p95)还没返回时，再发一次相同的请求，使用先返回数据的结果，
+ * 另一个请求会被取消(dispose 时 Retrofit 取消对应的 OkHttp Call)；先失败的请求不会抢先返回，另一个请求也失败时才返回错误
+ * 耗时统计只记录第一次请求的耗时，对冲请求从发出时开始计时，记录进来会低估第一次请求的耗时
+ * 额外的请求数受 {@link RetryBudget} 限制，默认不超过请求数的10%
+ * <h1>注意</h1>
+ * 会重复发送请求，只能用于幂等的接口(比如GET查询)，通过 HttpRxObservable.getObservable(apiObservable, transformer) 使用，
+ * 同一个接口复用同一个 HedgeTransformer，耗时统计才有意义
+ */
+public class HedgeTransformer<T> implements ObservableTransformer<T, T> {
+    private static final long REFRESH_MILLIS = 1000;//对冲等待时间最多每秒计算一次
+
+    private final LatencyHistogram mLatency;//耗时统计，单位为微秒
+    private final boolean mRecord;//是否由自己记录耗时
+    private final double mPercentile;
+    private final long mMinSamples;
+    private final long mMinDelayMillis;
+    private final long mMaxDelayMillis;
+    private final RetryBudget mBudget;
+    private final RequestPriority mPriority;
+    private volatile long mDelayMillis;
+    private volatile long mDelayUpdatedAt;
+    private volatile boolean mDelayComputed;//第一次调用时才计算，不能用时间差判断，避免溢出
+
+    private HedgeTransformer(Builder builder) {
+        mRecord = builder.latency == null;
+        mLatency = mRecord ? new LatencyHistogram() : builder.latency;
+        mPercentile = builder.percentile;
+        mMinSamples = builder.minSamples;
+        mMinDelayMillis = builder.minDelayMillis;
+        mMaxDelayMillis = builder.maxDelayMillis;
+        mBudget = builder.budget;
+        mPriority = builder.priority;
+        mDelayMillis = builder.maxDelayMillis;
+    }
+
+    @Override
+    public ObservableSource<T> apply(final Observable<T> upstream) {
+        return Observable.defer(new Callable<ObservableSource<T>>() {
+            @Override
+            public ObservableSource<T> call() throws Exception {
+                mBudget.onRequest();
+                final Race<T> race = new Race<>();
+                // 两个请求都按调用方的优先级在请求线程池订阅，Retrofit的请求是同步执行的；只统计第一次请求的耗时
+                final Scheduler scheduler = RequestScheduler.getInstance().scheduler(mPriority);
+                Observable<Attempt<T>> primary = attempt(Race.PRIMARY, record(upstream.subscribeOn(scheduler)));
+                Observable<Attempt<T>> hedge = Observable.timer(hedgeDelayMillis(), TimeUnit.MILLISECONDS, scheduler)
+                    .flatMap(new Function<Long, ObservableSource<Attempt<T>>>() {
+                        @Override
+                        public ObservableSource<Attempt<T>> apply(Long aLong) throws Exception {
+                            if (!mBudget.tryRetry()) {
+                                return Observable.empty();
+                            }
+                            race.hedgeStarted = true;
+                            return attempt(Race.HEDGE, upstream.subscribeOn(scheduler));
+                        }
+                    });
+                return Observable.merge(primary, hedge)
+                    .filter(race)
+                    .takeWhile(new Predicate<Attempt<T>>() {
+                        @Override
+                        public boolean test(Attempt<T> attempt) throws Exception {
+                            return !attempt.notification.isOnComplete();
+                        }
+                    })
+                    .flatMap(new Function<Attempt<T>, ObservableSource<T>>() {
+                        @Override
+                        public ObservableSource<T> apply(Attempt<T> attempt) throws Exception {
+                            Notification<T> notification = attempt.notification;
+                            if (notification.isOnError()) {
+                                return Observable.error(notification.getError());
+                            }
+                            return Observable.just(notification.getValue());
+                        }
+                    });
+            }
+        });
+    }
+
+    private static <T> Observable<Attempt<T>> attempt(final int index, Observable<T> source) {
+        return source.materialize().map(new Function<Notification<T>, Attempt<T>>() {
+            @Override
+            public Attempt<T> apply(Notification<T> notification) throws Exception {
+                return new Attempt<>(index, notification);
+            }
+        });
+    }
+
+    private Observable<T> record(Observable<T> source) {
+        if (!mRecord) {
+            return source;
+        }
+        final long start = System.nanoTime();
+        return source.doOnNext(new Consumer<T>() {
+            @Override
+            public void accept(T t) throws Exception {
+                mLatency.record((System.nanoTime() - start) / 1000);
+            }
+        });
+    }
+
+    /**
+     * 当前的对冲等待时间，样本数不足时使用最大值
+     */
+    public long hedgeDelayMillis() {
+        long now = System.nanoTime() / 1000000;
+        if (mDelayComputed && now - mDelayUpdatedAt < REFRESH_MILLIS) {
+            return mDelayMillis;
+        }
+        long delay = mMaxDelayMillis;
+        if (mLatency.getCount() >= mMinSamples) {
+            HistogramSnapshot snapshot = mLatency.snapshot();
+            delay = snapshot.getValueAtPercentile(mPercentile) / 1000;
+            delay = Math.max(mMinDelayMillis, Math.min(mMaxDelayMillis, delay));
+        }
+        mDelayMillis = delay;
+        mDelayUpdatedAt = now;
+        mDelayComputed = true;
+        return delay;
+    }
+
+    public RetryBudget getBudget() {
+        return mBudget;
+    }
+
+    private static final class Attempt<T> {
+        final int index;
+        final Notification<T> notification;
+
+        Attempt(int index, Notification<T> notification) {
+            this.index = index;
+            this.notification = notification;
+        }
+    }
+
+    /**
+     * 选出先返回数据的请求，之后只转发它的结果；
+     * 没有返回数据就失败(或结束)的请求，只有另一个请求也结束或者没有发出时才转发，失败的请求不会抢先返回
+     * merge 保证 test 串行调用
+     */
+    private static final class Race<T> implements Predicate<Attempt<T>> {
+        static final int PRIMARY = 0;
+        static final int HEDGE = 1;
+
+        volatile boolean hedgeStarted;
+        private int winner = -1;
+        private final boolean[] finished = new boolean[2];
+
+        @Override
+        public boolean test(Attempt<T> attempt) {
+            if (attempt.notification.isOnNext()) {
+                if (winner < 0) {
+                    winner = attempt.index;
+                }
+                return attempt.index == winner;
+            }
+            if (winner >= 0) {
+                return attempt.index == winner;
+            }
+            finished[attempt.index] = true;
+            boolean otherPending = attempt.index == PRIMARY ? hedgeStarted && !finished[HEDGE] : !finished[PRIMARY];
+            return !otherPending;
+        }
+    }
+
+    public static final class Builder {
+        private LatencyHistogram latency;
+        private double percentile = 95;
+        private long minSamples = 20;
+        private long minDelayMillis = 50;
+        private long maxDelayMillis = 2000;
+        private RetryBudget budget = new RetryBudget(0.1, 10);
+        private RequestPriority priority = RequestPriority.NORMAL;
+
+        /**
+         * 使用 {@link HttpMetrics} 中接口的整体耗时(CALL)计算对冲等待时间，
+         * 不设置时只统计经过这个 HedgeTransformer 的请求
+         *
+         * @param route 见 {@link HttpMetrics#route(okhttp3.HttpUrl)}
+         */
+        public Builder route(String route) {
+            this.latency = HttpMetrics.getInstance().getRoute(route).getHistogram(HttpPhase.CALL);
+            return this;
+        }
+
+        /**
+         * @param percentile 0~100，第一次请求超过这个百分位的耗时后发出对冲请求
+         */
+        public Builder percentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * 样本数少于 minSamples 时使用 maxDelay
+         */
+        public Builder minSamples(long minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * 对冲等待时间的范围
+         */
+        public Builder delayRange(long minDelay, long maxDelay, TimeUnit unit) {
+            if (minDelay > maxDelay) throw new IllegalArgumentException("minDelay > maxDelay");
+            this.minDelayMillis = unit.toMillis(minDelay);
+            this.maxDelayMillis = unit.toMillis(maxDelay);
+            return this;
+        }
+
+        /**
+         * 额外请求的预算，默认不超过请求数的10%
+         */
+        public Builder budget(RetryBudget budget) {
+            if (budget == null) throw new NullPointerException("budget == null");
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * 两个请求的优先级，和 HttpRxObservable.getObservable 传入的优先级一致，默认 NORMAL
+         */
+        public Builder priority(RequestPriority priority) {
+            if (priority == null) throw new NullPointerException("priority == null");
+            this.priority = priority;
+            return this;
+        }
+
+        public <T> HedgeTransformer<T> build() {
+            return new HedgeTransformer<T>(this);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package retrofit.http.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class describe 全局重试预算(令牌桶)，防止服务器故障时大量重试放大请求量
+ * 每个请求存入 ratio 个令牌，每次重试消耗1个令牌，令牌不足时不再重试；
+ * 比如 ratio = 0.1 时重试请求最多约占总请求的10%，另外保留 minRetries 个令牌应对请求较少的情况
+ * 同时统计请求数、重试次数、因预算不足放弃的次数
+ */
+public final class RetryBudget {
+    private static final long SCALE = 1000;//令牌按千分之一存储，用整数做无锁计算
+
+    private static volatile RetryBudget mDefault;
+
+    private final long mDeposit;
+    private final long mMaxTokens;
+    private final AtomicLong mTokens;
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mRetries = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+
+    /**
+     * 默认预算:重试不超过请求数的10%，最少保留10次
+     */
+    public static RetryBudget getDefault() {
+        if (mDefault == null) {
+            synchronized (RetryBudget.class) {
+                if (mDefault == null) {
+                    mDefault = new RetryBudget(0.1, 10);
+                }
+            }
+        }
+        return mDefault;
+    }
+
+    /**
+     * @param ratio      每个请求存入的令牌数
+     * @param minRetries 令牌桶上限，也是初始令牌数
+     */
+    public RetryBudget(double ratio, int minRetries) {
+        if (ratio < 0) throw new IllegalArgumentException("ratio < 0: " + ratio);
+        mDeposit = (long) (ratio * SCALE);
+        mMaxTokens = Math.max(1, minRetries) * SCALE;
+        mTokens = new AtomicLong(mMaxTokens);
+    }
+
+    /**
+     * 发起一次请求(不包括重试)
+     */
+    void onRequest() {
+        mRequests.incrementAndGet();
+        long tokens;
+        long next;
+        do {
+            tokens = mTokens.get();
+            next = Math.min(mMaxTokens, tokens + mDeposit);
+        } while (tokens != next && !mTokens.compareAndSet(tokens, next));
+    }
+
+    /**
+     * 申请一次重试
+     *
+     * @return false 预算不足，不能重试
+     */
+    boolean tryRetry() {
+        long tokens;
+        do {
+            tokens = mTokens.get();
+            if (tokens < SCALE) {
+                mRejected.incrementAndGet();
+                return false;
+            }
+        } while (!mTokens.compareAndSet(tokens, tokens - SCALE));
+        mRetries.incrementAndGet();
+        return true;
+    }
+
+    public long getRequestCount() {
+        return mRequests.get();
+    }
+
+    public long getRetryCount() {
+        return mRetries.get();
+    }
+
+    /**
+     * 因为预算不足放弃的重试次数
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryBudget{" +
+            "requests=" + mRequests.get() +
+            ", retries=" + mRetries.get() +
+            ", rejected=" + mRejected.get() +
+            ", tokens=" + (double) mTokens.get() / SCALE +
+            '}';
+    }
+}
@@ -0,0 +1,42 @@
+package retrofit.http.retry;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @class describe 单类异常的重试策略:最多重试次数，指数退避 + 随机抖动(full jitter)
+ * 第n次重试的等待时间在 [0, min(maxDelay, baseDelay * 2^n)] 之间随机
+ */
+public final class RetryPolicy {
+    private static final Random RANDOM = new Random();
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxRetries, long baseDelay, long maxDelay, TimeUnit unit) {
+        if (maxRetries < 0) throw new IllegalArgumentException("maxRetries < 0: " + maxRetries);
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = unit.toMillis(baseDelay);
+        this.maxDelayMillis = unit.toMillis(maxDelay);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param retry 第几次重试，从0开始
+     * @return 等待时间(毫秒)
+     */
+    long delayMillis(int retry) {
+        long ceiling = baseDelayMillis << Math.min(retry, 20);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+        if (ceiling <= 0) {
+            return 0;
+        }
+        return (long) (RANDOM.nextDouble() * ceiling);
+    }
+}
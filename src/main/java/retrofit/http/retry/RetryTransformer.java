@@ -0,0 +1,148 @@
+package retrofit.http.retry;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Function;
+import retrofit.http.exception.ConnectTimeoutException;
+import retrofit.http.intercept.ConnectPhaseInterceptor;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
+
+/**
+ * @class describe 网络请求失败重试，按异常类型设置 {@link RetryPolicy}，并受全局 {@link RetryBudget} 限制
+ * 通过 HttpRxObservable.getObservable(apiObservable, transformer) 使用，默认只对连接超时、连接失败重试，
+ * 服务器返回的错误(ServerException)不会重试
+ * 读写超时(SocketTimeoutException)时请求可能已经到达服务器，只有通过 {@link Builder#idempotent(boolean)}
+ * 声明接口是幂等的才会重试；连接阶段的超时请求还没有发出，总是按策略重试
+ */
+public class RetryTransformer<T> implements ObservableTransformer<T, T> {
+    private final Map<Class<? extends Throwable>, RetryPolicy> mPolicies;
+    private final RetryBudget mBudget;
+    private final boolean mIdempotent;
+    private final RequestPriority mPriority;
+
+    private RetryTransformer(Builder builder) {
+        mPolicies = new LinkedHashMap<>(builder.policies);
+        mBudget = builder.budget;
+        mIdempotent = builder.idempotent;
+        mPriority = builder.priority;
+    }
+
+    /**
+     * 默认策略:SocketTimeoutException、ConnectException 最多重试2次，等待 500ms 起，最长 5s，
+     * 按非幂等接口处理，只重试连接阶段的超时
+     */
+    public static <T> RetryTransformer<T> create() {
+        return new Builder().build();
+    }
+
+    @Override
+    public ObservableSource<T> apply(final Observable<T> upstream) {
+        return Observable.defer(new Callable<ObservableSource<T>>() {
+            @Override
+            public ObservableSource<T> call() throws Exception {
+                mBudget.onRequest();
+                return upstream.retryWhen(new Function<Observable<Throwable>, ObservableSource<?>>() {
+                    @Override
+                    public ObservableSource<?> apply(Observable<Throwable> errors) throws Exception {
+                        final int[] retries = new int[1];
+                        return errors.flatMap(new Function<Throwable, ObservableSource<?>>() {
+                            @Override
+                            public ObservableSource<?> apply(Throwable throwable) throws Exception {
+                                RetryPolicy policy = policyFor(throwable);
+                                if (policy == null || !isSafeToRetry(throwable) || retries[0] >= policy.getMaxRetries() || !mBudget.tryRetry()) {
+                                    return Observable.error(throwable);
+                                }
+                                long delay = policy.delayMillis(retries[0]++);
+                                // 按原来的优先级在请求线程池重新订阅，网络请求是同步执行的
+                                return Observable.timer(delay, TimeUnit.MILLISECONDS, RequestScheduler.getInstance().scheduler(mPriority));
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 非幂等的接口只在请求没有发出时重试，读写超时时服务器可能已经处理过
+     * 连接超时由 {@link ConnectPhaseInterceptor} 转为 {@link ConnectTimeoutException}，没有经过它的超时按读写超时处理
+     */
+    private boolean isSafeToRetry(Throwable throwable) {
+        return mIdempotent || !(throwable instanceof SocketTimeoutException) || throwable instanceof ConnectTimeoutException;
+    }
+
+    private RetryPolicy policyFor(Throwable throwable) {
+        for (Map.Entry<Class<? extends Throwable>, RetryPolicy> entry : mPolicies.entrySet()) {
+            if (entry.getKey().isInstance(throwable)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    public RetryBudget getBudget() {
+        return mBudget;
+    }
+
+    public static final class Builder {
+        private final Map<Class<? extends Throwable>, RetryPolicy> policies = new LinkedHashMap<>();
+        private RetryBudget budget = RetryBudget.getDefault();
+        private boolean useDefaults = true;
+        private boolean idempotent;
+        private RequestPriority priority = RequestPriority.NORMAL;
+
+        /**
+         * 设置某类异常的重试策略，按添加顺序匹配，设置后不再使用默认策略
+         */
+        public Builder policy(Class<? extends Throwable> type, RetryPolicy policy) {
+            if (useDefaults) {
+                policies.clear();
+                useDefaults = false;
+            }
+            policies.put(type, policy);
+            return this;
+        }
+
+        public Builder budget(RetryBudget budget) {
+            if (budget == null) throw new NullPointerException("budget == null");
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * 接口是幂等的(GET、PUT、DELETE等)，读写超时时也可以重试，默认false
+         * 非幂等的接口(比如提交订单)设置为true可能导致服务器重复处理
+         */
+        public Builder idempotent(boolean idempotent) {
+            this.idempotent = idempotent;
+            return this;
+        }
+
+        /**
+         * 重试请求的优先级，和 HttpRxObservable.getObservable 传入的优先级一致，默认 NORMAL
+         */
+        public Builder priority(RequestPriority priority) {
+            if (priority == null) throw new NullPointerException("priority == null");
+            this.priority = priority;
+            return this;
+        }
+
+        public <T> RetryTransformer<T> build() {
+            if (useDefaults) {
+                RetryPolicy policy = new RetryPolicy(2, 500, 5000, TimeUnit.MILLISECONDS);
+                policies.put(SocketTimeoutException.class, policy);
+                policies.put(ConnectException.class, policy);
+            }
+            return new RetryTransformer<T>(this);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package retrofit.http.scheduler;
+
+/**
+ * @class describe 请求优先级，线程都在忙时优先执行高优先级的请求，同一优先级按提交顺序执行
+ */
+public enum RequestPriority {
+    /**
+     * 用户正在等待的请求，比如登录、提交订单
+     */
+    CRITICAL,
+    /**
+     * 普通请求，默认优先级
+     */
+    NORMAL,
+    /**
+     * 预加载，只在没有其他请求等待时执行，并且按网络类型限制同时进行的数量
+     */
+    PREFETCH
+}
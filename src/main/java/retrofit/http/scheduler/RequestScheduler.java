@@ -0,0 +1,386 @@
+package retrofit.http.scheduler;
+
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import retrofit.http.metrics.LatencyHistogram;
+import retrofit.utils.NetWorkUtil;
+import retrofit.utils.NetworkMonitor;
+import retrofit.utils.NetworkState;
+
+/**
+ * @class describe 按优先级执行的线程池，代替 Schedulers.io()
+ * 网络请求使用 {@link #getInstance()}，RxAsyncTask 等本地任务使用 {@link #getTaskInstance()}，两者线程数和排队数量分开，
+ * 耗时的本地任务不会占用网络请求的线程
+ * 1.所有优先级共用一个 PriorityBlockingQueue 的 ThreadPoolExecutor，线程数固定，空闲时回收，
+ * 每个优先级对应一个 Executor，提交时带上优先级，再通过 Schedulers.from 转为RxJava的Scheduler
+ * 2.预加载请求按网络类型限制同时执行的数量:wifi 4个，3G 2个，2G/wap/没有网络 1个，等待中的预加载单独限制数量
+ * 3.通过 {@link #subscribeOn(RequestPriority)} 订阅时限制排队数量，超过上限后按 {@link RejectPolicy} 处理，
+ * NORMAL 只计算线程池中排队的任务，PREFETCH 只计算等待中的预加载，CRITICAL 的请求不受限制；
+ * 重试、对冲等已经开始的请求直接使用 {@link #scheduler(RequestPriority)}，不受限制
+ * 4.按优先级统计排队等待时间和执行时间(微秒)，排队时间从提交时开始计算，包括预加载等待的时间
+ * 通过 {@link retrofit.http.retrofit.HttpConfig.Builder#requestThreads(int, int)}、
+ * {@link retrofit.http.retrofit.HttpConfig.Builder#taskThreads(int, int)} 配置
+ */
+public class RequestScheduler {
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_MAX_QUEUE = 512;
+    public static final int DEFAULT_MAX_PREFETCH_QUEUE = 256;
+    public static final int DEFAULT_TASK_THREADS = 4;
+    public static final int DEFAULT_TASK_MAX_QUEUE = 128;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * 排队数量超过上限时的处理
+     */
+    public enum RejectPolicy {
+        /**
+         * 请求直接失败，返回 RejectedExecutionException
+         */
+        ABORT,
+        /**
+         * 在 Schedulers.io() 上执行，和原来一致，线程数不受限制
+         */
+        FALLBACK_IO
+    }
+
+    private static volatile RequestScheduler mInstance;
+    private static volatile RequestScheduler mTaskInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicLong mSequence = new AtomicLong();
+    private final Scheduler[] mSchedulers = new Scheduler[RequestPriority.values().length];
+    private final ConcurrentLinkedQueue<PriorityTask> mPrefetchQueue = new ConcurrentLinkedQueue<>();//等待执行的预加载
+    private final AtomicInteger mPrefetchRunning = new AtomicInteger();
+    private final LatencyHistogram[] mQueueWait = new LatencyHistogram[RequestPriority.values().length];
+    private final LatencyHistogram[] mRunTime = new LatencyHistogram[RequestPriority.values().length];
+    private final AtomicLong mRejected = new AtomicLong();
+    private volatile int mMaxQueue;
+    private volatile int mMaxPrefetchQueue = DEFAULT_MAX_PREFETCH_QUEUE;
+    private volatile RejectPolicy mRejectPolicy = RejectPolicy.ABORT;
+
+    public static RequestScheduler getInstance() {
+        if (mInstance == null) {
+            synchronized (RequestScheduler.class) {
+                if (mInstance == null) {
+                    mInstance = new RequestScheduler("http-request-", DEFAULT_THREADS, DEFAULT_MAX_QUEUE);
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    /**
+     * RxAsyncTask 等本地任务使用的线程池，默认4个线程，和网络请求分开
+     */
+    public static RequestScheduler getTaskInstance() {
+        if (mTaskInstance == null) {
+            synchronized (RequestScheduler.class) {
+                if (mTaskInstance == null) {
+                    mTaskInstance = new RequestScheduler("async-task-", DEFAULT_TASK_THREADS, DEFAULT_TASK_MAX_QUEUE);
+                }
+            }
+        }
+        return mTaskInstance;
+    }
+
+    private RequestScheduler(final String name, int threads, int maxQueue) {
+        mMaxQueue = maxQueue;
+        mExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, name + mCount.incrementAndGet());
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+        for (final RequestPriority priority : RequestPriority.values()) {
+            mQueueWait[priority.ordinal()] = new LatencyHistogram();
+            mRunTime[priority.ordinal()] = new LatencyHistogram();
+            mSchedulers[priority.ordinal()] = Schedulers.from(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    RequestScheduler.this.execute(command, priority);
+                }
+            });
+        }
+        // 网络变好时继续执行等待中的预加载
+        NetworkMonitor.getInstance().addListener(new NetworkMonitor.Listener() {
+            @Override
+            public void onNetworkChanged(NetworkState state) {
+                drainPrefetch();
+            }
+        });
+    }
+
+    /**
+     * 设置线程数、排队上限和超过上限时的处理，由 RetrofitUtils.init 调用，可以在运行中修改
+     *
+     * @param maxQueue         线程池中排队的任务上限，对 NORMAL 生效
+     * @param maxPrefetchQueue 等待中的预加载上限，对 PREFETCH 生效
+     */
+    public void configure(int threads, int maxQueue, int maxPrefetchQueue, RejectPolicy policy) {
+        if (threads < 1) throw new IllegalArgumentException("threads < 1: " + threads);
+        if (threads >= mExecutor.getMaximumPoolSize()) {
+            mExecutor.setMaximumPoolSize(threads);
+            mExecutor.setCorePoolSize(threads);
+        } else {
+            mExecutor.setCorePoolSize(threads);
+            mExecutor.setMaximumPoolSize(threads);
+        }
+        mMaxQueue = maxQueue;
+        mMaxPrefetchQueue = maxPrefetchQueue;
+        mRejectPolicy = policy;
+    }
+
+    /**
+     * 对应优先级的Scheduler，不限制排队数量
+     */
+    public Scheduler scheduler(RequestPriority priority) {
+        return mSchedulers[priority.ordinal()];
+    }
+
+    /**
+     * 代替 subscribeOn(Schedulers.io())，排队数量超过上限时按 {@link RejectPolicy} 处理
+     */
+    public <T> SubscribeOnTransformer<T> subscribeOn(RequestPriority priority) {
+        return new SubscribeOnTransformer<T>(priority);
+    }
+
+    /**
+     * 是否可以再提交这个优先级的任务，预加载不计入 NORMAL 的排队数量，否则预加载排满后普通请求会被拒绝
+     */
+    private boolean admit(RequestPriority priority) {
+        switch (priority) {
+            case CRITICAL:
+                return true;
+            case PREFETCH:
+                if (mPrefetchQueue.size() < mMaxPrefetchQueue) {
+                    return true;
+                }
+                break;
+            default:
+                if (mExecutor.getQueue().size() < mMaxQueue) {
+                    return true;
+                }
+                break;
+        }
+        mRejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 按优先级执行
+     */
+    public void execute(Runnable command, RequestPriority priority) {
+        // 排队时间从这里开始计算，预加载在 mPrefetchQueue 中等待的时间也计算在内
+        long submittedAt = System.nanoTime();
+        if (priority == RequestPriority.PREFETCH) {
+            mPrefetchQueue.offer(new PriorityTask(prefetch(command), priority, mSequence.getAndIncrement(), submittedAt));
+            drainPrefetch();
+        } else {
+            mExecutor.execute(new PriorityTask(command, priority, mSequence.getAndIncrement(), submittedAt));
+        }
+    }
+
+    /**
+     * 排队等待时间，单位微秒
+     */
+    public LatencyHistogram getQueueWait(RequestPriority priority) {
+        return mQueueWait[priority.ordinal()];
+    }
+
+    /**
+     * 执行时间，单位微秒
+     */
+    public LatencyHistogram getRunTime(RequestPriority priority) {
+        return mRunTime[priority.ordinal()];
+    }
+
+    /**
+     * 因为排队数量超过上限被拒绝或转到 Schedulers.io() 的请求数
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    /**
+     * 正在执行的任务数
+     */
+    public int getActiveCount() {
+        return mExecutor.getActiveCount();
+    }
+
+    /**
+     * 当前的线程数
+     */
+    public int getPoolSize() {
+        return mExecutor.getPoolSize();
+    }
+
+    /**
+     * 等待执行的任务数，包括等待中的预加载
+     */
+    public int getQueueSize() {
+        return mExecutor.getQueue().size() + mPrefetchQueue.size();
+    }
+
+    /**
+     * 等待中的预加载数量
+     */
+    public int getPrefetchQueueSize() {
+        return mPrefetchQueue.size();
+    }
+
+    private void drainPrefetch() {
+        while (!mPrefetchQueue.isEmpty()) {
+            int running = mPrefetchRunning.get();
+            if (running >= prefetchLimit()) {
+                return;
+            }
+            if (!mPrefetchRunning.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            PriorityTask task = mPrefetchQueue.poll();
+            if (task == null) {
+                mPrefetchRunning.decrementAndGet();
+                continue;
+            }
+            mExecutor.execute(task);
+        }
+    }
+
+    /**
+     * 预加载执行完后释放名额，继续执行等待中的预加载
+     */
+    private Runnable prefetch(final Runnable command) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.run();
+                } finally {
+                    mPrefetchRunning.decrementAndGet();
+                    drainPrefetch();
+                }
+            }
+        };
+    }
+
+    private static int prefetchLimit() {
+        if (!NetworkMonitor.getInstance().isStarted()) {
+            // 没有调用NetWorkUtil.init，无法判断网络类型
+            return 4;
+        }
+        switch (NetWorkUtil.getNetWorkType()) {
+            case NetWorkUtil.NETWORKTYPE_WIFI:
+                return 4;
+            case NetWorkUtil.NETWORKTYPE_3G:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * 优先级高的先执行，同一优先级先提交的先执行
+     */
+    private final class PriorityTask implements Runnable, Comparable<PriorityTask> {
+        private final Runnable command;
+        private final RequestPriority priority;
+        private final long sequence;
+        private final long submittedAt;
+
+        PriorityTask(Runnable command, RequestPriority priority, long sequence, long submittedAt) {
+            this.command = command;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.submittedAt = submittedAt;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            mQueueWait[priority.ordinal()].record((start - submittedAt) / 1000);
+            try {
+                command.run();
+            } finally {
+                mRunTime[priority.ordinal()].record((System.nanoTime() - start) / 1000);
+            }
+        }
+
+        @Override
+        public int compareTo(PriorityTask other) {
+            if (priority != other.priority) {
+                return priority.ordinal() < other.priority.ordinal() ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * 订阅时检查排队数量，见 {@link #subscribeOn(RequestPriority)}
+     */
+    public final class SubscribeOnTransformer<T> implements ObservableTransformer<T, T>, FlowableTransformer<T, T> {
+        private final RequestPriority priority;
+
+        SubscribeOnTransformer(RequestPriority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public ObservableSource<T> apply(final Observable<T> upstream) {
+            return Observable.defer(new Callable<ObservableSource<T>>() {
+                @Override
+                public ObservableSource<T> call() throws Exception {
+                    if (admit(priority)) {
+                        return upstream.subscribeOn(scheduler(priority));
+                    }
+                    if (mRejectPolicy == RejectPolicy.FALLBACK_IO) {
+                        return upstream.subscribeOn(Schedulers.io());
+                    }
+                    return Observable.error(rejected());
+                }
+            });
+        }
+
+        @Override
+        public Publisher<T> apply(final Flowable<T> upstream) {
+            return Flowable.defer(new Callable<Publisher<T>>() {
+                @Override
+                public Publisher<T> call() throws Exception {
+                    if (admit(priority)) {
+                        return upstream.subscribeOn(scheduler(priority));
+                    }
+                    if (mRejectPolicy == RejectPolicy.FALLBACK_IO) {
+                        return upstream.subscribeOn(Schedulers.io());
+                    }
+                    return Flowable.error(rejected());
+                }
+            });
+        }
+
+        private RejectedExecutionException rejected() {
+            return new RejectedExecutionException("request queue is full: " + getQueueSize() + ", priority " + priority);
+        }
+    }
+}
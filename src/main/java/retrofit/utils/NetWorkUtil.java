@@ -36,11 +36,19 @@ public class NetWorkUtil {
      * wifi网络
      */
     public static final int NETWORKTYPE_WIFI = 4;
-    private static int mNetWorkType;
 
     private NetWorkUtil(){}
     public static void init(Context mContext){
         context = mContext.getApplicationContext();
+        NetworkMonitor.getInstance().start(context);
+    }
+
+    /**
+     * 是否已经调用 init
+     * @return
+     */
+    public static boolean isInit() {
+        return context != null;
     }
 
     /**
@@ -48,34 +56,44 @@ public class NetWorkUtil {
      * @return
      */
     public static boolean isConnected() {
-        if (context == null) {
-            return false;
-        }
-        return !(getNetWorkType() == NETWORKTYPE_INVALID);
+        return NetworkMonitor.getInstance().getState().isConnected();
+    }
+
+    /**
+     * 判断是否确定没有网络，没有调用 init 时无法判断，返回false
+     * @return
+     */
+    public static boolean isOffline() {
+        NetworkMonitor monitor = NetworkMonitor.getInstance();
+        return monitor.isStarted() && !monitor.getState().isConnected();
     }
 
     /**
-     * 获取网络状态，wifi,wap,2g,3g.
+     * 获取网络状态，wifi,wap,2g,3g. 读取 {@link NetworkMonitor} 缓存的状态，不访问系统服务
      *
      * @return int 网络状态 {@link #NETWORKTYPE_2G},{@link #NETWORKTYPE_3G},          *{@link #NETWORKTYPE_INVALID},{@link #NETWORKTYPE_WAP}* <p>{@link #NETWORKTYPE_WIFI}
      */
     public static int getNetWorkType() {
-        ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return NetworkMonitor.getInstance().getState().getType();
+    }
+
+    /**
+     * 从系统获取网络类型，只在网络变化时由 {@link NetworkMonitor} 调用
+     */
+    static int queryNetWorkType(Context context, ConnectivityManager manager) {
         NetworkInfo networkInfo = manager.getActiveNetworkInfo();
-        if (networkInfo != null && networkInfo.isConnected()) {
-            String type = networkInfo.getTypeName();
-            if (type.equalsIgnoreCase("WIFI")) {
-                mNetWorkType = NETWORKTYPE_WIFI;
-            } else if (type.equalsIgnoreCase("MOBILE")) {
-                String proxyHost = android.net.Proxy.getDefaultHost();
-                mNetWorkType = TextUtils.isEmpty(proxyHost)
-                        ? (isFastMobileNetwork(context) ? NETWORKTYPE_3G : NETWORKTYPE_2G)
-                        : NETWORKTYPE_WAP;
-            }
-        } else {
-            mNetWorkType = NETWORKTYPE_INVALID;
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return NETWORKTYPE_INVALID;
+        }
+        String type = networkInfo.getTypeName();
+        if (type.equalsIgnoreCase("MOBILE")) {
+            String proxyHost = android.net.Proxy.getDefaultHost();
+            return TextUtils.isEmpty(proxyHost)
+                    ? (isFastMobileNetwork(context) ? NETWORKTYPE_3G : NETWORKTYPE_2G)
+                    : NETWORKTYPE_WAP;
         }
-        return mNetWorkType;
+        // 以太网等其他连接按wifi处理
+        return NETWORKTYPE_WIFI;
     }
 
     /**
@@ -85,7 +103,7 @@ public class NetWorkUtil {
      * @return
      */
     private static boolean isFastMobileNetwork(Context context) {
-        TelephonyManager telephonyManager = (TelephonyManager) NetWorkUtil.context.getSystemService(Context.TELEPHONY_SERVICE);
+        TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
         switch (telephonyManager.getNetworkType()) {
             case TelephonyManager.NETWORK_TYPE_1xRTT:
                 return false; // ~ 50-100 kbps
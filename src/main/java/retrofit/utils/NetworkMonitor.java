@@ -0,0 +1,208 @@
+package retrofit.utils;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import retrofit.recevier.NetworkReceiver;
+
+/**
+ * @class describe 监听网络变化并缓存当前网络状态，只注册一次
+ * Android 5.0及以上使用 ConnectivityManager.NetworkCallback，以下使用 {@link NetworkReceiver} 广播
+ * 网络变化时才访问系统服务更新 {@link NetworkState}，{@link #getState()} 只读取volatile字段，
+ * 下行带宽只在网络类别变化时更新
+ * 监听回调在主线程，连续的变化会合并，只回调最后的状态
+ */
+public class NetworkMonitor {
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private static volatile NetworkMonitor mInstance;
+
+    private final AtomicBoolean mStarting = new AtomicBoolean();
+    private volatile boolean mStarted;//第一次获取状态完成后才为true
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private volatile Context mContext;//注册监听前设置，系统回调在其他线程
+    private volatile NetworkState mState = NetworkState.INVALID;
+    private NetworkState mDispatched;//最后一次回调的状态，只在主线程访问
+
+    private final Runnable mDispatch = new Runnable() {
+        @Override
+        public void run() {
+            NetworkState state = mState;
+            if (state.equals(mDispatched)) {
+                return;
+            }
+            mDispatched = state;
+            for (Listener listener : mListeners) {
+                listener.onNetworkChanged(state);
+            }
+        }
+    };
+
+    public interface Listener {
+        /**
+         * 网络状态改变，在主线程回调
+         */
+        void onNetworkChanged(NetworkState state);
+    }
+
+    public static NetworkMonitor getInstance() {
+        if (mInstance == null) {
+            synchronized (NetworkMonitor.class) {
+                if (mInstance == null) {
+                    mInstance = new NetworkMonitor();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    private NetworkMonitor() {
+    }
+
+    /**
+     * 开始监听，由 {@link NetWorkUtil#init(Context)} 调用，重复调用无效
+     */
+    public void start(Context context) {
+        if (!mStarting.compareAndSet(false, true)) {
+            return;
+        }
+        mContext = context.getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            registerCallback();
+        } else {
+            mContext.registerReceiver(new NetworkReceiver(new NetworkReceiver.NetWorkChangeListener() {
+                @Override
+                public void onNetWorkChange(boolean isConnect) {
+                    refresh(null);
+                }
+            }), new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+        refresh(null);
+        mDispatched = mState;
+        mStarted = true;
+    }
+
+    /**
+     * 第一次获取网络状态完成后才返回true，之前 {@link #getState()} 还是默认的没有网络
+     */
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * 当前网络状态，没有调用 start 时为没有网络
+     */
+    public NetworkState getState() {
+        return mState;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void registerCallback() {
+        ConnectivityManager manager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        Callback callback = new Callback();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            manager.registerDefaultNetworkCallback(callback);
+        } else {
+            NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+            manager.registerNetworkCallback(request, callback);
+        }
+    }
+
+    /**
+     * 重新获取网络状态，只在网络变化时调用
+     *
+     * @param capabilities 回调中带的网络能力，为null时从系统获取
+     */
+    private void refresh(NetworkCapabilities capabilities) {
+        ConnectivityManager manager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        int type = NetWorkUtil.queryNetWorkType(mContext, manager);
+        NetworkState state;
+        if (type == NetWorkUtil.NETWORKTYPE_INVALID) {
+            state = NetworkState.INVALID;
+        } else {
+            state = new NetworkState(type, manager.isActiveNetworkMetered(), downstreamKbps(manager, capabilities));
+        }
+        mState = state;
+        mHandler.removeCallbacks(mDispatch);
+        mHandler.postDelayed(mDispatch, DEBOUNCE_MILLIS);
+    }
+
+    private static int downstreamKbps(ConnectivityManager manager, NetworkCapabilities capabilities) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return NetworkState.UNKNOWN_BANDWIDTH;
+        }
+        if (capabilities == null) {
+            Network network = manager.getActiveNetwork();
+            capabilities = network != null ? manager.getNetworkCapabilities(network) : null;
+        }
+        return capabilities != null ? capabilities.getLinkDownstreamBandwidthKbps() : NetworkState.UNKNOWN_BANDWIDTH;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private class Callback extends ConnectivityManager.NetworkCallback {
+        private int mNetworkClass = -1;//上次刷新时的网络类别，只在系统回调的线程访问
+
+        @Override
+        public void onAvailable(Network network) {
+            mNetworkClass = -1;
+            refresh(null);
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+            // 信号强度等变化时回调很频繁，网络类别没有变化时不再访问系统服务
+            int networkClass = networkClass(networkCapabilities);
+            if (networkClass == mNetworkClass) {
+                return;
+            }
+            mNetworkClass = networkClass;
+            // 只有默认网络的回调(7.0及以上)带的能力一定是当前网络的
+            refresh(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? networkCapabilities : null);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            mNetworkClass = -1;
+            refresh(null);
+        }
+    }
+
+    /**
+     * 网络类别:传输方式、是否计费，以及粗略的带宽等级(2G/3G/更快)，带宽的小幅波动不算变化
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static int networkClass(NetworkCapabilities capabilities) {
+        int networkClass = 0;
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) networkClass |= 1;
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) networkClass |= 1 << 1;
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) networkClass |= 1 << 2;
+        if (capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) networkClass |= 1 << 3;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            int kbps = capabilities.getLinkDownstreamBandwidthKbps();
+            networkClass |= (kbps < 150 ? 0 : kbps < 1500 ? 1 : 2) << 4;
+        }
+        return networkClass;
+    }
+}
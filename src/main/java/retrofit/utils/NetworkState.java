@@ -0,0 +1,70 @@
+package retrofit.utils;
+
+/**
+ * @class describe 网络状态快照，由 {@link NetworkMonitor} 在网络变化时更新，读取不需要访问系统服务
+ */
+public final class NetworkState {
+    public static final int UNKNOWN_BANDWIDTH = -1;
+
+    static final NetworkState INVALID = new NetworkState(NetWorkUtil.NETWORKTYPE_INVALID, false, UNKNOWN_BANDWIDTH);
+
+    private final int type;
+    private final boolean metered;
+    private final int downstreamKbps;
+
+    NetworkState(int type, boolean metered, int downstreamKbps) {
+        this.type = type;
+        this.metered = metered;
+        this.downstreamKbps = downstreamKbps;
+    }
+
+    /**
+     * @return {@link NetWorkUtil#NETWORKTYPE_INVALID} 等
+     */
+    public int getType() {
+        return type;
+    }
+
+    public boolean isConnected() {
+        return type != NetWorkUtil.NETWORKTYPE_INVALID;
+    }
+
+    /**
+     * 是否为计费网络(移动网络、热点等)
+     */
+    public boolean isMetered() {
+        return metered;
+    }
+
+    /**
+     * 系统估计的下行带宽，Android 6.0以下或无法获取时为 {@link #UNKNOWN_BANDWIDTH}
+     */
+    public int getDownstreamKbps() {
+        return downstreamKbps;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NetworkState)) return false;
+        NetworkState that = (NetworkState) o;
+        return type == that.type && metered == that.metered && downstreamKbps == that.downstreamKbps;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type;
+        result = 31 * result + (metered ? 1 : 0);
+        result = 31 * result + downstreamKbps;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkState{" +
+            "type=" + type +
+            ", metered=" + metered +
+            ", downstreamKbps=" + downstreamKbps +
+            '}';
+    }
+}
@@ -1,5 +1,7 @@
 package retrofit.utils;
 
+import androidx.lifecycle.Lifecycle;
+
 import com.trello.rxlifecycle2.LifecycleProvider;
 import com.trello.rxlifecycle2.android.ActivityEvent;
 
@@ -10,9 +12,12 @@ import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.FlowableTransformer;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.functions.Consumer;
-import io.reactivex.schedulers.Schedulers;
+import retrofit.http.observer.LifecycleOwnerTransformer;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
 
 /**
  * RxJava2.0封装异步任务RxAsyncTask
@@ -23,14 +28,24 @@ import io.reactivex.schedulers.Schedulers;
 public abstract class RxAsyncTask<Param, Progress, Result> {
     private Flowable<Progress[]> mFlowable2;
     private final LifecycleProvider mActivity;
+    private final Lifecycle mLifecycle;
 
     public RxAsyncTask(LifecycleProvider activity) {
         mActivity = activity;
+        mLifecycle = null;
+    }
+
+    /**
+     * 不需要继承RxActivity,传入androidx的Lifecycle(getLifecycle()),onDestroy时取消
+     */
+    public RxAsyncTask(Lifecycle lifecycle) {
+        mActivity = null;
+        mLifecycle = lifecycle;
     }
 
     @SafeVarargs
     private final void rxTask(final Param... params) {
-        if (mActivity == null) return;
+        if (mActivity == null && mLifecycle == null) return;
         Flowable flowable = Flowable.create(new FlowableOnSubscribe<Result>() {
             @Override
             public void subscribe(FlowableEmitter<Result> e) throws Exception {
@@ -38,8 +53,15 @@ public abstract class RxAsyncTask<Param, Progress, Result> {
                 e.onComplete();
             }
         }, BackpressureStrategy.BUFFER);
-        flowable.subscribeOn(Schedulers.io())
-                .compose(mActivity.bindUntilEvent(ActivityEvent.DESTROY))//需要在这个位置添加
+        FlowableTransformer lifecycle;
+        if (mActivity != null) {
+            lifecycle = mActivity.bindUntilEvent(ActivityEvent.DESTROY);
+        } else {
+            lifecycle = LifecycleOwnerTransformer.bindUntilEvent(mLifecycle, Lifecycle.Event.ON_DESTROY);
+        }
+        // 使用单独的线程池，不占用网络请求的线程，排队太多时通过onError返回RejectedExecutionException
+        flowable.compose(RequestScheduler.getTaskInstance().<Result>subscribeOn(RequestPriority.NORMAL))
+                .compose(lifecycle)//需要在这个位置添加
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(new Subscriber<Result>() {
                     @Override
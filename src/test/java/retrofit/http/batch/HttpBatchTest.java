@@ -0,0 +1,210 @@
+package retrofit.http.batch;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import retrofit.http.exception.ExceptionEngine;
+import retrofit.http.metrics.LatencyHistogram;
+import retrofit.http.retrofit.IHttpResponse;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpBatchTest {
+
+    @BeforeClass
+    public static void setUpMainThread() {
+        Function<Callable<Scheduler>, Scheduler> init = new Function<Callable<Scheduler>, Scheduler>() {
+            @Override
+            public Scheduler apply(Callable<Scheduler> callable) {
+                return Schedulers.trampoline();
+            }
+        };
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(init);
+        RxAndroidPlugins.setMainThreadSchedulerHandler(new Function<Scheduler, Scheduler>() {
+            @Override
+            public Scheduler apply(Scheduler scheduler) {
+                return Schedulers.trampoline();
+            }
+        });
+    }
+
+    @AfterClass
+    public static void tearDownMainThread() {
+        RxAndroidPlugins.reset();
+    }
+
+    @Test
+    public void collectsResultsAndErrors() {
+        HttpBatch batch = new HttpBatch();
+        BatchKey<String> ok = batch.add(Observable.just(Resp.ok("a")));
+        BatchKey<String> server = batch.add(Observable.just(Resp.<String>error(1001, "expired")));
+        BatchKey<String> failed = batch.add(Observable.<IHttpResponse<String>>error(new IllegalStateException()));
+        BatchResult result = batch.execute().blockingFirst();
+        assertEquals(3, result.size());
+        assertEquals("a", result.get(ok));
+        assertTrue(result.isSuccess(ok));
+        assertEquals(1001, result.getError(server).getCode());
+        assertEquals(ExceptionEngine.UN_KNOWN_ERROR, result.getError(failed).getCode());
+        assertFalse(result.isAllSuccess());
+    }
+
+    @Test
+    public void emptyMemberIsReportedAsError() {
+        HttpBatch batch = new HttpBatch();
+        BatchKey<String> ok = batch.add(Observable.just(Resp.ok("a")));
+        BatchKey<String> empty = batch.add(Observable.<IHttpResponse<String>>empty());
+        BatchResult result = batch.execute().blockingFirst();
+        assertTrue(result.isSuccess(ok));
+        assertFalse(result.isSuccess(empty));
+        assertNull(result.get(empty));
+        assertTrue(result.getError(empty).getCause() instanceof NoSuchElementException);
+    }
+
+    @Test
+    public void onlyFirstValueIsUsedAndUpstreamIsDisposed() {
+        final AtomicInteger disposed = new AtomicInteger();
+        HttpBatch batch = new HttpBatch();
+        BatchKey<String> key = batch.add(Observable.<IHttpResponse<String>>just(Resp.ok("first"))
+            .concatWith(Observable.<IHttpResponse<String>>never())
+            .doOnDispose(new Action() {
+                @Override
+                public void run() {
+                    disposed.incrementAndGet();
+                }
+            }));
+        assertEquals("first", batch.execute().blockingFirst().get(key));
+        assertEquals(1, disposed.get());
+    }
+
+    @Test
+    public void concurrencyIsLimited() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        HttpBatch batch = new HttpBatch(2);
+        for (int i = 0; i < 8; i++) {
+            batch.add(Observable.just(Resp.ok("v"))
+                .delay(30, TimeUnit.MILLISECONDS)
+                .doOnSubscribe(new Consumer<Object>() {
+                    @Override
+                    public void accept(Object o) {
+                        peak.set(Math.max(peak.get(), running.incrementAndGet()));
+                    }
+                })
+                .doFinally(new Action() {
+                    @Override
+                    public void run() {
+                        running.decrementAndGet();
+                    }
+                }));
+        }
+        assertTrue(batch.execute().blockingFirst().isAllSuccess());
+        assertTrue(String.valueOf(peak.get()), peak.get() <= 2);
+    }
+
+    @Test
+    public void requestsUseBatchPriority() {
+        LatencyHistogram critical = RequestScheduler.getInstance().getQueueWait(RequestPriority.CRITICAL);
+        long before = critical.getCount();
+        HttpBatch batch = new HttpBatch(2, RequestPriority.CRITICAL);
+        for (int i = 0; i < 3; i++) {
+            batch.add(Observable.just(Resp.ok("v")));
+        }
+        assertTrue(batch.execute().blockingFirst().isAllSuccess());
+        assertTrue(critical.getCount() >= before + 3);
+    }
+
+    @Test
+    public void rejectedRequestsFailAlone() throws InterruptedException {
+        RequestScheduler scheduler = RequestScheduler.getInstance();
+        scheduler.configure(1, 1, RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, RequestScheduler.RejectPolicy.ABORT);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            // 一个任务占住线程，一个任务在排队，NORMAL 的请求都会被拒绝
+            scheduler.execute(blocker, RequestPriority.NORMAL);
+            scheduler.execute(blocker, RequestPriority.NORMAL);
+            HttpBatch batch = new HttpBatch();
+            BatchKey<String> first = batch.add(Observable.just(Resp.ok("a")));
+            BatchKey<String> second = batch.add(Observable.just(Resp.ok("b")));
+            BatchResult result = batch.execute().blockingFirst();
+            assertEquals(ExceptionEngine.QUEUE_FULL_ERROR, result.getError(first).getCode());
+            assertEquals(ExceptionEngine.QUEUE_FULL_ERROR, result.getError(second).getCode());
+        } finally {
+            release.countDown();
+            scheduler.configure(RequestScheduler.DEFAULT_THREADS, RequestScheduler.DEFAULT_MAX_QUEUE,
+                RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, RequestScheduler.RejectPolicy.ABORT);
+        }
+    }
+
+    static class Resp<T> implements IHttpResponse<T> {
+        int code;
+        String msg;
+        T result;
+
+        static <T> Resp<T> ok(T result) {
+            Resp<T> resp = new Resp<>();
+            resp.result = result;
+            return resp;
+        }
+
+        static <T> Resp<T> error(int code, String msg) {
+            Resp<T> resp = new Resp<>();
+            resp.code = code;
+            resp.msg = msg;
+            return resp;
+        }
+
+        @Override
+        public int getCode() {
+            return code;
+        }
+
+        @Override
+        public String getMsg() {
+            return msg;
+        }
+
+        @Override
+        public T getResult() {
+            return result;
+        }
+
+        @Override
+        public void setResult(T result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean isCodeInvalid() {
+            return code != 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package retrofit.http.breaker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+    private static final long OPEN_MILLIS = 100;
+
+    private final List<String> transitions = new ArrayList<>();
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig.Builder()
+            .window(10, TimeUnit.SECONDS, 10)
+            .minimumCalls(4)
+            .failureRateThreshold(0.5f)
+            .slowCallRateThreshold(0.8f, 1, TimeUnit.SECONDS)
+            .openDuration(OPEN_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry();
+        registry.addListener(new CircuitStateListener() {
+            @Override
+            public void onStateChanged(String route, CircuitBreaker.State from, CircuitBreaker.State to) {
+                transitions.add(from + "->" + to);
+            }
+        });
+        breaker = registry.get("api.example.com/user", config);
+    }
+
+    @Test
+    public void staysClosedBelowMinimumCalls() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onResult(breaker.tryAcquire(), 10, true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(transitions.isEmpty());
+    }
+
+    @Test
+    public void closedOpensOnFailureRate() {
+        breaker.onResult(breaker.tryAcquire(), 10, false);
+        breaker.onResult(breaker.tryAcquire(), 10, false);
+        breaker.onResult(breaker.tryAcquire(), 10, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onResult(breaker.tryAcquire(), 10, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+        assertTrue(breaker.getRemainingOpenMillis() > 0);
+        assertEquals("[CLOSED->OPEN]", transitions.toString());
+    }
+
+    @Test
+    public void closedOpensOnSlowCalls() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(breaker.tryAcquire(), 2000, false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenAllowsOneProbeAndCloses() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 50);
+        CircuitBreaker.State probe = breaker.tryAcquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, probe);
+        // 探测请求进行中，其他请求仍然失败
+        assertNull(breaker.tryAcquire());
+        breaker.onResult(probe, 10, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.tryAcquire());
+        assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->CLOSED]", transitions.toString());
+        // 恢复后重新统计，之前的失败不计入
+        breaker.onResult(CircuitBreaker.State.CLOSED, 10, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void failedProbeReopens() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 50);
+        breaker.onResult(breaker.tryAcquire(), 10, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+        assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->OPEN]", transitions.toString());
+    }
+
+    @Test
+    public void releasedProbeCanBeRetried() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 50);
+        breaker.release(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.tryAcquire());
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(breaker.tryAcquire(), 10, true);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
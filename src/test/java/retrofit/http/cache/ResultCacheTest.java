@@ -0,0 +1,102 @@
+package retrofit.http.cache;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.functions.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResultCacheTest {
+
+    @Test
+    public void keyIgnoresParamOrderAndMethodCase() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("page", 1);
+        first.put("id", "a");
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("id", "a");
+        second.put("page", 1);
+        RequestKey key = RequestKey.of("get", "http://a.com/list", first);
+        assertEquals(key, RequestKey.of("GET", "http://a.com/list", second));
+        assertEquals(key.hashCode(), RequestKey.of("GET", "http://a.com/list", second).hashCode());
+        // 没有参数和空参数一样
+        assertEquals(RequestKey.of("http://a.com/list"), RequestKey.of(null, "http://a.com/list", new HashMap<String, Object>()));
+
+        assertNotEquals(key, RequestKey.of("POST", "http://a.com/list", first));
+        assertNotEquals(key, RequestKey.of("GET", "http://a.com/other", first));
+        second.put("page", 2);
+        assertNotEquals(key, RequestKey.of("GET", "http://a.com/list", second));
+    }
+
+    @Test
+    public void expiresAfterTtl() throws InterruptedException {
+        ResultCache cache = new ResultCache(4);
+        RequestKey key = RequestKey.of("http://a.com/ttl");
+        cache.put(key, "a", 50, TimeUnit.MILLISECONDS);
+        assertEquals("a", cache.get(key));
+        Thread.sleep(80);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+
+        // ttl<=0 不缓存
+        cache.put(key, "a", 0, TimeUnit.SECONDS);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void trimRemovesOnlyExpired() throws InterruptedException {
+        ResultCache cache = new ResultCache(4);
+        cache.put(RequestKey.of("http://a.com/short"), "a", 20, TimeUnit.MILLISECONDS);
+        cache.put(RequestKey.of("http://a.com/long"), "b", 1, TimeUnit.MINUTES);
+        Thread.sleep(40);
+        cache.trim();
+        assertEquals(1, cache.size());
+        assertEquals("b", cache.get(RequestKey.of("http://a.com/long")));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ResultCache cache = new ResultCache(2);
+        RequestKey a = RequestKey.of("http://a.com/a");
+        RequestKey b = RequestKey.of("http://a.com/b");
+        RequestKey c = RequestKey.of("http://a.com/c");
+        cache.put(a, "a", 1, TimeUnit.MINUTES);
+        cache.put(b, "b", 1, TimeUnit.MINUTES);
+        // 访问a之后b是最久没有使用的
+        assertEquals("a", cache.get(a));
+        cache.put(c, "c", 1, TimeUnit.MINUTES);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(b));
+        assertEquals("a", cache.get(a));
+        assertEquals("c", cache.get(c));
+    }
+
+    @Test
+    public void hitSkipsUpstream() {
+        ResultCache cache = new ResultCache(4);
+        RequestKey key = RequestKey.of("http://a.com/hit");
+        final AtomicInteger subscriptions = new AtomicInteger();
+        Observable<String> upstream = Observable.just("a").doOnSubscribe(new Consumer<Object>() {
+            @Override
+            public void accept(Object o) {
+                subscriptions.incrementAndGet();
+            }
+        });
+        upstream.compose(cache.<String>transformer(key, 1, TimeUnit.MINUTES)).test().assertValues("a");
+        upstream.compose(cache.<String>transformer(key, 1, TimeUnit.MINUTES)).test().assertValues("a").assertComplete();
+        assertEquals(1, subscriptions.get());
+
+        cache.remove(key);
+        upstream.compose(cache.<String>transformer(key, 1, TimeUnit.MINUTES)).test().assertValues("a");
+        assertEquals(2, subscriptions.get());
+    }
+}
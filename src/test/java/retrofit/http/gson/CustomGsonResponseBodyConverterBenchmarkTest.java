@@ -0,0 +1,96 @@
+package retrofit.http.gson;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 先预热再计时，比较大的列表返回(约2MB)流式解析和原来转成String解析的耗时、每次解析分配的内存
+ * 内存通过 HotSpot 的 com.sun.management.ThreadMXBean 统计，其他虚拟机上输出 -1
+ * 只输出结果，不作为性能断言
+ */
+public class CustomGsonResponseBodyConverterBenchmarkTest {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final int ITEMS = 20000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void streamingVersusBuffered() throws IOException {
+        byte[] body = largeBody().getBytes(Charset.forName("UTF-8"));
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measure(body, false);
+            measure(body, true);
+        }
+        long[] buffered = {Long.MAX_VALUE, Long.MAX_VALUE};
+        long[] streaming = {Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int i = 0; i < ITERATIONS; i++) {
+            min(buffered, measure(body, false));
+            min(streaming, measure(body, true));
+        }
+        System.out.println("convert " + body.length / 1024 + "KB"
+            + " buffered=" + buffered[0] / 1000 + "us " + buffered[1] / 1024 + "KB allocated"
+            + " streaming=" + streaming[0] / 1000 + "us " + streaming[1] / 1024 + "KB allocated");
+    }
+
+    /**
+     * @return 耗时(纳秒)、分配的内存(字节)
+     */
+    private long[] measure(byte[] body, boolean streaming) throws IOException {
+        CustomGsonResponseBodyConverter<CustomGsonResponseBodyConverterTest.CodeConverter, ListResp> converter =
+            new CustomGsonResponseBodyConverter<>(gson, new CustomGsonResponseBodyConverterTest.CodeConverter(),
+                gson.getAdapter(ListResp.class), streaming);
+        ResponseBody value = ResponseBody.create(JSON, body);
+        long allocated = allocatedBytes();
+        long begin = System.nanoTime();
+        ListResp resp = converter.convert(value);
+        long elapsed = System.nanoTime() - begin;
+        long after = allocatedBytes();
+        assertEquals(ITEMS, resp.result.size());
+        return new long[]{elapsed, allocated < 0 ? -1 : after - allocated};
+    }
+
+    private static void min(long[] best, long[] result) {
+        for (int i = 0; i < best.length; i++) {
+            best[i] = Math.min(best[i], result[i]);
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static String largeBody() {
+        StringBuilder sb = new StringBuilder("{\"code\":0,\"msg\":\"ok\",\"result\":[");
+        for (int i = 0; i < ITEMS; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"name\":\"item-").append(i).append("-abcdefghijklmnopqrstuvwxyz\",\"count\":").append(i).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    static class ListResp {
+        int code;
+        String msg;
+        List<CustomGsonResponseBodyConverterTest.Data> result;
+    }
+}
@@ -0,0 +1,185 @@
+package retrofit.http.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit.http.exception.ServerException;
+import retrofit.http.retrofit.IHttpResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class CustomGsonResponseBodyConverterTest {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void streamingMatchesBufferedConversion() throws IOException {
+        String[] bodies = {
+            "{\"code\":0,\"msg\":\"ok\",\"result\":{\"name\":\"a\",\"count\":3}}",
+            "{\"result\":{\"name\":\"b\",\"count\":4},\"msg\":\"ok\",\"code\":0}",
+            "{ \"code\" : \"0\" , \"msg\" : null , \"result\" : { \"name\" : \"c\\\"}\" } }",
+            "{\"code\":0,\"msg\":\"ok\",\"result\":null}",
+        };
+        for (String body : bodies) {
+            Resp buffered = convert(Resp.class, body, false);
+            Resp streaming = convert(Resp.class, body, true);
+            assertEquals(body, gson.toJson(buffered), gson.toJson(streaming));
+        }
+    }
+
+    @Test
+    public void streamingAddsMissingResult() throws IOException {
+        String body = "{\"code\":0,\"msg\":\"ok\"}";
+        assertEquals("", convert(StringResp.class, body, false).result);
+        assertEquals("", convert(StringResp.class, body, true).result);
+    }
+
+    @Test
+    public void streamingChecksEnvelopeBeforeResult() throws IOException {
+        final boolean[] touched = new boolean[1];
+        TypeAdapter<Resp> adapter = new TypeAdapter<Resp>() {
+            @Override
+            public void write(JsonWriter out, Resp value) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Resp read(JsonReader in) throws IOException {
+                in.beginObject();
+                touched[0] = true;
+                while (in.hasNext()) {
+                    in.nextName();
+                    in.skipValue();
+                }
+                in.endObject();
+                return new Resp();
+            }
+        };
+        CodeConverter codeConverter = new CodeConverter();
+        CustomGsonResponseBodyConverter<CodeConverter, Resp> converter =
+            new CustomGsonResponseBodyConverter<>(gson, codeConverter, adapter, true);
+        try {
+            converter.convert(body("{\"code\":1001,\"msg\":\"expired\",\"result\":{\"name\":\"a\"}}"));
+            fail();
+        } catch (ServerException e) {
+            assertEquals(1001, e.getCode());
+            assertEquals("expired", e.getMsg());
+        }
+        assertFalse(touched[0]);
+        assertEquals("{\"code\":1001,\"msg\":\"expired\"}", codeConverter.lastJson);
+    }
+
+    @Test
+    public void errorBodyWithMismatchedResultIsServerError() throws IOException {
+        // result 在前并且超过 JsonReader 的缓冲区，解析失败时 code 还没有读到
+        StringBuilder sb = new StringBuilder("{\"result\":[");
+        for (int i = 0; i < 1000; i++) {
+            sb.append(i).append(',');
+        }
+        sb.append("0],\"code\":1001,\"msg\":\"expired\"}");
+        for (boolean streaming : new boolean[]{false, true}) {
+            try {
+                convert(Resp.class, sb.toString(), streaming);
+                fail();
+            } catch (ServerException e) {
+                assertEquals(1001, e.getCode());
+            }
+        }
+    }
+
+    @Test
+    public void nullCodeIsNotAnError() throws IOException {
+        Resp resp = convert(Resp.class, "{\"msg\":\"ok\",\"result\":{\"name\":\"a\"}}", true);
+        assertEquals(0, resp.code);
+        assertEquals("a", resp.result.name);
+    }
+
+    private <T> T convert(Class<T> type, String json, boolean streaming) throws IOException {
+        CustomGsonResponseBodyConverter<CodeConverter, T> converter =
+            new CustomGsonResponseBodyConverter<>(gson, new CodeConverter(), gson.getAdapter(type), streaming);
+        return converter.convert(body(json));
+    }
+
+    private static ResponseBody body(String json) {
+        return ResponseBody.create(JSON, json);
+    }
+
+    static class Data {
+        String name;
+        int count;
+    }
+
+    static class Resp {
+        int code;
+        String msg;
+        Data result;
+    }
+
+    static class StringResp {
+        int code;
+        String msg;
+        String result;
+    }
+
+    /**
+     * 原来的写法:拿到json后完整解析一遍判断code
+     */
+    static class CodeConverter implements IGsonConverter {
+        String lastJson;
+        final Header header = new Header();
+
+        @Override
+        public boolean gsonConvert(String json) {
+            lastJson = json;
+            Header parsed = new Gson().fromJson(json, Header.class);
+            header.code = parsed.code;
+            header.msg = parsed.msg;
+            return parsed.code != 0;
+        }
+
+        @Override
+        public IHttpResponse getHttpResponse() {
+            return header;
+        }
+    }
+
+    static class Header implements IHttpResponse<Object> {
+        int code;
+        String msg;
+
+        @Override
+        public int getCode() {
+            return code;
+        }
+
+        @Override
+        public String getMsg() {
+            return msg;
+        }
+
+        @Override
+        public Object getResult() {
+            return null;
+        }
+
+        @Override
+        public void setResult(Object result) {
+        }
+
+        @Override
+        public boolean isCodeInvalid() {
+            return code != 0;
+        }
+    }
+}
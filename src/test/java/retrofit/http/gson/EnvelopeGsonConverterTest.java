@@ -0,0 +1,141 @@
+package retrofit.http.gson;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit.http.exception.ServerException;
+import retrofit.http.retrofit.IHttpResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EnvelopeGsonConverterTest {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    @Test
+    public void readsOnlyTheHeader() {
+        RecordingConverter converter = new RecordingConverter();
+        // result 不是合法的json，只读 code、msg 时不会碰到
+        assertTrue(converter.gsonConvert("{\"code\":\"1001\",\"msg\":\"expired\",\"result\":{oops"));
+        assertEquals(1001, converter.code);
+        assertEquals("expired", converter.msg);
+    }
+
+    @Test
+    public void missingCodeIsNotAnError() {
+        RecordingConverter converter = new RecordingConverter();
+        assertFalse(converter.gsonConvert("{\"msg\":\"ok\",\"result\":1}"));
+        assertFalse(converter.called);
+        assertFalse(converter.gsonConvert("[1,2]"));
+        assertFalse(converter.gsonConvert(null));
+    }
+
+    @Test
+    public void nonObjectMsgIsNull() {
+        RecordingConverter converter = new RecordingConverter();
+        converter.gsonConvert("{\"code\":0,\"msg\":{\"a\":1}}");
+        assertEquals(0, converter.code);
+        assertNull(converter.msg);
+    }
+
+    @Test
+    public void envelopeConverterIsUsedInBothModes() throws IOException {
+        for (boolean streaming : new boolean[]{false, true}) {
+            HeaderOnlyConverter converter = new HeaderOnlyConverter();
+            Gson gson = new Gson();
+            CustomGsonResponseBodyConverter<HeaderOnlyConverter, Resp> bodyConverter =
+                new CustomGsonResponseBodyConverter<>(gson, converter, gson.getAdapter(Resp.class), streaming);
+            try {
+                bodyConverter.convert(ResponseBody.create(JSON, "{\"code\":1001,\"msg\":\"expired\",\"result\":{}}"));
+                fail();
+            } catch (ServerException e) {
+                assertEquals(1001, e.getCode());
+                assertEquals("expired", e.getMsg());
+            }
+            Resp resp = bodyConverter.convert(ResponseBody.create(JSON, "{\"code\":0,\"msg\":\"ok\",\"result\":{}}"));
+            assertEquals(0, resp.code);
+        }
+    }
+
+    static class Resp {
+        int code;
+        String msg;
+        Object result;
+    }
+
+    static class RecordingConverter extends EnvelopeGsonConverter {
+        boolean called;
+        int code;
+        String msg;
+
+        @Override
+        public boolean envelopeConvert(int code, String msg) {
+            called = true;
+            this.code = code;
+            this.msg = msg;
+            return code != 0;
+        }
+
+        @Override
+        public IHttpResponse getHttpResponse() {
+            return null;
+        }
+    }
+
+    /**
+     * 直接实现两个接口，没有继承 EnvelopeGsonConverter，原来的String接口不应该再被调用
+     */
+    static class HeaderOnlyConverter implements IGsonConverter, IGsonEnvelopeConverter {
+        private int code;
+        private String msg;
+
+        @Override
+        public boolean envelopeConvert(int code, String msg) {
+            this.code = code;
+            this.msg = msg;
+            return code != 0;
+        }
+
+        @Override
+        public boolean gsonConvert(String json) {
+            throw new AssertionError("gsonConvert should not be called");
+        }
+
+        @Override
+        public IHttpResponse getHttpResponse() {
+            return new IHttpResponse<Object>() {
+                @Override
+                public int getCode() {
+                    return code;
+                }
+
+                @Override
+                public String getMsg() {
+                    return msg;
+                }
+
+                @Override
+                public Object getResult() {
+                    return null;
+                }
+
+                @Override
+                public void setResult(Object result) {
+                }
+
+                @Override
+                public boolean isCodeInvalid() {
+                    return code != 0;
+                }
+            };
+        }
+    }
+}
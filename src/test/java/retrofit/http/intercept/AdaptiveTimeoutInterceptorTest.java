@@ -0,0 +1,82 @@
+package retrofit.http.intercept;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveTimeoutInterceptorTest {
+    private static final long MIN = 100;
+    private static final long MAX = 20000;
+
+    private final AdaptiveTimeoutInterceptor.RttEstimator estimator = new AdaptiveTimeoutInterceptor.RttEstimator(MIN, MAX);
+
+    @Test
+    public void startsAtMinimum() {
+        assertEquals(MIN, estimator.timeoutMillis());
+    }
+
+    @Test
+    public void convergesToSteadyRtt() {
+        estimator.update(1000);
+        // 第一个样本 rttvar = rtt / 2
+        assertEquals(3000, estimator.timeoutMillis());
+        feed(1000, 100);
+        assertSteady(1000);
+
+        // 耗时变化时先因为 rttvar 变大，再收敛到新的值
+        estimator.update(2000);
+        assertTrue(estimator.timeoutMillis() > 2000);
+        feed(2000, 200);
+        assertSteady(2000);
+    }
+
+    @Test
+    public void clampedToRange() {
+        feed(10, 50);
+        assertEquals(MIN, estimator.timeoutMillis());
+        feed(100000, 50);
+        assertEquals(MAX, estimator.timeoutMillis());
+        // 异常的样本(时钟回拨)不统计
+        estimator.update(-1);
+        assertEquals(MAX, estimator.timeoutMillis());
+    }
+
+    @Test
+    public void timeoutBacksOffUntilNextSample() {
+        feed(1000, 100);
+        long steady = estimator.timeoutMillis();
+        estimator.onTimeout();
+        assertEquals(steady * 2, estimator.timeoutMillis());
+        estimator.onTimeout();
+        assertEquals(steady * 4, estimator.timeoutMillis());
+        for (int i = 0; i < 10; i++) {
+            estimator.onTimeout();
+        }
+        assertEquals(MAX, estimator.timeoutMillis());
+
+        // 超时没有更新 srtt，下一个正常的样本之后回到按耗时计算的值
+        estimator.update(1000);
+        assertSteady(1000);
+    }
+
+    @Test
+    public void timeoutWithoutSamplesBacksOffFromMinimum() {
+        estimator.onTimeout();
+        assertEquals(MIN * 2, estimator.timeoutMillis());
+    }
+
+    /**
+     * 耗时稳定时 rttvar 的定点数最多剩下3毫秒
+     */
+    private void assertSteady(long rtt) {
+        long timeout = estimator.timeoutMillis();
+        assertTrue(String.valueOf(timeout), timeout >= rtt && timeout <= rtt + 3);
+    }
+
+    private void feed(long rtt, int count) {
+        for (int i = 0; i < count; i++) {
+            estimator.update(rtt);
+        }
+    }
+}
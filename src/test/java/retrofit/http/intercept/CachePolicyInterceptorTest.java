@@ -0,0 +1,99 @@
+package retrofit.http.intercept;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CachePolicyInterceptorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient.Builder()
+            .cache(new Cache(folder.newFolder("http"), 1024 * 1024))
+            .addInterceptor(new CachePolicyInterceptor(true))
+            .addNetworkInterceptor(new CacheNetworkInterceptor())
+            .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void cacheFirstUsesCacheWithoutServerHeader() throws Exception {
+        server.enqueue(new MockResponse().setBody("v1"));
+        assertEquals("v1", get(CachePolicy.VALUE_CACHE_FIRST));
+        assertEquals("v1", get(CachePolicy.VALUE_CACHE_FIRST));
+        assertEquals(1, server.getRequestCount());
+        assertNull(server.takeRequest().getHeader(CachePolicy.HEADER));
+    }
+
+    @Test
+    public void noStoreIsNotOverridden() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("v1"));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("v2"));
+        assertEquals("v1", get(CachePolicy.VALUE_CACHE_FIRST));
+        assertEquals("v2", get(CachePolicy.VALUE_CACHE_FIRST));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void serverCacheControlIsKept() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "private, max-age=60").setBody("v1"));
+        Response response = client.newCall(request(CachePolicy.VALUE_NETWORK_FIRST)).execute();
+        assertEquals("private, max-age=60", response.header("Cache-Control"));
+        response.close();
+    }
+
+    @Test
+    public void staleWhileRevalidateUpdatesCache() throws Exception {
+        server.enqueue(new MockResponse().setBody("v1"));
+        server.enqueue(new MockResponse().setBody("v2"));
+        assertEquals("v1", get(CachePolicy.VALUE_STALE_WHILE_REVALIDATE));
+        // 缓存已过期，先返回旧的数据，后台读完body后写入缓存
+        assertEquals("v1", get(CachePolicy.VALUE_STALE_WHILE_REVALIDATE));
+        long deadline = System.currentTimeMillis() + 5000;
+        String body;
+        do {
+            Thread.sleep(20);
+            body = get(CachePolicy.VALUE_CACHE_FIRST);
+        } while (!"v2".equals(body) && System.currentTimeMillis() < deadline);
+        assertEquals("v2", body);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private String get(String policy) throws IOException {
+        Response response = client.newCall(request(policy)).execute();
+        try {
+            return response.body().string();
+        } finally {
+            response.close();
+        }
+    }
+
+    private Request request(String policy) {
+        return new Request.Builder().url(server.url("/data")).header(CachePolicy.HEADER, policy).build();
+    }
+}
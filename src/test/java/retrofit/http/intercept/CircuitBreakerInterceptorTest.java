@@ -0,0 +1,127 @@
+package retrofit.http.intercept;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit.http.breaker.CircuitBreaker;
+import retrofit.http.breaker.CircuitBreakerConfig;
+import retrofit.http.breaker.CircuitBreakerRegistry;
+import retrofit.http.exception.CircuitOpenException;
+import retrofit.http.metrics.HttpMetrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 和 RetrofitUtils 中的顺序一致:CachePolicyInterceptor 在 CircuitBreakerInterceptor 之前
+ */
+public class CircuitBreakerInterceptorTest {
+    private static final long OPEN_MILLIS = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private CircuitBreakerRegistry registry;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        registry = new CircuitBreakerRegistry();
+        CircuitBreakerConfig config = new CircuitBreakerConfig.Builder()
+            .minimumCalls(4)
+            .openDuration(OPEN_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+        client = new OkHttpClient.Builder()
+            .cache(new Cache(folder.newFolder("http"), 1024 * 1024))
+            .addInterceptor(new CachePolicyInterceptor(true))
+            .addInterceptor(new CircuitBreakerInterceptor(config, registry))
+            .addNetworkInterceptor(new CacheNetworkInterceptor())
+            .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void serverErrorsOpenThenProbeCloses() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+            execute(request()).close();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker().getState());
+        try {
+            execute(request());
+            fail();
+        } catch (CircuitOpenException expected) {
+        }
+        assertEquals(4, server.getRequestCount());
+
+        Thread.sleep(OPEN_MILLIS + 50);
+        server.enqueue(new MockResponse().setBody("ok"));
+        assertEquals("ok", execute(request()).body().string());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker().getState());
+    }
+
+    @Test
+    public void networkFirstFallsBackToCacheWhenOpen() throws IOException {
+        server.enqueue(new MockResponse().setBody("cached"));
+        assertEquals("cached", execute(request(CachePolicy.VALUE_NETWORK_FIRST)).body().string());
+        open();
+        assertEquals("cached", execute(request(CachePolicy.VALUE_NETWORK_FIRST)).body().string());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void onlyIfCachedIsNotBlocked() throws IOException {
+        server.enqueue(new MockResponse().setBody("cached"));
+        execute(request(CachePolicy.VALUE_CACHE_FIRST)).close();
+        open();
+        Request onlyCache = request().newBuilder()
+            .cacheControl(new CacheControl.Builder().onlyIfCached().maxStale(1, TimeUnit.DAYS).build())
+            .build();
+        assertEquals("cached", execute(onlyCache).body().string());
+        // 只读缓存的请求不影响熔断状态
+        assertEquals(CircuitBreaker.State.OPEN, breaker().getState());
+    }
+
+    private void open() {
+        CircuitBreaker breaker = breaker();
+        while (breaker.getState() != CircuitBreaker.State.OPEN) {
+            breaker.onResult(breaker.tryAcquire(), 10, true);
+        }
+    }
+
+    private CircuitBreaker breaker() {
+        return registry.get(HttpMetrics.route(server.url("/data")), CircuitBreakerConfig.defaultConfig());
+    }
+
+    private Request request() {
+        return new Request.Builder().url(server.url("/data")).build();
+    }
+
+    private Request request(String policy) {
+        return request().newBuilder().header(CachePolicy.HEADER, policy).build();
+    }
+
+    private Response execute(Request request) throws IOException {
+        return client.newCall(request).execute();
+    }
+}
@@ -0,0 +1,124 @@
+package retrofit.http.intercept;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit.http.exception.ConnectTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ConnectPhaseInterceptorTest {
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void connectTimeoutIsTagged() throws IOException {
+        OkHttpClient client = client(new OkHttpClient.Builder().socketFactory(new TimeoutSocketFactory()));
+        try {
+            execute(client);
+            fail();
+        } catch (ConnectTimeoutException expected) {
+            assertEquals(0, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void readTimeoutIsNotTagged() throws IOException {
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        OkHttpClient client = client(new OkHttpClient.Builder().readTimeout(100, TimeUnit.MILLISECONDS));
+        try {
+            execute(client);
+            fail();
+        } catch (SocketTimeoutException expected) {
+            assertFalse(expected instanceof ConnectTimeoutException);
+        }
+    }
+
+    @Test
+    public void readTimeoutAfterRedirectIsNotTagged() throws IOException {
+        // 第一次请求已经到达服务器，之后的超时不算连接超时
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", server.url("/next")));
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        OkHttpClient client = client(new OkHttpClient.Builder().readTimeout(100, TimeUnit.MILLISECONDS));
+        try {
+            execute(client);
+            fail();
+        } catch (SocketTimeoutException expected) {
+            assertFalse(expected instanceof ConnectTimeoutException);
+        }
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private OkHttpClient client(OkHttpClient.Builder builder) {
+        ConnectPhaseInterceptor interceptor = new ConnectPhaseInterceptor();
+        return builder
+            .addInterceptor(interceptor)
+            .addNetworkInterceptor(interceptor.networkInterceptor())
+            .build();
+    }
+
+    private void execute(OkHttpClient client) throws IOException {
+        client.newCall(new Request.Builder().url(server.url("/data")).build()).execute().close();
+    }
+
+    /**
+     * 连接时超时，和 socket.connect 超时抛出的异常一致
+     */
+    private static final class TimeoutSocketFactory extends SocketFactory {
+        @Override
+        public Socket createSocket() {
+            return new Socket() {
+                @Override
+                public void connect(SocketAddress endpoint, int timeout) throws IOException {
+                    throw new SocketTimeoutException("connect timed out");
+                }
+            };
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package retrofit.http.intercept;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 暂存上限之内和原来 ResponseInterceptor 中 String.replace 的结果逐字节比较
+ */
+public class JsonRewriteSourceTest {
+    private static final String[] TOKENS = {
+        "\"result\":null", ":\"\"", "\"result\":nul", "\"resul", "\"result\"", ":\"", "\"\"", "null",
+        "{\"code\":0,", "\"msg\":\"ok\"", "[1,2,3]", ",", "}", "\"", "r", "esult", "中文", " "
+    };
+
+    @Test
+    public void noEmptyStringIsUnchanged() throws IOException {
+        String json = "{\"code\":0,\"result\":null,\"msg\":\"ok\"}";
+        assertEquals(json, rewrite(json, JsonRewriteSource.DEFAULT_MAX_HOLD_BYTES, 8192));
+    }
+
+    @Test
+    public void emptyStringAfterResultNull() throws IOException {
+        String json = "{\"code\":0,\"result\":null,\"msg\":\"\"}";
+        assertEquals(oldRewrite(json), rewrite(json, JsonRewriteSource.DEFAULT_MAX_HOLD_BYTES, 8192));
+    }
+
+    @Test
+    public void emptyStringPastHoldLimit() throws IOException {
+        StringBuilder sb = new StringBuilder("{\"result\":null,\"list\":[");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("\"item").append(i).append("\",");
+        }
+        String list = sb.substring("{\"result\":null".length());
+        String json = sb.append("\"result\":null,\"end\":\"\"}").toString();
+        // 第一个 "result":null 之后超过暂存上限才出现 :""，原样输出；上限之内的照常替换
+        String expected = "{\"result\":null" + list + "\"result\":{},\"end\":\"\"}";
+        assertEquals(expected, rewrite(json, JsonRewriteSource.DEFAULT_MAX_HOLD_BYTES, 8192));
+        assertEquals(expected, rewrite(json, 64, 7));
+    }
+
+    @Test
+    public void holdIsBoundedWithoutEmptyString() throws IOException {
+        // 开头是 "result":null，后面32M都没有 :""，读到数据时上游读取的数据不能超过暂存上限太多
+        long size = 32 * 1024 * 1024;
+        final long[] pulled = new long[1];
+        Buffer body = new Buffer().writeUtf8("{\"result\":null,\"data\":\"");
+        byte[] block = new byte[64 * 1024];
+        Arrays.fill(block, (byte) 'x');
+        while (body.size() < size) {
+            body.write(block);
+        }
+        body.writeUtf8("\"}");
+        long total = body.size();
+        Source upstream = new ForwardingSource(body) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    pulled[0] += read;
+                }
+                return read;
+            }
+        };
+        long maxHold = 64 * 1024;
+        JsonRewriteSource source = new JsonRewriteSource(upstream, maxHold);
+        Buffer sink = new Buffer();
+        long read;
+        long out = 0;
+        long maxAhead = 0;
+        while ((read = source.read(sink, 8192)) != -1) {
+            out += read;
+            sink.clear();
+            maxAhead = Math.max(maxAhead, pulled[0] - out);
+        }
+        assertEquals(total, out);
+        assertTrue(String.valueOf(maxAhead), maxAhead <= maxHold + 2 * 8192);
+    }
+
+    @Test
+    public void randomCorpusBelowHoldLimit() throws IOException {
+        compareRandom(new Random(1), 500, 2000, JsonRewriteSource.DEFAULT_MAX_HOLD_BYTES);
+    }
+
+    @Test
+    public void randomCorpusAboveHoldLimit() throws IOException {
+        checkRandom(new Random(2), 500, 2000, 32);
+        checkRandom(new Random(3), 20, 40000, 1024);
+    }
+
+    /**
+     * 超过暂存上限时结果可能和原来不同，检查:只做了 "result":null 到 "result":{} 的替换，
+     * 没有 :"" 时不替换，:"" 之后的 "result":null 都会替换
+     */
+    private static void checkRandom(Random random, int count, int tokens, long maxHold) throws IOException {
+        for (int n = 0; n < count; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(tokens) + 1;
+            for (int i = 0; i < length; i++) {
+                sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            String json = sb.toString();
+            String result = rewrite(json, maxHold, random.nextInt(64) + 1);
+            assertEquals(json, normalize(json), normalize(result));
+            int empty = result.indexOf(":\"\"");
+            if (empty < 0) {
+                assertEquals(json, result);
+            } else {
+                assertFalse(json, result.substring(empty).contains("\"result\":null"));
+            }
+        }
+    }
+
+    private static String normalize(String json) {
+        return json.replace("\"result\":{}", "\"result\":null");
+    }
+
+    private static void compareRandom(Random random, int count, int tokens, long maxHold) throws IOException {
+        for (int n = 0; n < count; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(tokens) + 1;
+            for (int i = 0; i < length; i++) {
+                sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            String json = sb.toString();
+            int maxRead = random.nextInt(64) + 1;
+            assertEquals(json, oldRewrite(json), rewrite(json, maxHold, maxRead));
+        }
+    }
+
+    /**
+     * 原来的处理
+     */
+    private static String oldRewrite(String json) {
+        if (!json.contains(":\"\"")) {
+            return json;
+        }
+        return json.replace("\"result\":null", "\"result\":{}");
+    }
+
+    private static String rewrite(String json, long maxHold, int maxRead) throws IOException {
+        Source source = new ChunkedSource(new Buffer().writeUtf8(json), maxRead);
+        return Okio.buffer(new JsonRewriteSource(source, maxHold)).readUtf8();
+    }
+
+    /**
+     * 每次最多返回 maxRead 字节，覆盖匹配跨越多次读取的情况
+     */
+    private static final class ChunkedSource implements Source {
+        private final Buffer data;
+        private final int maxRead;
+
+        ChunkedSource(Buffer data, int maxRead) {
+            this.data = data;
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) {
+            if (data.size() == 0) {
+                return -1;
+            }
+            return data.read(sink, Math.min(byteCount, maxRead));
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
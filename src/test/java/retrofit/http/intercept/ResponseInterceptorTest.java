@@ -0,0 +1,103 @@
+package retrofit.http.intercept;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResponseInterceptorTest {
+    private static final String JSON = "{\"code\":0,\"result\":null,\"msg\":\"\"}";
+    private static final String REWRITTEN = "{\"code\":0,\"result\":{},\"msg\":\"\"}";
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void rewritesJson() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json; charset=utf-8").setBody(JSON));
+        assertEquals(REWRITTEN, execute(client(0), request()).body().string());
+    }
+
+    @Test
+    public void passesNonJsonThrough() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/octet-stream").setBody(JSON));
+        Response response = execute(client(0), request());
+        assertEquals(JSON.length(), response.body().contentLength());
+        assertEquals(JSON, response.body().string());
+    }
+
+    @Test
+    public void passesOversizedBodyThrough() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(JSON));
+        Response response = execute(client(JSON.length() - 1), request());
+        assertEquals(JSON, response.body().string());
+    }
+
+    @Test
+    public void skipHeaderIsNotSent() throws IOException, InterruptedException {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(JSON));
+        Request request = request().newBuilder().header(ResponseInterceptor.HEADER_SKIP_REWRITE, "true").build();
+        assertEquals(JSON, execute(client(0), request).body().string());
+        RecordedRequest recorded = server.takeRequest();
+        assertNull(recorded.getHeader(ResponseInterceptor.HEADER_SKIP_REWRITE));
+    }
+
+    @Test
+    public void largeDownloadStreams() throws IOException {
+        // 32M的下载，不经过替换，按块读取不会整个读到内存
+        long size = 32 * 1024 * 1024;
+        Buffer body = new Buffer();
+        byte[] block = new byte[64 * 1024];
+        while (body.size() < size) {
+            body.write(block);
+        }
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/vnd.android.package-archive").setBody(body));
+        Response response = execute(client(ResponseInterceptor.DEFAULT_MAX_REWRITE_LENGTH), request());
+        assertEquals(size, response.body().contentLength());
+        BufferedSource source = response.body().source();
+        long total = 0;
+        Buffer sink = new Buffer();
+        long read;
+        while ((read = source.read(sink, 64 * 1024)) != -1) {
+            total += read;
+            sink.clear();
+        }
+        response.close();
+        assertEquals(size, total);
+    }
+
+    private Request request() {
+        return new Request.Builder().url(server.url("/api/data")).build();
+    }
+
+    private static OkHttpClient client(long maxRewriteLength) {
+        return new OkHttpClient.Builder().addInterceptor(new ResponseInterceptor(maxRewriteLength)).build();
+    }
+
+    private static Response execute(OkHttpClient client, Request request) throws IOException {
+        return client.newCall(request).execute();
+    }
+}
@@ -0,0 +1,69 @@
+package retrofit.http.intercept;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit.http.retrofit.HttpConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RouteTimeoutInterceptorTest {
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        Map<String, HttpConfig.RouteTimeout> timeouts = new LinkedHashMap<>();
+        timeouts.put("/api", new HttpConfig.RouteTimeout(0, 100, 0, TimeUnit.MILLISECONDS));
+        timeouts.put("/api/upload", new HttpConfig.RouteTimeout(0, 5, 0, TimeUnit.SECONDS));
+        client = new OkHttpClient.Builder()
+            .readTimeout(5, TimeUnit.SECONDS)
+            .addInterceptor(new RouteTimeoutInterceptor(timeouts))
+            .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void prefixTimeoutApplies() throws IOException {
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        try {
+            execute("/api/list");
+            fail();
+        } catch (SocketTimeoutException expected) {
+        }
+    }
+
+    @Test
+    public void longestPrefixWins() throws IOException {
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        assertEquals("slow", execute("/api/upload/file"));
+    }
+
+    @Test
+    public void otherPathsUseClientTimeout() throws IOException {
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        assertEquals("slow", execute("/other"));
+    }
+
+    private String execute(String path) throws IOException {
+        return client.newCall(new Request.Builder().url(server.url(path)).build()).execute().body().string();
+    }
+}
@@ -0,0 +1,84 @@
+package retrofit.http.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpMetricsTest {
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        HttpMetrics.getInstance().reset();
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient.Builder().eventListenerFactory(HttpMetrics.getInstance()).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void routeReplacesNumericIds() {
+        assertEquals("api.example.com/user/*/orders",
+            HttpMetrics.route(HttpUrl.parse("https://api.example.com/user/123/orders?page=2")));
+        assertEquals("api.example.com/user/v2",
+            HttpMetrics.route(HttpUrl.parse("https://api.example.com/user/v2")));
+    }
+
+    @Test
+    public void recordsPhasesPerRoute() throws IOException {
+        server.enqueue(new MockResponse().setBody("hello").setHeadersDelay(100, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("world"));
+        execute("/user/1");
+        execute("/user/2");
+
+        RouteMetrics.Snapshot snapshot = HttpMetrics.getInstance().snapshot().get(server.getHostName() + "/user/*");
+        assertEquals(2, snapshot.get(HttpPhase.CALL).getCount());
+        assertEquals(2, snapshot.get(HttpPhase.TTFB).getCount());
+        assertEquals(2, snapshot.get(HttpPhase.BODY).getCount());
+        // 两次请求共用一个连接
+        assertEquals(1, snapshot.get(HttpPhase.CONNECT).getCount());
+        assertEquals(0, snapshot.get(HttpPhase.TLS).getCount());
+        assertTrue(snapshot.get(HttpPhase.TTFB).getMax() >= TimeUnit.MILLISECONDS.toMicros(100));
+        assertEquals(10, snapshot.getResponseBytes());
+        assertEquals(0, snapshot.getFailures());
+    }
+
+    @Test
+    public void recordsFailures() throws IOException {
+        HttpUrl url = server.url("/down");
+        server.shutdown();
+        try {
+            client.newCall(new Request.Builder().url(url).build()).execute();
+            fail();
+        } catch (IOException expected) {
+        }
+        RouteMetrics.Snapshot snapshot = HttpMetrics.getInstance().snapshot().get(url.host() + "/down");
+        assertEquals(1, snapshot.getFailures());
+        assertEquals(1, snapshot.get(HttpPhase.CALL).getCount());
+    }
+
+    private void execute(String path) throws IOException {
+        Response response = client.newCall(new Request.Builder().url(server.url(path)).build()).execute();
+        response.body().string();
+        response.close();
+    }
+}
@@ -0,0 +1,74 @@
+package retrofit.http.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(100000, snapshot.getMax());
+        for (double p : new double[]{50, 90, 99, 99.9}) {
+            long expected = (long) (100000 * p / 100);
+            long actual = snapshot.getValueAtPercentile(p);
+            // 每个2的幂区间分为16份，误差不超过1/16
+            assertTrue(p + ": " + actual, actual >= expected && actual <= expected + expected / 16 + 1);
+        }
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 0; i < 32; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(32, snapshot.getCount());
+        assertEquals(15, snapshot.getValueAtPercentile(50));
+        assertEquals(31, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 8;
+        final int perThread = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(i + offset);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * perThread, histogram.getCount());
+        assertEquals(threads * perThread, histogram.snapshot().getCount());
+        assertEquals(perThread - 1 + threads - 1, histogram.snapshot().getMax());
+    }
+}
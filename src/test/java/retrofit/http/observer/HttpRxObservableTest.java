@@ -0,0 +1,317 @@
+package retrofit.http.observer;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ServerSocketFactory;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit.http.cache.RequestKey;
+import retrofit.http.cache.ResultCache;
+import retrofit.http.exception.ApiException;
+import retrofit.http.exception.ExceptionEngine;
+import retrofit.http.gson.CustomGsonConverterFactory;
+import retrofit.http.gson.IGsonConverter;
+import retrofit.http.metrics.LatencyHistogram;
+import retrofit.http.retrofit.IHttpResponse;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpRxObservableTest {
+    private static final long PREFETCH_MILLIS = 20;
+    private static final long REQUEST_MILLIS = 2;
+
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    @BeforeClass
+    public static void setUpMainThread() {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(new Function<Callable<Scheduler>, Scheduler>() {
+            @Override
+            public Scheduler apply(Callable<Scheduler> callable) {
+                return Schedulers.trampoline();
+            }
+        });
+        RxAndroidPlugins.setMainThreadSchedulerHandler(new Function<Scheduler, Scheduler>() {
+            @Override
+            public Scheduler apply(Scheduler scheduler) {
+                return Schedulers.trampoline();
+            }
+        });
+    }
+
+    @AfterClass
+    public static void tearDownMainThread() {
+        RxAndroidPlugins.reset();
+    }
+
+    @After
+    public void tearDown() {
+        RequestScheduler.getInstance().configure(RequestScheduler.DEFAULT_THREADS, RequestScheduler.DEFAULT_MAX_QUEUE,
+            RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, RequestScheduler.RejectPolicy.ABORT);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void secondCallIsServedFromCache() {
+        RequestKey key = RequestKey.of("http://a.com/cached-call");
+        ResultCache.getInstance().remove(key);
+        Observable<String> first = HttpRxObservable.getObservable(api("a"), key, 1, TimeUnit.MINUTES);
+        assertEquals("a", first.blockingFirst());
+        Observable<String> second = HttpRxObservable.getObservable(api("b"), key, 1, TimeUnit.MINUTES);
+        assertEquals("a", second.blockingFirst());
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void hitSkipsAdmission() {
+        RequestKey key = RequestKey.of("http://a.com/admission");
+        ResultCache.getInstance().put(key, "cached", 1, TimeUnit.MINUTES);
+        // 不接受任何 NORMAL 请求
+        RequestScheduler.getInstance().configure(RequestScheduler.DEFAULT_THREADS, 0,
+            RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, RequestScheduler.RejectPolicy.ABORT);
+
+        TestObserver<String> hit = HttpRxObservable.getObservable(api("network"), key, 1, TimeUnit.MINUTES).test();
+        hit.assertValues("cached").assertComplete();
+        assertEquals(0, subscriptions.get());
+
+        ResultCache.getInstance().remove(key);
+        TestObserver<String> miss = HttpRxObservable.getObservable(api("network"), key, 1, TimeUnit.MINUTES).test();
+        miss.assertError(ApiException.class);
+        assertEquals(ExceptionEngine.QUEUE_FULL_ERROR, ((ApiException) miss.errors().get(0)).getCode());
+        assertEquals(0, subscriptions.get());
+    }
+
+    /**
+     * 预加载占满时，通过 MockWebServer 发出的真实请求从订阅到收到结果的p99，时间单位都是微秒
+     * 和 {@link retrofit.http.scheduler.RequestSchedulerTest#p99UnderPrefetchLoad()} 一样的负载，包含连接、解析和切换线程
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void p99UnderPrefetchLoad() throws Exception {
+        final int prefetchCount = 200;
+        final int requestCount = 50;
+        final AtomicInteger prefetchRunning = new AtomicInteger();
+        final AtomicInteger prefetchPeak = new AtomicInteger();
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                boolean prefetch = request.getPath().startsWith("/prefetch");
+                if (prefetch) {
+                    int now = prefetchRunning.incrementAndGet();
+                    int max;
+                    while (now > (max = prefetchPeak.get()) && !prefetchPeak.compareAndSet(max, now)) {
+                    }
+                }
+                try {
+                    Thread.sleep(prefetch ? PREFETCH_MILLIS : REQUEST_MILLIS);
+                } finally {
+                    if (prefetch) {
+                        prefetchRunning.decrementAndGet();
+                    }
+                }
+                return new MockResponse().setBody("{\"code\":0,\"msg\":\"ok\",\"result\":\"ok\"}");
+            }
+        });
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.start();
+        try {
+            LoadApi api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(new OkHttpClient())
+                .addConverterFactory(new CustomGsonConverterFactory<>(new Gson(), new PassConverter()))
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .build()
+                .create(LoadApi.class);
+            // 预热，解析接口方法、建立连接不计入
+            HttpRxObservable.getObservable(api.prefetch(), RequestPriority.PREFETCH).blockingFirst();
+            HttpRxObservable.getObservable(api.request(), RequestPriority.CRITICAL).blockingFirst();
+            LatencyHistogram critical = new LatencyHistogram();
+            LatencyHistogram normal = new LatencyHistogram();
+            LatencyHistogram prefetch = new LatencyHistogram();
+            CountDownLatch done = new CountDownLatch(prefetchCount + requestCount * 2);
+            for (int i = 0; i < prefetchCount; i++) {
+                call(HttpRxObservable.getObservable(api.prefetch(), RequestPriority.PREFETCH), prefetch, done);
+            }
+            // 预加载排队的同时陆续发出请求
+            for (int i = 0; i < requestCount; i++) {
+                call(HttpRxObservable.getObservable(api.request(), RequestPriority.CRITICAL), critical, done);
+                call(HttpRxObservable.getObservable(api.request(), RequestPriority.NORMAL), normal, done);
+                Thread.sleep(5);
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+
+            long criticalP99 = critical.snapshot().getValueAtPercentile(99);
+            long normalP99 = normal.snapshot().getValueAtPercentile(99);
+            long prefetchP99 = prefetch.snapshot().getValueAtPercentile(99);
+            System.out.println("end-to-end p99 under prefetch: critical=" + criticalP99 + "us"
+                + " normal=" + normalP99 + "us"
+                + " prefetch=" + prefetchP99 + "us"
+                + " prefetchPeak=" + prefetchPeak.get());
+
+            assertEquals(prefetchCount + requestCount * 2, critical.getCount() + normal.getCount() + prefetch.getCount());
+            // 服务器上同时进行的预加载最多4个，请求不需要等预加载执行完
+            assertTrue(prefetchPeak.get() <= 4);
+            assertTrue(criticalP99 < PREFETCH_MILLIS * 1000 * 5);
+            assertTrue(normalP99 < PREFETCH_MILLIS * 1000 * 5);
+            // 200个预加载在4个线程上要1s左右
+            assertTrue(prefetchP99 > PREFETCH_MILLIS * 1000 * 10);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * 从订阅开始计时，收到结果时记录，失败时不记录
+     */
+    private static void call(Observable<String> observable, final LatencyHistogram latency, final CountDownLatch done) {
+        final long start = System.nanoTime();
+        observable
+            .doFinally(new Action() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            })
+            .subscribe(new Consumer<String>() {
+                @Override
+                public void accept(String result) {
+                    latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }
+            }, new Consumer<Throwable>() {
+                @Override
+                public void accept(Throwable throwable) {
+                    throwable.printStackTrace();
+                }
+            });
+    }
+
+    private Observable<IHttpResponse<String>> api(String result) {
+        return Observable.<IHttpResponse<String>>just(new Resp(result)).doOnSubscribe(new Consumer<Object>() {
+            @Override
+            public void accept(Object o) {
+                subscriptions.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * MockWebServer 分开写返回的header和body，开启Nagle时每个请求会多等待一次延迟ACK(约40ms)
+     */
+    private static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    interface LoadApi {
+        @GET("prefetch")
+        Observable<Resp> prefetch();
+
+        @GET("request")
+        Observable<Resp> request();
+    }
+
+    /**
+     * 不拦截，所有返回都按成功处理
+     */
+    private static final class PassConverter implements IGsonConverter {
+        @Override
+        public boolean gsonConvert(String json) {
+            return false;
+        }
+
+        @Override
+        public IHttpResponse getHttpResponse() {
+            return null;
+        }
+    }
+
+    private static final class Resp implements IHttpResponse<String> {
+        private String result;
+
+        Resp(String result) {
+            this.result = result;
+        }
+
+        @Override
+        public int getCode() {
+            return 0;
+        }
+
+        @Override
+        public String getMsg() {
+            return null;
+        }
+
+        @Override
+        public String getResult() {
+            return result;
+        }
+
+        @Override
+        public void setResult(String result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean isCodeInvalid() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package retrofit.http.observer;
+
+import org.junit.Test;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.PublishSubject;
+import retrofit.http.exception.ApiException;
+import retrofit.http.retrofit.RxActionManagerImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpRxObserverTest {
+    private final RxActionManagerImpl manager = RxActionManagerImpl.getInstance();
+
+    @Test
+    public void scopeWithoutTagIsRegistered() {
+        Object scope = new Object();
+        RecordingObserver observer = new RecordingObserver(null, scope);
+        PublishSubject.<String>create().subscribe(observer);
+        manager.cancelScope(scope);
+        assertTrue(observer.isDisposed());
+    }
+
+    @Test
+    public void finishedRequestIsRemoved() {
+        int size = manager.size();
+        PublishSubject<String> subject = PublishSubject.create();
+        RecordingObserver observer = new RecordingObserver("finished-tag", new Object());
+        subject.subscribe(observer);
+        assertEquals(size + 1, manager.size());
+        subject.onNext("a");
+        assertEquals(size, manager.size());
+        assertEquals("a", observer.result);
+    }
+
+    static class RecordingObserver extends HttpRxObserver<String> {
+        String result;
+
+        RecordingObserver(String tag, Object scope) {
+            super(tag, scope);
+        }
+
+        @Override
+        protected void onStart(Disposable d) {
+        }
+
+        @Override
+        protected void onError(ApiException e) {
+        }
+
+        @Override
+        protected void onSuccess(String response) {
+            result = response;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package retrofit.http.observer;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import retrofit.http.retrofit.RxActionManagerImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 测试环境下 Looper.myLooper() == Looper.getMainLooper()，按主线程处理
+ * 主线程调度器换成不会执行的 TestScheduler，切换线程的话监听不会被注册、移除
+ */
+public class LifecycleOwnerTransformerTest {
+    private static final TestScheduler MAIN = new TestScheduler();
+
+    private final RxActionManagerImpl manager = RxActionManagerImpl.getInstance();
+
+    @BeforeClass
+    public static void setUpMainThread() {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(new Function<Callable<Scheduler>, Scheduler>() {
+            @Override
+            public Scheduler apply(Callable<Scheduler> callable) {
+                return MAIN;
+            }
+        });
+        RxAndroidPlugins.setMainThreadSchedulerHandler(new Function<Scheduler, Scheduler>() {
+            @Override
+            public Scheduler apply(Scheduler scheduler) {
+                return MAIN;
+            }
+        });
+    }
+
+    @AfterClass
+    public static void tearDownMainThread() {
+        RxAndroidPlugins.reset();
+    }
+
+    @Test
+    public void attachesSynchronouslyOnMainThread() {
+        FakeLifecycle lifecycle = new FakeLifecycle(Lifecycle.State.RESUMED);
+        PublishSubject<String> subject = PublishSubject.create();
+        Disposable disposable = subject.compose(LifecycleOwnerTransformer.<String>bind(lifecycle)).subscribe();
+        assertEquals(1, lifecycle.observers.size());
+        disposable.dispose();
+        assertTrue(lifecycle.observers.isEmpty());
+    }
+
+    @Test
+    public void eventCompletesAndReleasesEverything() {
+        int size = manager.size();
+        FakeLifecycle lifecycle = new FakeLifecycle(Lifecycle.State.RESUMED);
+        PublishSubject<String> subject = PublishSubject.create();
+        HttpRxObserverTest.RecordingObserver observer = new HttpRxObserverTest.RecordingObserver("lifecycle-tag", null);
+        subject.compose(LifecycleOwnerTransformer.<String>bind(lifecycle)).subscribe(observer);
+        assertEquals(size + 1, manager.size());
+
+        // 补发的事件和不对应的事件不取消
+        lifecycle.dispatch(Lifecycle.Event.ON_RESUME);
+        assertTrue(subject.hasObservers());
+
+        lifecycle.dispatch(Lifecycle.Event.ON_PAUSE);
+        assertFalse(subject.hasObservers());
+        assertTrue(lifecycle.observers.isEmpty());
+        assertEquals(size, manager.size());
+        assertNull(observer.result);
+    }
+
+    @Test
+    public void finishedRequestRemovesObserver() {
+        int size = manager.size();
+        FakeLifecycle lifecycle = new FakeLifecycle(Lifecycle.State.STARTED);
+        PublishSubject<String> subject = PublishSubject.create();
+        HttpRxObserverTest.RecordingObserver observer = new HttpRxObserverTest.RecordingObserver("finished-lifecycle-tag", null);
+        subject.compose(LifecycleOwnerTransformer.<String>bindUntilEvent(lifecycle, Lifecycle.Event.ON_DESTROY)).subscribe(observer);
+        subject.onNext("a");
+        subject.onComplete();
+        assertEquals("a", observer.result);
+        assertTrue(lifecycle.observers.isEmpty());
+        assertEquals(size, manager.size());
+    }
+
+    @Test
+    public void destroyedLifecycleCompletesImmediately() {
+        int size = manager.size();
+        FakeLifecycle lifecycle = new FakeLifecycle(Lifecycle.State.DESTROYED);
+        PublishSubject<String> subject = PublishSubject.create();
+        subject.compose(LifecycleOwnerTransformer.<String>bind(lifecycle))
+            .subscribe(new HttpRxObserverTest.RecordingObserver("destroyed-tag", null));
+        assertFalse(subject.hasObservers());
+        assertTrue(lifecycle.observers.isEmpty());
+        assertEquals(size, manager.size());
+    }
+
+    @Test
+    public void repeatedBindingsDoNotLeak() {
+        int size = manager.size();
+        FakeLifecycle lifecycle = new FakeLifecycle(Lifecycle.State.RESUMED);
+        for (int i = 0; i < 100; i++) {
+            PublishSubject<String> subject = PublishSubject.create();
+            subject.compose(LifecycleOwnerTransformer.<String>bind(lifecycle))
+                .subscribe(new HttpRxObserverTest.RecordingObserver("leak-tag-" + i, new Object()));
+        }
+        assertEquals(100, lifecycle.observers.size());
+        assertEquals(size + 100, manager.size());
+        lifecycle.dispatch(Lifecycle.Event.ON_PAUSE);
+        assertTrue(lifecycle.observers.isEmpty());
+        assertEquals(size, manager.size());
+    }
+
+    /**
+     * 和 LifecycleRegistry 一样，addObserver 时同步补发到当前状态的事件
+     */
+    static class FakeLifecycle extends Lifecycle {
+        final List<LifecycleObserver> observers = new CopyOnWriteArrayList<>();
+        private State state;
+
+        FakeLifecycle(State state) {
+            this.state = state;
+        }
+
+        @Override
+        public void addObserver(LifecycleObserver observer) {
+            observers.add(observer);
+            if (state.isAtLeast(State.CREATED)) {
+                deliver(observer, Event.ON_CREATE);
+            }
+            if (state.isAtLeast(State.STARTED)) {
+                deliver(observer, Event.ON_START);
+            }
+            if (state.isAtLeast(State.RESUMED)) {
+                deliver(observer, Event.ON_RESUME);
+            }
+        }
+
+        @Override
+        public void removeObserver(LifecycleObserver observer) {
+            observers.remove(observer);
+        }
+
+        @Override
+        public State getCurrentState() {
+            return state;
+        }
+
+        void dispatch(Event event) {
+            switch (event) {
+                case ON_PAUSE:
+                    state = State.STARTED;
+                    break;
+                case ON_STOP:
+                    state = State.CREATED;
+                    break;
+                case ON_DESTROY:
+                    state = State.DESTROYED;
+                    break;
+                default:
+                    break;
+            }
+            for (LifecycleObserver observer : observers) {
+                deliver(observer, event);
+            }
+        }
+
+        private void deliver(LifecycleObserver observer, Event event) {
+            for (Method method : observer.getClass().getDeclaredMethods()) {
+                if (method.isAnnotationPresent(OnLifecycleEvent.class)) {
+                    method.setAccessible(true);
+                    try {
+                        method.invoke(observer, null, event);
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+        }
+    }
+}
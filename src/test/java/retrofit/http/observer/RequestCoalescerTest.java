@@ -0,0 +1,153 @@
+package retrofit.http.observer;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import retrofit.http.cache.RequestKey;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequestCoalescerTest {
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    @Test
+    public void concurrentSubscribersShareOneRequest() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        PublishSubject<String> subject = PublishSubject.create();
+        Observable<String> upstream = subject.doOnSubscribe(new Consumer<Object>() {
+            @Override
+            public void accept(Object o) {
+                subscriptions.incrementAndGet();
+            }
+        });
+        RequestKey key = RequestKey.of("http://a.com/shared");
+        TestObserver<String> first = upstream.compose(coalescer.<String>transformer(key)).test();
+        TestObserver<String> second = upstream.compose(coalescer.<String>transformer(key)).test();
+        assertEquals(1, subscriptions.get());
+        subject.onNext("a");
+        subject.onComplete();
+        first.assertValues("a").assertComplete();
+        second.assertValues("a").assertComplete();
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void resubscribeFromOnCompleteStartsNewRequest() {
+        final AtomicInteger calls = new AtomicInteger();
+        final RequestKey key = RequestKey.of("http://a.com/again");
+        final Observable<Integer> upstream = Observable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return calls.incrementAndGet();
+            }
+        });
+        final TestObserver<Integer> again = new TestObserver<>();
+        TestObserver<Integer> first = upstream.compose(coalescer.<Integer>transformer(key))
+            .doOnComplete(new Action() {
+                @Override
+                public void run() {
+                    // 在结果回调中发起相同的请求，不能拿到已经结束的请求
+                    upstream.compose(coalescer.<Integer>transformer(key)).subscribe(again);
+                }
+            })
+            .test();
+        first.assertValues(1).assertComplete();
+        again.assertValues(2).assertComplete();
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void resubscribeFromOnNextStartsNewRequest() {
+        final AtomicInteger calls = new AtomicInteger();
+        final RequestKey key = RequestKey.of("http://a.com/next");
+        final Observable<Integer> upstream = Observable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return calls.incrementAndGet();
+            }
+        });
+        final TestObserver<Integer> again = new TestObserver<>();
+        TestObserver<Integer> first = upstream.compose(coalescer.<Integer>transformer(key))
+            .doOnNext(new Consumer<Integer>() {
+                @Override
+                public void accept(Integer value) {
+                    // 和 HttpRxObserver.onSuccess 中再次请求一样，上一个请求还没有 onComplete
+                    if (value == 1) {
+                        upstream.compose(coalescer.<Integer>transformer(key)).subscribe(again);
+                    }
+                }
+            })
+            .test();
+        first.assertValues(1).assertComplete();
+        again.assertValues(2).assertComplete();
+        assertEquals(2, calls.get());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void lateSubscriberAfterValueStartsNewRequest() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        PublishSubject<String> subject = PublishSubject.create();
+        Observable<String> upstream = subject.doOnSubscribe(new Consumer<Object>() {
+            @Override
+            public void accept(Object o) {
+                subscriptions.incrementAndGet();
+            }
+        });
+        RequestKey key = RequestKey.of("http://a.com/late");
+        TestObserver<String> first = upstream.compose(coalescer.<String>transformer(key)).test();
+        subject.onNext("a");
+        // 结果已经返回、还没有 onComplete 时加入的订阅者不能共用
+        TestObserver<String> late = upstream.compose(coalescer.<String>transformer(key)).test();
+        assertEquals(2, subscriptions.get());
+        subject.onNext("b");
+        subject.onComplete();
+        first.assertValues("a", "b").assertComplete();
+        late.assertValues("b").assertComplete();
+    }
+
+    @Test
+    public void disposingAllSubscribersRemovesEntry() {
+        final AtomicInteger disposed = new AtomicInteger();
+        Observable<String> upstream = Observable.<String>never().doOnDispose(new Action() {
+            @Override
+            public void run() {
+                disposed.incrementAndGet();
+            }
+        });
+        RequestKey key = RequestKey.of("http://a.com/never");
+        TestObserver<String> first = upstream.compose(coalescer.<String>transformer(key)).test();
+        TestObserver<String> second = upstream.compose(coalescer.<String>transformer(key)).test();
+        assertEquals(1, coalescer.size());
+        first.dispose();
+        assertEquals(0, disposed.get());
+        assertEquals(1, coalescer.size());
+        second.dispose();
+        assertEquals(1, disposed.get());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void errorRemovesEntryBeforeDelivery() {
+        final RequestKey key = RequestKey.of("http://a.com/error");
+        final int[] sizeOnError = {-1};
+        Observable.<String>error(new RuntimeException("boom"))
+            .compose(coalescer.<String>transformer(key))
+            .doOnError(new Consumer<Throwable>() {
+                @Override
+                public void accept(Throwable throwable) {
+                    sizeOnError[0] = coalescer.size();
+                }
+            })
+            .test()
+            .assertError(RuntimeException.class);
+        assertEquals(0, sizeOnError[0]);
+    }
+}
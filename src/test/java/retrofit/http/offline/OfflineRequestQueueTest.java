@@ -0,0 +1,323 @@
+package retrofit.http.offline;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit.http.exception.RequestQueuedException;
+import retrofit.http.intercept.OfflineQueueInterceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OfflineRequestQueueTest {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeConnectivity connectivity;
+    private File directory;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        connectivity = new FakeConnectivity();
+        directory = new File(folder.getRoot(), "offline");
+        client = new OkHttpClient();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void sendsInOrderWhenConnected() throws Exception {
+        OfflineRequestQueue queue = new OfflineRequestQueue(directory, connectivity, 1);
+        RecordingListener listener = new RecordingListener(3);
+        queue.addListener(listener);
+        queue.attach(client);
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(post("/order/" + i, "{\"i\":" + i + "}"), "key-" + i);
+        }
+        assertEquals(3, queue.getPending().size());
+        assertEquals(0, server.getRequestCount());
+
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse());
+        }
+        connectivity.setConnected(true);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            RecordedRequest recorded = server.takeRequest();
+            assertEquals("/order/" + i, recorded.getPath());
+            assertEquals("key-" + i, recorded.getHeader(OfflineRequestQueue.HEADER_IDEMPOTENCY_KEY));
+            assertEquals("{\"i\":" + i + "}", recorded.getBody().readUtf8());
+        }
+        assertTrue(queue.getPending().isEmpty());
+    }
+
+    @Test
+    public void pendingRequestsSurviveRestart() throws Exception {
+        OfflineRequestQueue queue = new OfflineRequestQueue(directory, connectivity);
+        queue.attach(client);
+        queue.enqueue(post("/a", "1"), "a");
+        queue.enqueue(post("/b", "2"), "b");
+        queue.enqueue(post("/a", "1"), "a");
+        queue.sync();
+
+        OfflineRequestQueue restarted = new OfflineRequestQueue(directory, connectivity);
+        restarted.sync();
+        List<QueuedRequest> pending = restarted.getPending();
+        assertEquals(2, pending.size());
+        assertEquals("a", pending.get(0).getIdempotencyKey());
+        assertEquals("b", pending.get(1).getIdempotencyKey());
+    }
+
+    @Test
+    public void ackedRequestsAreNotReloaded() throws Exception {
+        OfflineRequestQueue queue = new OfflineRequestQueue(directory, connectivity, 1);
+        RecordingListener listener = new RecordingListener(1);
+        queue.addListener(listener);
+        queue.attach(client);
+        queue.enqueue(post("/a", "1"), "a");
+        queue.enqueue(post("/b", "2"), "b");
+        // 第一个成功，第二个失败后暂停
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse().setResponseCode(503));
+        connectivity.setConnected(true);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        server.takeRequest(5, TimeUnit.SECONDS);
+        server.takeRequest(5, TimeUnit.SECONDS);
+        queue.sync();
+
+        OfflineRequestQueue restarted = new OfflineRequestQueue(directory, new FakeConnectivity());
+        restarted.sync();
+        List<QueuedRequest> pending = restarted.getPending();
+        assertEquals(1, pending.size());
+        assertEquals("b", pending.get(0).getIdempotencyKey());
+    }
+
+    @Test
+    public void clientErrorIsDroppedAndEmptyQueueIsTruncated() throws Exception {
+        OfflineRequestQueue queue = new OfflineRequestQueue(directory, connectivity);
+        RecordingListener listener = new RecordingListener(1);
+        queue.addListener(listener);
+        queue.attach(client);
+        queue.enqueue(post("/bad", "x"), "bad");
+        server.enqueue(new MockResponse().setResponseCode(400));
+        connectivity.setConnected(true);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(400), listener.codes.get(0));
+        queue.sync();
+        assertEquals(0, new File(directory, "queue.log").length());
+        assertEquals(0, new File(directory, "ack.log").length());
+    }
+
+    @Test
+    public void flushDoesNotWaitForDisk() throws Exception {
+        OfflineRequestQueue queue = new OfflineRequestQueue(directory, connectivity);
+        queue.attach(client);
+        // 队列的线程被磁盘操作阻塞时，主线程的调用不应等待
+        final CountDownLatch release = new CountDownLatch(1);
+        executor(queue).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        try {
+            long start = System.nanoTime();
+            queue.enqueue(post("/a", "1"), "a");
+            connectivity.setConnected(false);
+            queue.flush();
+            queue.getPending();
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void interceptorQueuesWhileOffline() throws Exception {
+        OfflineRequestQueue queue = new OfflineRequestQueue(directory, connectivity);
+        OkHttpClient intercepted = new OkHttpClient.Builder().addInterceptor(new OfflineQueueInterceptor(queue)).build();
+        queue.attach(intercepted);
+        Request request = post("/submit", "{}").newBuilder().header(OfflineRequestQueue.HEADER, "true").build();
+        try {
+            intercepted.newCall(request).execute();
+            fail();
+        } catch (RequestQueuedException e) {
+            assertEquals(e.getIdempotencyKey(), queue.getPending().get(0).getIdempotencyKey());
+        }
+        RecordingListener listener = new RecordingListener(1);
+        queue.addListener(listener);
+        server.enqueue(new MockResponse());
+        connectivity.setConnected(true);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        RecordedRequest recorded = server.takeRequest();
+        assertNull(recorded.getHeader(OfflineRequestQueue.HEADER));
+    }
+
+    @Test
+    public void replaysThroughTheClientThatQueued() throws Exception {
+        OfflineRequestQueue queue = new OfflineRequestQueue(directory, connectivity);
+        OkHttpClient root = new OkHttpClient.Builder().addInterceptor(new OfflineQueueInterceptor(queue)).build();
+        // 和 RetrofitUtils 的命名实例一样，实例自己的拦截器在离线队列之后
+        OkHttpClient named = new OkHttpClient.Builder()
+            .addInterceptor(new OfflineQueueInterceptor(queue, "named"))
+            .addInterceptor(new HeaderInterceptor("X-Instance", "named"))
+            .build();
+        queue.attach(root);
+        queue.attach("named", named);
+        queueOffline(root, "/root");
+        queueOffline(named, "/named");
+        assertEquals("named", queue.getPending().get(1).getClientName());
+
+        RecordingListener listener = new RecordingListener(2);
+        queue.addListener(listener);
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        connectivity.setConnected(true);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        Map<String, String> instances = new HashMap<>();
+        for (int i = 0; i < 2; i++) {
+            RecordedRequest recorded = server.takeRequest();
+            instances.put(recorded.getPath(), String.valueOf(recorded.getHeader("X-Instance")));
+        }
+        assertEquals("null", instances.get("/root"));
+        assertEquals("named", instances.get("/named"));
+    }
+
+    @Test
+    public void namedRequestsWaitForTheirClient() throws Exception {
+        OfflineRequestQueue queue = new OfflineRequestQueue(directory, connectivity);
+        queue.enqueue(post("/named", "1"), "named-key", "named");
+        queue.sync();
+
+        // 重启后命名实例还没注册，默认实例不发送它的请求
+        connectivity.setConnected(true);
+        OfflineRequestQueue restarted = new OfflineRequestQueue(directory, connectivity);
+        RecordingListener listener = new RecordingListener(1);
+        restarted.addListener(listener);
+        server.enqueue(new MockResponse());
+        restarted.attach(client);
+        restarted.sync();
+        assertEquals("named", restarted.getPending().get(0).getClientName());
+        assertEquals(1, listener.done.getCount());
+
+        restarted.attach("named", new OkHttpClient.Builder()
+            .addInterceptor(new HeaderInterceptor("X-Instance", "named"))
+            .build());
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals("named", server.takeRequest().getHeader("X-Instance"));
+    }
+
+    private void queueOffline(OkHttpClient client, String path) throws IOException {
+        Request request = post(path, "{}").newBuilder().header(OfflineRequestQueue.HEADER, "true").build();
+        try {
+            client.newCall(request).execute();
+            fail();
+        } catch (RequestQueuedException expected) {
+        }
+    }
+
+    private Request post(String path, String body) {
+        return new Request.Builder().url(server.url(path)).post(RequestBody.create(JSON, body)).build();
+    }
+
+    private static ScheduledExecutorService executor(OfflineRequestQueue queue) throws Exception {
+        Field field = OfflineRequestQueue.class.getDeclaredField("mExecutor");
+        field.setAccessible(true);
+        return (ScheduledExecutorService) field.get(queue);
+    }
+
+    static final class HeaderInterceptor implements Interceptor {
+        private final String name;
+        private final String value;
+
+        HeaderInterceptor(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            return chain.proceed(chain.request().newBuilder().header(name, value).build());
+        }
+    }
+
+    static final class FakeConnectivity implements ConnectivitySource {
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+        private volatile boolean connected;
+
+        void setConnected(boolean connected) {
+            this.connected = connected;
+            for (Listener listener : listeners) {
+                listener.onConnectivityChanged(connected);
+            }
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void addListener(Listener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeListener(Listener listener) {
+            listeners.remove(listener);
+        }
+    }
+
+    static final class RecordingListener implements OfflineRequestQueue.Listener {
+        final CountDownLatch done;
+        final List<Integer> codes = new ArrayList<>();
+
+        RecordingListener(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        @Override
+        public synchronized void onCompleted(QueuedRequest request, int code) {
+            codes.add(code);
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package retrofit.http.retrofit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 同一个host并发请求时，不同 maxRequestsPerHost 下的吞吐量对比，按 HttpConfig 的配置创建 Dispatcher 和连接池
+ */
+public class DispatcherThroughputTest {
+    private static final int REQUESTS = 40;
+    private static final long DELAY_MILLIS = 100;
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("ok").setHeadersDelay(DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void throughputScalesWithPerHostLimit() throws Exception {
+        long[] elapsed = new long[3];
+        int[] perHost = {5, 10, 40};
+        for (int i = 0; i < perHost.length; i++) {
+            HttpConfig config = new HttpConfig.Builder()
+                .maxRequestsPerHost(perHost[i])
+                .connectionPool(perHost[i], 1, TimeUnit.MINUTES)
+                .build();
+            elapsed[i] = run(config);
+            System.out.println("maxRequestsPerHost=" + perHost[i] + ": " + REQUESTS + " requests in " + elapsed[i]
+                + "ms, " + (REQUESTS * 1000 / Math.max(1, elapsed[i])) + " req/s");
+        }
+        // 每个host 5 个时至少要排 8 轮
+        assertTrue(elapsed[0] >= (REQUESTS / 5) * DELAY_MILLIS);
+        assertTrue(elapsed[2] < elapsed[0]);
+    }
+
+    private long run(HttpConfig config) throws InterruptedException {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(config.getMaxRequestsPerHost());
+        OkHttpClient client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(config.getMaxIdleConnections(), config.getKeepAliveMillis(), TimeUnit.MILLISECONDS))
+            .build();
+        final CountDownLatch done = new CountDownLatch(REQUESTS);
+        final int[] failures = new int[1];
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            client.newCall(new Request.Builder().url(server.url("/item/" + i)).build()).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    synchronized (failures) {
+                        failures[0]++;
+                    }
+                    done.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) throws IOException {
+                    response.body().string();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, failures[0]);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        return elapsed;
+    }
+}
@@ -0,0 +1,246 @@
+package retrofit.http.retrofit;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Okio;
+import retrofit.http.gson.CustomGsonConverterFactory;
+import retrofit.http.gson.IGsonConverter;
+import retrofit.http.intercept.ResponseInterceptor;
+import retrofit2.Call;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Streaming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpCallContextTest {
+    private MockWebServer server;
+    private ContextConverter converter;
+    private HttpCallContext[] tagged;
+    private Api api;
+    private OkHttpClient client;
+
+    interface Api {
+        @GET("user/1")
+        Call<Resp> user();
+
+        @GET("list")
+        Call<Resp> list();
+
+        @GET("raw")
+        Call<ResponseBody> raw();
+
+        @Streaming
+        @GET("download")
+        Call<ResponseBody> download();
+
+        @GET("text")
+        Call<String> text();
+    }
+
+    static class Resp {
+        int code;
+        String msg;
+        Object result;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        converter = new ContextConverter();
+        tagged = new HttpCallContext[1];
+        client = new OkHttpClient.Builder()
+            .addInterceptor(new ResponseInterceptor())
+            .addInterceptor(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    tagged[0] = HttpCallContext.of(chain.request());
+                    return chain.proceed(chain.request());
+                }
+            })
+            .build();
+        api = new Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .client(client)
+            .addConverterFactory(new TextConverterFactory())
+            .addConverterFactory(new CustomGsonConverterFactory<>(new Gson(), converter))
+            .build()
+            .create(Api.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void contextIsScopedToConversion() throws IOException {
+        server.enqueue(new MockResponse().setBody("{\"code\":0,\"msg\":\"ok\",\"result\":1}"));
+        api.user().execute();
+        assertNotNull(converter.seen);
+        assertEquals(server.url("/user/1").toString(), converter.seen.getUrl());
+        assertEquals(server.getHostName() + "/user/*", converter.seen.getRoute());
+        assertSame(converter.seen, tagged[0]);
+        assertNull(HttpCallContext.current());
+    }
+
+    @Test
+    public void failedCallDoesNotLeak() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(500).setBody("error"));
+        api.user().execute();
+        assertNull(HttpCallContext.current());
+
+        server.enqueue(new MockResponse().setResponseCode(204));
+        api.list().execute();
+        assertNull(HttpCallContext.current());
+
+        server.shutdown();
+        try {
+            api.list().execute();
+            fail();
+        } catch (IOException expected) {
+        }
+        assertNull(HttpCallContext.current());
+    }
+
+    @Test
+    public void nextCallSeesItsOwnContext() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("{\"code\":0,\"msg\":\"ok\",\"result\":1}"));
+        api.user().execute();
+        api.list().execute();
+        assertEquals(server.url("/list").toString(), converter.seen.getUrl());
+    }
+
+    @Test
+    public void responsesNotConvertedByGsonDoNotLeak() throws IOException {
+        server.enqueue(new MockResponse().setBody("raw"));
+        assertEquals("raw", api.raw().execute().body().string());
+        assertNull(HttpCallContext.current());
+
+        server.enqueue(new MockResponse().setBody("text"));
+        assertEquals("text", api.text().execute().body());
+        assertNull(HttpCallContext.current());
+    }
+
+    @Test
+    public void streamingBodyClosedOnAnotherThread() throws Exception {
+        server.enqueue(new MockResponse().setBody("download"));
+        final ResponseBody body = api.download().execute().body();
+        assertNotNull(HttpCallContext.current());
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    body.string();
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        reader.start();
+        reader.join();
+        assertNull(HttpCallContext.current());
+    }
+
+    /**
+     * 和 CachePolicyInterceptor 后台刷新缓存一样，在OkHttp的线程读完并关闭返回
+     */
+    @Test
+    public void backgroundCallDoesNotLeak() throws Exception {
+        server.enqueue(new MockResponse().setBody("refresh"));
+        final HttpCallContext[] afterClose = new HttpCallContext[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        client.newCall(new Request.Builder().url(server.url("/refresh")).build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(okhttp3.Call call, IOException e) {
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(okhttp3.Call call, Response response) throws IOException {
+                try {
+                    response.body().source().readAll(Okio.blackhole());
+                } finally {
+                    response.close();
+                    afterClose[0] = HttpCallContext.current();
+                    done.countDown();
+                }
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+        assertNull(afterClose[0]);
+    }
+
+    @Test
+    public void endOnlyClearsItsOwnContext() {
+        HttpCallContext first = HttpCallContext.begin(new Request.Builder().url("http://a.com/1").build());
+        HttpCallContext second = HttpCallContext.begin(new Request.Builder().url("http://a.com/2").build());
+        HttpCallContext.end(first);
+        assertSame(second, HttpCallContext.current());
+        HttpCallContext.end(second);
+        assertNull(HttpCallContext.current());
+    }
+
+    /**
+     * 和 scalars 一样把返回读成String，不经过Gson解析
+     */
+    static class TextConverterFactory extends Converter.Factory {
+        @Override
+        public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+            if (type != String.class) {
+                return null;
+            }
+            return new Converter<ResponseBody, String>() {
+                @Override
+                public String convert(ResponseBody value) throws IOException {
+                    return value.string();
+                }
+            };
+        }
+    }
+
+    /**
+     * 解析时记录当前请求的上下文
+     */
+    static class ContextConverter implements IGsonConverter {
+        HttpCallContext seen;
+
+        @Override
+        public boolean gsonConvert(String json) {
+            seen = HttpCallContext.current();
+            return false;
+        }
+
+        @Override
+        public IHttpResponse getHttpResponse() {
+            return null;
+        }
+    }
+}
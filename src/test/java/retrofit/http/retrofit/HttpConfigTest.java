@@ -0,0 +1,91 @@
+package retrofit.http.retrofit;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Protocol;
+import retrofit.http.scheduler.RequestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpConfigTest {
+
+    @Test
+    public void defaultsMatchOkHttp() {
+        HttpConfig config = HttpConfig.defaultConfig();
+        assertEquals(TimeUnit.SECONDS.toMillis(30), config.getConnectTimeoutMillis());
+        assertEquals(TimeUnit.SECONDS.toMillis(30), config.getReadTimeoutMillis());
+        assertEquals(TimeUnit.SECONDS.toMillis(30), config.getWriteTimeoutMillis());
+        assertEquals(64, config.getMaxRequests());
+        assertEquals(5, config.getMaxRequestsPerHost());
+        assertEquals(5, config.getMaxIdleConnections());
+        assertEquals(TimeUnit.MINUTES.toMillis(5), config.getKeepAliveMillis());
+        assertNull(config.getProtocols());
+        assertTrue(config.getRouteTimeouts().isEmpty());
+        assertFalse(config.isAsyncCall());
+        assertEquals(RequestScheduler.DEFAULT_THREADS, config.getRequestThreads());
+        assertEquals(RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, config.getMaxPrefetchQueue());
+        assertEquals(RequestScheduler.DEFAULT_TASK_THREADS, config.getTaskThreads());
+        assertEquals(RequestScheduler.RejectPolicy.ABORT, config.getRejectPolicy());
+    }
+
+    @Test
+    public void newBuilderCopiesEverything() {
+        HttpConfig config = new HttpConfig.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .maxRequests(128)
+            .maxRequestsPerHost(32)
+            .connectionPool(10, 1, TimeUnit.MINUTES)
+            .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+            .routeTimeout("/upload", new HttpConfig.RouteTimeout(0, 60, 60, TimeUnit.SECONDS))
+            .asyncCall(true)
+            .requestThreads(4, 64)
+            .maxPrefetchQueue(32)
+            .taskThreads(2, 16)
+            .rejectPolicy(RequestScheduler.RejectPolicy.FALLBACK_IO)
+            .build();
+        HttpConfig copy = config.newBuilder().readTimeout(1, TimeUnit.SECONDS).build();
+        assertEquals(5000, copy.getConnectTimeoutMillis());
+        assertEquals(1000, copy.getReadTimeoutMillis());
+        assertEquals(128, copy.getMaxRequests());
+        assertEquals(32, copy.getMaxRequestsPerHost());
+        assertEquals(10, copy.getMaxIdleConnections());
+        assertEquals(Collections.singletonList(Protocol.HTTP_1_1), copy.getProtocols());
+        assertEquals(60000, copy.getRouteTimeouts().get("/upload").getReadTimeoutMillis());
+        assertTrue(copy.isAsyncCall());
+        assertEquals(4, copy.getRequestThreads());
+        assertEquals(64, copy.getMaxQueue());
+        assertEquals(32, copy.getMaxPrefetchQueue());
+        assertEquals(2, copy.getTaskThreads());
+        assertEquals(16, copy.getTaskMaxQueue());
+        assertEquals(RequestScheduler.RejectPolicy.FALLBACK_IO, copy.getRejectPolicy());
+        // 原来的配置不受影响
+        assertEquals(TimeUnit.SECONDS.toMillis(30), config.getReadTimeoutMillis());
+    }
+
+    @Test
+    public void rejectsInvalidLimits() {
+        HttpConfig.Builder builder = new HttpConfig.Builder();
+        try {
+            builder.maxRequestsPerHost(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            builder.requestThreads(0, 10);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            builder.rejectPolicy(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+    }
+}
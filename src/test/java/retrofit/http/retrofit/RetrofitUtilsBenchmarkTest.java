@@ -0,0 +1,192 @@
+package retrofit.http.retrofit;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 先预热再计时，比较:
+ * 每次 Retrofit.create 和 {@link RetrofitUtils#create(Class)} 缓存的代理；
+ * 启动时创建实例的耗时，以及第一次调用接口(解析方法注解)时有没有 preload 的耗时；
+ * 冷启动时有没有 {@link RetrofitUtils#warmUp(Class[])} 主线程被阻塞的时间
+ * 只输出结果，不作为性能断言
+ */
+public class RetrofitUtilsBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int CREATE_OPERATIONS = 100000;
+    private static final int INSTANCES = 20;
+    private static final long STARTUP_WORK_MILLIS = 50;
+
+    @Test
+    public void cachedCreate() throws Exception {
+        RetrofitUtils utils = RetrofitUtilsTest.newInstance("http://bench.example.com/", HttpConfig.defaultConfig());
+        Field field = RetrofitUtils.class.getDeclaredField("mRetrofit");
+        field.setAccessible(true);
+        Retrofit retrofit = (Retrofit) field.get(utils);
+        long uncached = Long.MAX_VALUE;
+        long cached = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            long begin = System.nanoTime();
+            for (int j = 0; j < CREATE_OPERATIONS; j++) {
+                assertNotNull(retrofit.create(BenchApi.class));
+            }
+            long elapsed = System.nanoTime() - begin;
+            if (i >= WARMUP_ITERATIONS) {
+                uncached = Math.min(uncached, elapsed);
+            }
+            begin = System.nanoTime();
+            for (int j = 0; j < CREATE_OPERATIONS; j++) {
+                assertNotNull(utils.create(BenchApi.class));
+            }
+            elapsed = System.nanoTime() - begin;
+            if (i >= WARMUP_ITERATIONS) {
+                cached = Math.min(cached, elapsed);
+            }
+        }
+        System.out.println("create Retrofit.create=" + (uncached / CREATE_OPERATIONS) + "ns/op"
+            + " RetrofitUtils.create=" + (cached / CREATE_OPERATIONS) + "ns/op");
+    }
+
+    /**
+     * 每次新建实例，Retrofit 解析过的方法缓存在实例中，第一次调用都要重新解析
+     */
+    @Test
+    public void startupAndFirstCall() throws Exception {
+        HttpConfig eager = new HttpConfig.Builder().validateEagerly(true).build();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measure(HttpConfig.defaultConfig(), false);
+            measure(eager, true);
+        }
+        long[] cold = new long[2];
+        long[] preloaded = new long[2];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long[] result = measure(HttpConfig.defaultConfig(), false);
+            cold[0] += result[0];
+            cold[1] += result[1];
+            result = measure(eager, true);
+            preloaded[0] += result[0];
+            preloaded[1] += result[1];
+        }
+        long count = (long) ITERATIONS * INSTANCES;
+        System.out.println("startup=" + (cold[0] / count / 1000) + "us"
+            + " firstCall cold=" + (cold[1] / count / 1000) + "us"
+            + " firstCall after preload=" + (preloaded[1] / count / 1000) + "us");
+    }
+
+    /**
+     * 冷启动:主线程第一次 getInstance + create + 调用接口时被阻塞的时间，
+     * 比较不调用 warmUp 和启动时调用 warmUp(之后主线程还有 STARTUP_WORK_MILLIS 的其他初始化工作)
+     */
+    @Test
+    public void coldStart() throws Exception {
+        Field field = RetrofitUtils.class.getDeclaredField("instance");
+        field.setAccessible(true);
+        Object original = field.get(null);
+        RetrofitUtils.init(new RetrofitUtilsTest.TestFactory("http://bench.example.com/"));
+        try {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                coldStart(field, false);
+                coldStart(field, true);
+            }
+            long direct = 0;
+            long warmedUp = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                direct += coldStart(field, false);
+                warmedUp += coldStart(field, true);
+            }
+            System.out.println("cold start blocked main thread: without warmUp=" + (direct / ITERATIONS / 1000) + "us"
+                + " with warmUp=" + (warmedUp / ITERATIONS / 1000) + "us");
+        } finally {
+            field.set(null, original);
+        }
+    }
+
+    /**
+     * @return 第一次请求前阻塞的时间，单位纳秒
+     */
+    private static long coldStart(Field field, boolean warmUp) throws Exception {
+        field.set(null, null);
+        if (warmUp) {
+            RetrofitUtils.warmUp(BenchApi.class);
+        }
+        Thread.sleep(STARTUP_WORK_MILLIS);
+        long begin = System.nanoTime();
+        call(RetrofitUtils.getInstance().create(BenchApi.class));
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * @return 创建实例的耗时、第一次调用所有接口方法的耗时，单位纳秒
+     */
+    private static long[] measure(HttpConfig config, boolean preload) throws Exception {
+        long[] result = new long[2];
+        for (int i = 0; i < INSTANCES; i++) {
+            long begin = System.nanoTime();
+            RetrofitUtils utils = RetrofitUtilsTest.newInstance("http://bench.example.com/", config);
+            result[0] += System.nanoTime() - begin;
+            if (preload) {
+                utils.preload(BenchApi.class);
+                Map<Class<?>, Object> services = RetrofitUtilsTest.services(utils);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (!services.containsKey(BenchApi.class) && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+            }
+            begin = System.nanoTime();
+            BenchApi api = utils.create(BenchApi.class);
+            call(api);
+            result[1] += System.nanoTime() - begin;
+            assertSame(api, utils.create(BenchApi.class));
+        }
+        return result;
+    }
+
+    private static void call(BenchApi api) {
+        assertNotNull(api.user(1));
+        assertNotNull(api.friends(1, 0, 20));
+        assertNotNull(api.posts(1, 0, 20, "time"));
+        assertNotNull(api.post(1));
+        assertNotNull(api.comments(1, 0, 20));
+        assertNotNull(api.likes(1, 0, 20));
+        assertNotNull(api.search("a", 0, 20));
+        assertNotNull(api.tags());
+    }
+
+    interface BenchApi {
+        @GET("user/{id}")
+        Observable<Object> user(@Path("id") long id);
+
+        @GET("user/{id}/friends")
+        Observable<Object> friends(@Path("id") long id, @Query("page") int page, @Query("size") int size);
+
+        @GET("user/{id}/posts")
+        Observable<Object> posts(@Path("id") long id, @Query("page") int page, @Query("size") int size, @Query("sort") String sort);
+
+        @GET("post/{id}")
+        Observable<Object> post(@Path("id") long id);
+
+        @GET("post/{id}/comments")
+        Observable<Object> comments(@Path("id") long id, @Query("page") int page, @Query("size") int size);
+
+        @GET("post/{id}/likes")
+        Observable<Object> likes(@Path("id") long id, @Query("page") int page, @Query("size") int size);
+
+        @GET("search")
+        Observable<Object> search(@Query("q") String query, @Query("page") int page, @Query("size") int size);
+
+        @GET("tags")
+        Observable<Object> tags();
+    }
+}
@@ -0,0 +1,389 @@
+package retrofit.http.retrofit;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import retrofit.http.exception.RequestQueuedException;
+import retrofit.http.gson.CustomGsonConverterFactory;
+import retrofit.http.gson.IGsonConverter;
+import retrofit.http.gson.IGsonConverterFactory;
+import retrofit.http.offline.OfflineRequestQueue;
+import retrofit.http.scheduler.RequestScheduler;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetrofitUtilsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void init() {
+        RetrofitUtils.init(new TestFactory("http://root.example.com/"));
+    }
+
+    @Test
+    public void registerReturnsExistingInstance() {
+        RetrofitUtils first = RetrofitUtils.register("same", "http://a.example.com/", null);
+        assertSame(first, RetrofitUtils.register("same", "http://a.example.com/", null));
+        assertSame(first, RetrofitUtils.getInstance("same"));
+        assertNotSame(first, RetrofitUtils.getInstance());
+    }
+
+    @Test
+    public void registerWithDifferentBaseUrlThrows() {
+        RetrofitUtils.register("conflict", "http://a.example.com/", null);
+        try {
+            RetrofitUtils.register("conflict", "http://b.example.com/", null);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void byUrlUsesUrlAsName() {
+        String url = "http://c.example.com/";
+        assertSame(RetrofitUtils.getInstanceByUrl(url), RetrofitUtils.register(url, url, null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unknownNameThrows() {
+        RetrofitUtils.getInstance("missing");
+    }
+
+    @Test
+    public void createCachesServiceProxy() throws Exception {
+        final RetrofitUtils utils = RetrofitUtils.register("services", "http://services.example.com/", null);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Object[] proxies = new Object[8];
+        Thread[] threads = new Thread[proxies.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    proxies[index] = utils.create(Api.class);
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Object proxy : proxies) {
+            assertSame(proxies[0], proxy);
+        }
+    }
+
+    @Test
+    public void preloadCreatesInBackground() throws Exception {
+        HttpConfig config = new HttpConfig.Builder().validateEagerly(true).build();
+        RetrofitUtils utils = newInstance("http://preload.example.com/", config);
+        Map<Class<?>, Object> services = services(utils);
+        utils.preload(BadApi.class, Api.class);
+        // 不调用 create，等待后台线程放入缓存；BadApi 解析失败不影响其他接口
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!services.containsKey(Api.class) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Object preloaded = services.get(Api.class);
+        assertNotNull(preloaded);
+        assertFalse(services.containsKey(BadApi.class));
+        assertSame(preloaded, utils.create(Api.class));
+    }
+
+    @Test
+    public void validateEagerlyFailsOnCreate() throws Exception {
+        RetrofitUtils lazy = newInstance("http://lazy.example.com/", HttpConfig.defaultConfig());
+        assertNotNull(lazy.create(BadApi.class));
+
+        HttpConfig config = new HttpConfig.Builder().validateEagerly(true).build();
+        RetrofitUtils eager = newInstance("http://eager.example.com/", config);
+        assertNotNull(eager.create(Api.class));
+        try {
+            eager.create(BadApi.class);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void warmUpWithoutInitFailsFast() throws Exception {
+        Field field = RetrofitUtils.class.getDeclaredField("mGsonfactory");
+        field.setAccessible(true);
+        Object factory = field.get(null);
+        field.set(null, null);
+        try {
+            RetrofitUtils.warmUp(Api.class);
+            fail();
+        } catch (IllegalStateException expected) {
+        } finally {
+            field.set(null, factory);
+        }
+    }
+
+    @Test
+    public void warmUpCreatesOffCallingThread() throws Exception {
+        Field field = RetrofitUtils.class.getDeclaredField("instance");
+        field.setAccessible(true);
+        Object original = field.get(null);
+        final CountDownLatch gate = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Scheduler io = Schedulers.from(executor);
+        RxJavaPlugins.setIoSchedulerHandler(new Function<Scheduler, Scheduler>() {
+            @Override
+            public Scheduler apply(Scheduler scheduler) {
+                return io;
+            }
+        });
+        // 两个后台线程都先等待，确认 warmUp 返回时还没有创建
+        for (int i = 0; i < 2; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        field.set(null, null);
+        try {
+            RetrofitUtils.warmUp(Api.class);
+            assertNull(field.get(null));
+            gate.countDown();
+
+            // 不调用 getInstance，等待后台线程创建实例并预加载接口
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (field.get(null) == null && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            RetrofitUtils created = (RetrofitUtils) field.get(null);
+            assertNotNull(created);
+            Map<Class<?>, Object> services = services(created);
+            while (!services.containsKey(Api.class) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(services.containsKey(Api.class));
+            assertSame(created, RetrofitUtils.getInstance());
+            assertSame(services.get(Api.class), created.create(Api.class));
+        } finally {
+            gate.countDown();
+            RxJavaPlugins.setIoSchedulerHandler(null);
+            executor.shutdown();
+            field.set(null, original);
+        }
+    }
+
+    @Test
+    public void concurrentGetInstanceDuringWarmUp() throws Exception {
+        Field field = RetrofitUtils.class.getDeclaredField("instance");
+        field.setAccessible(true);
+        Object original = field.get(null);
+        for (int round = 0; round < 20; round++) {
+            field.set(null, null);
+            final CountDownLatch start = new CountDownLatch(1);
+            final RetrofitUtils[] results = new RetrofitUtils[8];
+            Thread[] threads = new Thread[results.length];
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        results[index] = RetrofitUtils.getInstance();
+                    }
+                });
+                threads[i].start();
+            }
+            RetrofitUtils.warmUp();
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (RetrofitUtils result : results) {
+                assertSame(results[0], result);
+            }
+            assertSame(results[0], RetrofitUtils.getInstance());
+        }
+        // 上一轮的 warmUp 任务晚执行时同样经过 getInstance 的锁，不会创建第二个实例
+        field.set(null, original);
+    }
+
+    @Test
+    public void bothInitsConfigureSchedulers() throws Exception {
+        Field field = RetrofitUtils.class.getDeclaredField("mGsonfactory");
+        field.setAccessible(true);
+        IGsonConverterFactory factory = (IGsonConverterFactory) field.get(null);
+        try {
+            RetrofitUtils.init(factory, new HttpConfig.Builder().requestThreads(3, 16).taskThreads(2, 8).build());
+            assertEquals(3, threads(RequestScheduler.getInstance()));
+            assertEquals(2, threads(RequestScheduler.getTaskInstance()));
+            // 单参数的 init 同样恢复默认配置
+            RetrofitUtils.init(factory);
+            assertEquals(RequestScheduler.DEFAULT_THREADS, threads(RequestScheduler.getInstance()));
+            assertEquals(RequestScheduler.DEFAULT_TASK_THREADS, threads(RequestScheduler.getTaskInstance()));
+        } finally {
+            RetrofitUtils.init(factory);
+        }
+    }
+
+    @Test
+    public void namedInstanceQueuesUnderItsName() throws Exception {
+        HttpConfig config = new HttpConfig.Builder().offlineQueue(folder.newFolder("offline")).build();
+        RetrofitUtils root = newInstance("http://root.example.com/", config);
+        RetrofitUtils named = derive(root, "named", "http://named.example.com/");
+        // 没有服务的端口，请求失败后放入离线队列
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        Request request = new Request.Builder()
+            .url("http://127.0.0.1:" + port + "/submit")
+            .header(OfflineRequestQueue.HEADER, "true")
+            .post(RequestBody.create(null, "{}"))
+            .build();
+        try {
+            client(named).newCall(request).execute();
+            fail();
+        } catch (RequestQueuedException expected) {
+        }
+        assertSame(root.getOfflineQueue(), named.getOfflineQueue());
+        assertEquals("named", root.getOfflineQueue().getPending().get(0).getClientName());
+    }
+
+    /**
+     * 不经过 init 创建独立的实例
+     */
+    static RetrofitUtils newInstance(String baseUrl, HttpConfig config) throws Exception {
+        Constructor<RetrofitUtils> constructor =
+            RetrofitUtils.class.getDeclaredConstructor(IGsonConverterFactory.class, HttpConfig.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(new TestFactory(baseUrl), config);
+    }
+
+    /**
+     * 和 register 一样由 root 派生命名实例
+     */
+    private static RetrofitUtils derive(RetrofitUtils root, String name, String baseUrl) throws Exception {
+        Constructor<RetrofitUtils> constructor = RetrofitUtils.class.getDeclaredConstructor(
+            RetrofitUtils.class, String.class, String.class, Interceptor.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(root, name, baseUrl, null);
+    }
+
+    private static OkHttpClient client(RetrofitUtils utils) throws Exception {
+        Field field = RetrofitUtils.class.getDeclaredField("okHttpClient");
+        field.setAccessible(true);
+        return (OkHttpClient) field.get(utils);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<Class<?>, Object> services(RetrofitUtils utils) throws Exception {
+        Field field = RetrofitUtils.class.getDeclaredField("mServices");
+        field.setAccessible(true);
+        return (Map<Class<?>, Object>) field.get(utils);
+    }
+
+    private static int threads(RequestScheduler scheduler) throws Exception {
+        Field field = RequestScheduler.class.getDeclaredField("mExecutor");
+        field.setAccessible(true);
+        return ((ThreadPoolExecutor) field.get(scheduler)).getCorePoolSize();
+    }
+
+    interface Api {
+        @GET("user")
+        Observable<Object> user();
+    }
+
+    /**
+     * 没有请求方法注解，解析时失败
+     */
+    interface BadApi {
+        Observable<Object> user();
+    }
+
+    /**
+     * 不开启缓存时不会用到Context
+     */
+    static class TestFactory implements IGsonConverterFactory {
+        private final String baseUrl;
+
+        TestFactory(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        @Override
+        public CustomGsonConverterFactory create() {
+            return new CustomGsonConverterFactory<>(new Gson(), new IGsonConverter() {
+                @Override
+                public boolean gsonConvert(String json) {
+                    return false;
+                }
+
+                @Override
+                public IHttpResponse getHttpResponse() {
+                    return null;
+                }
+            });
+        }
+
+        @Override
+        public Interceptor getInterceptor() {
+            return null;
+        }
+
+        @Override
+        public Context getContext() {
+            return null;
+        }
+
+        @Override
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+    }
+}
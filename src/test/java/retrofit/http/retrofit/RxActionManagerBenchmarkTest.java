@@ -0,0 +1,284 @@
+package retrofit.http.retrofit;
+
+import androidx.collection.ArrayMap;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按JMH的方式先预热再计时，比较单线程和多线程下 addHandle + removeHandle 的吞吐量，
+ * 以及已经有1万个请求时 add、remove、cancel(tag)、cancelScope 的耗时，和原来的 ArrayMap 实现对比
+ * 只输出结果，不作为性能断言
+ */
+public class RxActionManagerBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int OPERATIONS = 50000;
+    private static final int LIVE = 10000;
+    private static final int LIVE_SCOPES = 100;
+    private static final int BATCH = 1000;
+    private static final int SCOPE_SIZE = 100;
+    private static final String BENCH_SCOPE = "bench-scope";
+    private static final RxActionManagerImpl.Clock CLOCK = new RxActionManagerImpl.Clock() {
+        @Override
+        public long elapsedMillis() {
+            return System.nanoTime() / 1000000;
+        }
+    };
+
+    @Test
+    public void addRemoveThroughput() throws Exception {
+        for (int threads : new int[]{1, 4, 8}) {
+            RxActionManagerImpl manager = new RxActionManagerImpl(CLOCK);
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                run(manager, threads);
+            }
+            long best = Long.MAX_VALUE;
+            long total = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long elapsed = run(manager, threads);
+                best = Math.min(best, elapsed);
+                total += elapsed;
+            }
+            long operations = (long) OPERATIONS * threads;
+            System.out.println("RxActionManagerImpl threads=" + threads
+                + " avg=" + (total / ITERATIONS / operations) + "ns/op"
+                + " best=" + (best / operations) + "ns/op"
+                + " throughput=" + (operations * 1000000000L / best) + "ops/s");
+            assertEquals(0, manager.size());
+        }
+    }
+
+    @Test
+    public void operationsWithLiveEntries() {
+        Registry[] registries = {new ManagerRegistry(), new ArrayMapRegistry()};
+        String[] tags = new String[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            tags[i] = "bench-" + i;
+        }
+        for (Registry registry : registries) {
+            for (int i = 0; i < LIVE; i++) {
+                registry.add("live-" + i, i % LIVE_SCOPES, Disposables.empty());
+            }
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            for (Registry registry : registries) {
+                measure(registry, tags);
+            }
+        }
+        for (Registry registry : registries) {
+            long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+            for (int i = 0; i < ITERATIONS; i++) {
+                long[] result = measure(registry, tags);
+                for (int j = 0; j < best.length; j++) {
+                    best[j] = Math.min(best[j], result[j]);
+                }
+            }
+            System.out.println(registry + " live=" + LIVE
+                + " add=" + best[0] + "ns/op"
+                + " remove=" + best[1] + "ns/op"
+                + " cancel(tag)=" + best[2] + "ns/op"
+                + " cancelScope(" + SCOPE_SIZE + ")=" + best[3] + "ns/op");
+            assertEquals(LIVE, registry.size());
+        }
+    }
+
+    /**
+     * 每项操作完成后数量回到 LIVE
+     *
+     * @return add、remove、cancel(tag) 每次的耗时，cancelScope 每次取消 SCOPE_SIZE 个请求的耗时，单位纳秒
+     */
+    private static long[] measure(Registry registry, String[] tags) {
+        long[] result = new long[4];
+        Object[] keys = new Object[BATCH];
+        Disposable[] disposables = disposables(BATCH);
+        long begin = System.nanoTime();
+        for (int i = 0; i < BATCH; i++) {
+            keys[i] = registry.add(tags[i], BENCH_SCOPE, disposables[i]);
+        }
+        result[0] = (System.nanoTime() - begin) / BATCH;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < BATCH; i++) {
+            registry.remove(keys[i]);
+        }
+        result[1] = (System.nanoTime() - begin) / BATCH;
+
+        disposables = disposables(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            registry.add(tags[i], BENCH_SCOPE, disposables[i]);
+        }
+        begin = System.nanoTime();
+        for (int i = 0; i < BATCH; i++) {
+            registry.cancel(tags[i]);
+        }
+        result[2] = (System.nanoTime() - begin) / BATCH;
+        assertTrue(disposables[BATCH - 1].isDisposed());
+
+        int rounds = BATCH / SCOPE_SIZE;
+        long total = 0;
+        for (int round = 0; round < rounds; round++) {
+            disposables = disposables(SCOPE_SIZE);
+            for (int i = 0; i < SCOPE_SIZE; i++) {
+                registry.add(tags[i], BENCH_SCOPE, disposables[i]);
+            }
+            begin = System.nanoTime();
+            registry.cancelScope(BENCH_SCOPE);
+            total += System.nanoTime() - begin;
+            assertTrue(disposables[0].isDisposed());
+        }
+        result[3] = total / rounds;
+        assertEquals(LIVE, registry.size());
+        return result;
+    }
+
+    private static Disposable[] disposables(int count) {
+        Disposable[] disposables = new Disposable[count];
+        for (int i = 0; i < count; i++) {
+            disposables[i] = Disposables.empty();
+        }
+        return disposables;
+    }
+
+    private interface Registry {
+        /**
+         * @return remove 使用的key
+         */
+        Object add(String tag, Object scope, Disposable disposable);
+
+        void remove(Object key);
+
+        void cancel(String tag);
+
+        void cancelScope(Object scope);
+
+        int size();
+    }
+
+    private static final class ManagerRegistry implements Registry {
+        private final RxActionManagerImpl manager = new RxActionManagerImpl(CLOCK);
+
+        @Override
+        public Object add(String tag, Object scope, Disposable disposable) {
+            return manager.addHandle(tag, scope, disposable);
+        }
+
+        @Override
+        public void remove(Object key) {
+            manager.removeHandle((Long) key);
+        }
+
+        @Override
+        public void cancel(String tag) {
+            manager.cancel(tag);
+        }
+
+        @Override
+        public void cancelScope(Object scope) {
+            manager.cancelScope(scope);
+        }
+
+        @Override
+        public int size() {
+            return manager.size();
+        }
+
+        @Override
+        public String toString() {
+            return "RxActionManagerImpl";
+        }
+    }
+
+    /**
+     * 原来的实现:ArrayMap<tag, Disposable>，没有按scope取消，只能遍历全部请求
+     */
+    private static final class ArrayMapRegistry implements Registry {
+        private final ArrayMap<Object, Scoped> maps = new ArrayMap<>();
+
+        @Override
+        public Object add(String tag, Object scope, Disposable disposable) {
+            maps.put(tag, new Scoped(scope, disposable));
+            return tag;
+        }
+
+        @Override
+        public void remove(Object key) {
+            maps.remove(key);
+        }
+
+        @Override
+        public void cancel(String tag) {
+            Scoped scoped = maps.remove(tag);
+            if (scoped != null && !scoped.disposable.isDisposed()) {
+                scoped.disposable.dispose();
+            }
+        }
+
+        @Override
+        public void cancelScope(Object scope) {
+            for (int i = maps.size() - 1; i >= 0; i--) {
+                Scoped scoped = maps.valueAt(i);
+                if (scope.equals(scoped.scope)) {
+                    scoped.disposable.dispose();
+                    maps.removeAt(i);
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return maps.size();
+        }
+
+        @Override
+        public String toString() {
+            return "ArrayMap baseline";
+        }
+    }
+
+    private static final class Scoped {
+        final Object scope;
+        final Disposable disposable;
+
+        Scoped(Object scope, Disposable disposable) {
+            this.scope = scope;
+            this.disposable = disposable;
+        }
+    }
+
+    private static long run(final RxActionManagerImpl manager, int threads) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final String tag = "bench-" + t;
+            final Object scope = t % 2;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Disposable disposable = Disposables.empty();
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        manager.removeHandle(manager.addHandle(tag, scope, disposable));
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await(2, TimeUnit.MINUTES);
+        return System.nanoTime() - begin;
+    }
+}
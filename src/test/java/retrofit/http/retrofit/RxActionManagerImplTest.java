@@ -0,0 +1,232 @@
+package retrofit.http.retrofit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RxActionManagerImplTest {
+    private final RxActionManagerImpl manager = RxActionManagerImpl.getInstance();
+
+    @Test
+    public void sameTagKeepsEveryRequest() {
+        Disposable first = Disposables.empty();
+        Disposable second = Disposables.empty();
+        manager.add("same-tag", first);
+        long handle = manager.addHandle("same-tag", second);
+        manager.cancelHandle(handle);
+        assertTrue(second.isDisposed());
+        assertFalse(first.isDisposed());
+        assertFalse(manager.isDisposed("same-tag"));
+        manager.cancel("same-tag");
+        assertTrue(first.isDisposed());
+        assertTrue(manager.isDisposed("same-tag"));
+    }
+
+    @Test
+    public void nullTagIsOnlyTrackedByScopeAndHandle() {
+        int size = manager.size();
+        Object scope = new Object();
+        Disposable scoped = Disposables.empty();
+        Disposable handled = Disposables.empty();
+        manager.addHandle(null, scope, scoped);
+        long handle = manager.addHandle(null, handled);
+        assertEquals(size + 2, manager.size());
+        // null tag 不做处理
+        manager.cancel(null);
+        manager.remove(null);
+        assertTrue(manager.isDisposed(null));
+        assertFalse(scoped.isDisposed());
+        assertFalse(handled.isDisposed());
+
+        manager.cancelScope(scope);
+        assertTrue(scoped.isDisposed());
+        manager.cancelHandle(handle);
+        assertTrue(handled.isDisposed());
+        assertEquals(size, manager.size());
+    }
+
+    @Test
+    public void removeDoesNotDispose() {
+        int size = manager.size();
+        Disposable disposable = Disposables.empty();
+        Object scope = new Object();
+        manager.add("remove-tag", scope, disposable);
+        manager.remove("remove-tag");
+        manager.cancelScope(scope);
+        assertFalse(disposable.isDisposed());
+        assertEquals(size, manager.size());
+    }
+
+    @Test
+    public void leaksUseInjectedClock() {
+        FakeClock clock = new FakeClock();
+        RxActionManagerImpl manager = new RxActionManagerImpl(clock);
+        Disposable old = Disposables.empty();
+        manager.add("old", old);
+        clock.now = 5000;
+        manager.add("new", Disposables.empty());
+        clock.now = 10000;
+        List<RxActionManagerImpl.Leak> leaks = manager.getLeaks(8, TimeUnit.SECONDS);
+        assertEquals(1, leaks.size());
+        assertEquals("old", leaks.get(0).getTag());
+        assertEquals(10000, leaks.get(0).getAgeMillis());
+        assertFalse(leaks.get(0).isDisposed());
+
+        old.dispose();
+        assertTrue(manager.getLeaks(8, TimeUnit.SECONDS).get(0).isDisposed());
+        assertEquals(1, manager.purge());
+        assertTrue(manager.getLeaks(8, TimeUnit.SECONDS).isEmpty());
+        assertEquals(1, manager.size());
+    }
+
+    /**
+     * 添加、取消的同时读取 getLeaks、purge，不应抛出异常，结束后没有残留
+     */
+    @Test
+    public void leakScanDuringChurn() throws Exception {
+        final FakeClock clock = new FakeClock();
+        final RxActionManagerImpl manager = new RxActionManagerImpl(clock);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread scanner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (running.get()) {
+                        clock.now++;
+                        for (RxActionManagerImpl.Leak leak : manager.getLeaks(0, TimeUnit.MILLISECONDS)) {
+                            assertTrue(leak.getAgeMillis() >= 0);
+                        }
+                        manager.purge();
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        scanner.start();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        Disposable disposable = Disposables.empty();
+                        long handle = manager.addHandle("churn-" + (i % 8), thread, disposable);
+                        if (i % 2 == 0) {
+                            disposable.dispose();
+                        } else {
+                            manager.removeHandle(handle);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        running.set(false);
+        scanner.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        manager.purge();
+        assertEquals(0, manager.size());
+    }
+
+    /**
+     * 多个线程同时按tag、scope、handle添加和取消，结束后不应该有残留，取消过的请求都已经dispose
+     */
+    @Test
+    public void concurrentStress() throws Exception {
+        final int threads = 8;
+        final int operations = 20000;
+        final String prefix = "stress-" + System.nanoTime() + "-";
+        final Object[] scopes = new Object[4];
+        for (int i = 0; i < scopes.length; i++) {
+            scopes[i] = new Object();
+        }
+        int size = manager.size();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Disposable>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            futures.add(executor.submit(new Callable<List<Disposable>>() {
+                @Override
+                public List<Disposable> call() throws Exception {
+                    Random random = new Random(seed);
+                    List<Disposable> added = new ArrayList<>();
+                    start.await();
+                    for (int i = 0; i < operations; i++) {
+                        String tag = random.nextInt(5) == 0 ? null : prefix + random.nextInt(16);
+                        Object scope = scopes[random.nextInt(scopes.length)];
+                        Disposable disposable = Disposables.empty();
+                        added.add(disposable);
+                        long handle = manager.addHandle(tag, scope, disposable);
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                manager.cancelHandle(handle);
+                                break;
+                            case 1:
+                                manager.cancel(tag);
+                                break;
+                            case 2:
+                                manager.cancelScope(scope);
+                                break;
+                            default:
+                                // 留到最后按scope取消
+                                break;
+                        }
+                    }
+                    return added;
+                }
+            }));
+        }
+        start.countDown();
+        List<Disposable> all = new ArrayList<>();
+        for (Future<List<Disposable>> future : futures) {
+            all.addAll(future.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        for (Object scope : scopes) {
+            manager.cancelScope(scope);
+        }
+        assertEquals(size, manager.size());
+        for (int i = 0; i < 16; i++) {
+            assertTrue(manager.isDisposed(prefix + i));
+        }
+        for (Disposable disposable : all) {
+            assertTrue(disposable.isDisposed());
+        }
+    }
+
+    static final class FakeClock implements RxActionManagerImpl.Clock {
+        volatile long now;
+
+        @Override
+        public long elapsedMillis() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package retrofit.http.retry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.functions.Function;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit.http.metrics.LatencyHistogram;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
+import retrofit2.HttpException;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HedgeTransformerTest {
+    private MockWebServer server;
+    private Api api;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile MockResponse[] responses;
+
+    interface Api {
+        @GET("data")
+        Observable<ResponseBody> data();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                int index = requests.getAndIncrement();
+                return responses[Math.min(index, responses.length - 1)];
+            }
+        });
+        server.start();
+        api = new Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+            .build()
+            .create(Api.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void slowPrimaryIsHedged() {
+        responses = new MockResponse[]{
+            new MockResponse().setBody("primary").setHeadersDelay(2, TimeUnit.SECONDS),
+            new MockResponse().setBody("hedge")
+        };
+        HedgeTransformer<String> hedge = hedge();
+        long start = System.nanoTime();
+        String result = request().compose(hedge).blockingFirst();
+        assertEquals("hedge", result);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+        // 对冲请求先返回，第一次请求的耗时未知，不记录
+        assertEquals(0, latency(hedge).getCount());
+    }
+
+    @Test
+    public void fastPrimaryIsRecordedAndNotHedged() {
+        responses = new MockResponse[]{new MockResponse().setBody("primary")};
+        HedgeTransformer<String> hedge = hedge();
+        assertEquals("primary", request().compose(hedge).blockingFirst());
+        assertEquals(1, requests.get());
+        assertEquals(1, latency(hedge).getCount());
+    }
+
+    @Test
+    public void primaryErrorDoesNotBeatPendingHedge() {
+        responses = new MockResponse[]{
+            new MockResponse().setResponseCode(500).setHeadersDelay(300, TimeUnit.MILLISECONDS),
+            new MockResponse().setBody("hedge").setHeadersDelay(400, TimeUnit.MILLISECONDS)
+        };
+        assertEquals("hedge", request().compose(hedge()).blockingFirst());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void hedgeErrorDoesNotBeatPendingPrimary() {
+        responses = new MockResponse[]{
+            new MockResponse().setBody("primary").setHeadersDelay(400, TimeUnit.MILLISECONDS),
+            new MockResponse().setResponseCode(500)
+        };
+        assertEquals("primary", request().compose(hedge()).blockingFirst());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void bothFailedReturnsError() {
+        responses = new MockResponse[]{
+            new MockResponse().setResponseCode(500).setHeadersDelay(300, TimeUnit.MILLISECONDS),
+            new MockResponse().setResponseCode(503)
+        };
+        request().compose(hedge()).test().awaitDone(5, TimeUnit.SECONDS).assertError(HttpException.class);
+    }
+
+    @Test
+    public void primaryErrorBeforeHedgeFailsFast() {
+        responses = new MockResponse[]{new MockResponse().setResponseCode(500)};
+        request().compose(hedge()).test().awaitDone(5, TimeUnit.SECONDS).assertError(HttpException.class);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void attemptsKeepCallerPriority() {
+        responses = new MockResponse[]{
+            new MockResponse().setBody("primary").setHeadersDelay(300, TimeUnit.MILLISECONDS),
+            new MockResponse().setBody("hedge").setHeadersDelay(300, TimeUnit.MILLISECONDS)
+        };
+        LatencyHistogram critical = RequestScheduler.getInstance().getQueueWait(RequestPriority.CRITICAL);
+        long before = critical.getCount();
+        HedgeTransformer<String> hedge = new HedgeTransformer.Builder()
+            .minSamples(Long.MAX_VALUE)
+            .delayRange(100, 100, TimeUnit.MILLISECONDS)
+            .budget(new RetryBudget(1, 10))
+            .priority(RequestPriority.CRITICAL)
+            .build();
+        assertEquals("primary", request().compose(hedge).blockingFirst());
+        assertEquals(2, requests.get());
+        // 第一次请求、等待、对冲请求都在 CRITICAL 执行
+        assertTrue(critical.getCount() >= before + 3);
+    }
+
+    @Test
+    public void percentileDrivesDelay() throws InterruptedException {
+        HedgeTransformer<String> hedge = new HedgeTransformer.Builder()
+            .minSamples(20)
+            .percentile(95)
+            .delayRange(10, 5000, TimeUnit.MILLISECONDS)
+            .build();
+        // 样本数不足时使用最大值
+        assertEquals(5000, hedge.hedgeDelayMillis());
+        record(hedge, 20, 100);
+        // 最多每秒计算一次
+        assertEquals(5000, hedge.hedgeDelayMillis());
+        Thread.sleep(1100);
+        long delay = hedge.hedgeDelayMillis();
+        assertTrue(String.valueOf(delay), delay >= 100 && delay < 200);
+    }
+
+    @Test
+    public void liveLatencyTriggersHedge() {
+        responses = new MockResponse[]{
+            new MockResponse().setBody("primary").setHeadersDelay(3, TimeUnit.SECONDS),
+            new MockResponse().setBody("hedge")
+        };
+        HedgeTransformer<String> hedge = new HedgeTransformer.Builder()
+            .minSamples(20)
+            .delayRange(10, 5000, TimeUnit.MILLISECONDS)
+            .budget(new RetryBudget(1, 10))
+            .build();
+        record(hedge, 20, 100);
+        long start = System.nanoTime();
+        assertEquals("hedge", request().compose(hedge).blockingFirst());
+        // 最大等待5s，按p95(100ms)发出对冲请求
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+    }
+
+    private static void record(HedgeTransformer<?> hedge, int count, long millis) {
+        LatencyHistogram latency = latency(hedge);
+        for (int i = 0; i < count; i++) {
+            latency.record(millis * 1000);
+        }
+    }
+
+    private Observable<String> request() {
+        return api.data().map(new Function<ResponseBody, String>() {
+            @Override
+            public String apply(ResponseBody body) throws Exception {
+                return body.string();
+            }
+        });
+    }
+
+    /**
+     * 样本数不足，固定等待100ms后发出对冲请求
+     */
+    private static HedgeTransformer<String> hedge() {
+        return new HedgeTransformer.Builder()
+            .minSamples(Long.MAX_VALUE)
+            .delayRange(100, 100, TimeUnit.MILLISECONDS)
+            .budget(new RetryBudget(1, 10))
+            .build();
+    }
+
+    private static LatencyHistogram latency(HedgeTransformer<?> hedge) {
+        try {
+            Field field = HedgeTransformer.class.getDeclaredField("mLatency");
+            field.setAccessible(true);
+            return (LatencyHistogram) field.get(hedge);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
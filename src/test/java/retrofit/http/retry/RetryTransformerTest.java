@@ -0,0 +1,140 @@
+package retrofit.http.retry;
+
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import retrofit.http.exception.ConnectTimeoutException;
+import retrofit.http.metrics.LatencyHistogram;
+import retrofit.http.scheduler.RequestPriority;
+import retrofit.http.scheduler.RequestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetryTransformerTest {
+
+    @Test
+    public void readTimeoutIsNotRetriedByDefault() {
+        AtomicInteger calls = new AtomicInteger();
+        failThenSucceed(calls, new SocketTimeoutException("timeout"))
+            .compose(builder().<String>build())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertError(SocketTimeoutException.class);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void readTimeoutIsRetriedWhenIdempotent() {
+        AtomicInteger calls = new AtomicInteger();
+        failThenSucceed(calls, new SocketTimeoutException("timeout"))
+            .compose(builder().idempotent(true).<String>build())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValue("ok");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void connectFailuresAreAlwaysRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        failThenSucceed(calls, connectTimeout())
+            .compose(builder().<String>build())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValue("ok");
+        assertEquals(2, calls.get());
+
+        calls.set(0);
+        failThenSucceed(calls, new ConnectException("refused"))
+            .compose(builder().policy(ConnectException.class, new RetryPolicy(2, 0, 0, TimeUnit.MILLISECONDS)).<String>build())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValue("ok");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void timeoutMessageIsNotTrusted() {
+        // 没有经过 ConnectPhaseInterceptor 的超时不能确定请求没有发出
+        AtomicInteger calls = new AtomicInteger();
+        failThenSucceed(calls, new SocketTimeoutException("connect timed out"))
+            .compose(builder().<String>build())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertError(SocketTimeoutException.class);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void retryKeepsCallerPriority() {
+        LatencyHistogram critical = RequestScheduler.getInstance().getQueueWait(RequestPriority.CRITICAL);
+        long before = critical.getCount();
+        AtomicInteger calls = new AtomicInteger();
+        failThenSucceed(calls, new ConnectException("refused"))
+            .compose(builder()
+                .policy(ConnectException.class, new RetryPolicy(2, 0, 0, TimeUnit.MILLISECONDS))
+                .priority(RequestPriority.CRITICAL)
+                .<String>build())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValue("ok");
+        assertEquals(2, calls.get());
+        assertTrue(critical.getCount() > before);
+    }
+
+    @Test
+    public void budgetLimitsRetries() {
+        RetryBudget budget = new RetryBudget(0, 1);
+        AtomicInteger calls = new AtomicInteger();
+        failThenSucceed(calls, connectTimeout())
+            .compose(new RetryTransformer.Builder()
+                .policy(SocketTimeoutException.class, new RetryPolicy(5, 0, 0, TimeUnit.MILLISECONDS))
+                .budget(budget)
+                .<String>build())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValue("ok");
+        calls.set(-5);
+        failThenSucceed(calls, connectTimeout())
+            .compose(new RetryTransformer.Builder()
+                .policy(SocketTimeoutException.class, new RetryPolicy(5, 0, 0, TimeUnit.MILLISECONDS))
+                .budget(budget)
+                .<String>build())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertError(SocketTimeoutException.class);
+        assertEquals(1, budget.getRetryCount());
+    }
+
+    private static RetryTransformer.Builder builder() {
+        return new RetryTransformer.Builder()
+            .policy(SocketTimeoutException.class, new RetryPolicy(2, 0, 0, TimeUnit.MILLISECONDS))
+            .budget(new RetryBudget(1, 10));
+    }
+
+    private static ConnectTimeoutException connectTimeout() {
+        return new ConnectTimeoutException(new SocketTimeoutException("connect timed out"));
+    }
+
+    /**
+     * 第一次订阅返回 error，之后返回 "ok"
+     */
+    private static Observable<String> failThenSucceed(final AtomicInteger calls, final Exception error) {
+        return Observable.fromCallable(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                if (calls.incrementAndGet() <= 1) {
+                    throw error;
+                }
+                return "ok";
+            }
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package retrofit.http.scheduler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 突发的阻塞请求分别在 Schedulers.io() 和 RequestScheduler 上执行，比较使用的线程数和耗时
+ * 先预热一轮再计时，只对线程数做断言
+ */
+public class RequestSchedulerBenchmarkTest {
+    private static final int BURST = 400;
+    private static final long BLOCK_MILLIS = 10;
+
+    @Test
+    public void threadCountUnderBurst() throws InterruptedException {
+        ObservableTransformer<Long, Long> io = new ObservableTransformer<Long, Long>() {
+            @Override
+            public ObservableSource<Long> apply(Observable<Long> upstream) {
+                return upstream.subscribeOn(Schedulers.io());
+            }
+        };
+        RequestScheduler scheduler = RequestScheduler.getInstance();
+        scheduler.configure(RequestScheduler.DEFAULT_THREADS, RequestScheduler.DEFAULT_MAX_QUEUE,
+            RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, RequestScheduler.RejectPolicy.ABORT);
+        ObservableTransformer<Long, Long> bounded = scheduler.subscribeOn(RequestPriority.NORMAL);
+
+        run(io);
+        run(bounded);
+        Result ioResult = run(io);
+        Result boundedResult = run(bounded);
+        System.out.println("Schedulers.io()   " + ioResult);
+        System.out.println("RequestScheduler " + boundedResult);
+
+        assertTrue(boundedResult.threads <= RequestScheduler.DEFAULT_THREADS);
+        assertTrue(ioResult.threads > RequestScheduler.DEFAULT_THREADS);
+    }
+
+    private static Result run(ObservableTransformer<Long, Long> transformer) throws InterruptedException {
+        final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        final long[] latencies = new long[BURST];
+        final CountDownLatch done = new CountDownLatch(BURST);
+        long start = System.nanoTime();
+        for (int i = 0; i < BURST; i++) {
+            final int index = i;
+            final long submittedAt = System.nanoTime();
+            Observable.fromCallable(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    threads.add(Thread.currentThread());
+                    Thread.sleep(BLOCK_MILLIS);
+                    return System.nanoTime();
+                }
+            })
+                .compose(transformer)
+                .doFinally(new Action() {
+                    @Override
+                    public void run() {
+                        done.countDown();
+                    }
+                })
+                .subscribe(new Consumer<Long>() {
+                    @Override
+                    public void accept(Long finishedAt) {
+                        latencies[index] = (finishedAt - submittedAt) / 1000000;
+                    }
+                });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Arrays.sort(latencies);
+        return new Result(threads.size(), elapsed, latencies[BURST / 2], latencies[(int) Math.ceil(BURST * 0.99) - 1]);
+    }
+
+    private static final class Result {
+        final int threads;
+        final long elapsedMillis;
+        final long p50Millis;
+        final long p99Millis;
+
+        Result(int threads, long elapsedMillis, long p50Millis, long p99Millis) {
+            this.threads = threads;
+            this.elapsedMillis = elapsedMillis;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+        }
+
+        @Override
+        public String toString() {
+            return "burst=" + BURST + " threads=" + threads + " elapsed=" + elapsedMillis + "ms"
+                + " p50=" + p50Millis + "ms p99=" + p99Millis + "ms";
+        }
+    }
+}
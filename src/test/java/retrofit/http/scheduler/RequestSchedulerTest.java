@@ -0,0 +1,206 @@
+package retrofit.http.scheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import retrofit.http.exception.ExceptionEngine;
+import retrofit.http.metrics.HistogramSnapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 预加载占满时 CRITICAL、NORMAL 的排队等待p99，时间单位都是微秒
+ */
+public class RequestSchedulerTest {
+    private static final long PREFETCH_MILLIS = 20;
+    private static final long REQUEST_MILLIS = 2;
+
+    private final RequestScheduler scheduler = RequestScheduler.getInstance();
+
+    @Before
+    public void setUp() {
+        scheduler.configure(RequestScheduler.DEFAULT_THREADS, RequestScheduler.DEFAULT_MAX_QUEUE, RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, RequestScheduler.RejectPolicy.ABORT);
+        for (RequestPriority priority : RequestPriority.values()) {
+            scheduler.getQueueWait(priority).reset();
+            scheduler.getRunTime(priority).reset();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.configure(RequestScheduler.DEFAULT_THREADS, RequestScheduler.DEFAULT_MAX_QUEUE, RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, RequestScheduler.RejectPolicy.ABORT);
+    }
+
+    @Test
+    public void p99UnderPrefetchLoad() throws InterruptedException {
+        int prefetchCount = 200;
+        int requestCount = 50;
+        final AtomicInteger prefetchRunning = new AtomicInteger();
+        final AtomicInteger prefetchPeak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(prefetchCount + requestCount * 2);
+        for (int i = 0; i < prefetchCount; i++) {
+            scheduler.execute(new Work(PREFETCH_MILLIS, done, prefetchRunning, prefetchPeak), RequestPriority.PREFETCH);
+        }
+        // 预加载排队的同时陆续提交请求
+        for (int i = 0; i < requestCount; i++) {
+            scheduler.execute(new Work(REQUEST_MILLIS, done, null, null), RequestPriority.CRITICAL);
+            scheduler.execute(new Work(REQUEST_MILLIS, done, null, null), RequestPriority.NORMAL);
+            Thread.sleep(5);
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        HistogramSnapshot critical = scheduler.getQueueWait(RequestPriority.CRITICAL).snapshot();
+        HistogramSnapshot normal = scheduler.getQueueWait(RequestPriority.NORMAL).snapshot();
+        HistogramSnapshot prefetch = scheduler.getQueueWait(RequestPriority.PREFETCH).snapshot();
+        System.out.println("queue wait p99 under prefetch: critical=" + critical.getValueAtPercentile(99) + "us"
+            + " normal=" + normal.getValueAtPercentile(99) + "us"
+            + " prefetch=" + prefetch.getValueAtPercentile(99) + "us"
+            + " prefetchPeak=" + prefetchPeak.get());
+
+        // 预加载最多占4个线程，其余线程留给请求，不需要等预加载执行完
+        assertTrue(prefetchPeak.get() <= 4);
+        assertTrue(critical.getValueAtPercentile(99) < PREFETCH_MILLIS * 1000);
+        assertTrue(normal.getValueAtPercentile(99) < PREFETCH_MILLIS * 1000);
+        // 排队时间从提交时开始计算，200个预加载在4个线程上要等待1s左右
+        assertTrue(prefetch.getValueAtPercentile(99) > PREFETCH_MILLIS * 1000 * 10);
+    }
+
+    @Test
+    public void prefetchBacklogDoesNotRejectNormal() throws InterruptedException {
+        int maxQueue = 8;
+        scheduler.configure(1, maxQueue, 4, RequestScheduler.RejectPolicy.ABORT);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.execute(new Blocker(release), RequestPriority.NORMAL);
+        for (int i = 0; i < 10; i++) {
+            scheduler.execute(new Blocker(release), RequestPriority.PREFETCH);
+        }
+        try {
+            // 预加载排满只拒绝预加载
+            assertTrue(scheduler.getPrefetchQueueSize() >= 4);
+            assertTrue(admitted(RequestPriority.NORMAL));
+            assertFalse(admitted(RequestPriority.PREFETCH));
+            // 线程池中排队的任务达到上限后拒绝 NORMAL，CRITICAL 不受限制
+            while (scheduler.getQueueSize() - scheduler.getPrefetchQueueSize() < maxQueue) {
+                scheduler.execute(new Blocker(release), RequestPriority.NORMAL);
+            }
+            Throwable error = rejection(RequestPriority.NORMAL);
+            assertTrue(error instanceof RejectedExecutionException);
+            assertEquals(ExceptionEngine.QUEUE_FULL_ERROR, ExceptionEngine.handleException(error).getCode());
+            assertTrue(admitted(RequestPriority.CRITICAL));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void tasksUseTheirOwnThreads() {
+        String thread = Observable.fromCallable(new Callable<String>() {
+            @Override
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        }).compose(RequestScheduler.getTaskInstance().<String>subscribeOn(RequestPriority.NORMAL)).blockingFirst();
+        assertTrue(thread, thread.startsWith("async-task-"));
+        assertNotSame(scheduler, RequestScheduler.getTaskInstance());
+    }
+
+    private boolean admitted(RequestPriority priority) {
+        return rejection(priority) == null;
+    }
+
+    private Throwable rejection(RequestPriority priority) {
+        TestObserver<Integer> observer = Observable.just(1)
+            .compose(scheduler.<Integer>subscribeOn(priority))
+            .test();
+        if (observer.errorCount() > 0) {
+            return observer.errors().get(0);
+        }
+        return null;
+    }
+
+    @Test
+    public void criticalSkipsNormalBacklog() throws InterruptedException {
+        scheduler.configure(2, RequestScheduler.DEFAULT_MAX_QUEUE, RequestScheduler.DEFAULT_MAX_PREFETCH_QUEUE, RequestScheduler.RejectPolicy.ABORT);
+        int normalCount = 40;
+        int criticalCount = 10;
+        long normalMillis = 10;
+        CountDownLatch done = new CountDownLatch(normalCount + criticalCount);
+        for (int i = 0; i < normalCount; i++) {
+            scheduler.execute(new Work(normalMillis, done, null, null), RequestPriority.NORMAL);
+        }
+        for (int i = 0; i < criticalCount; i++) {
+            scheduler.execute(new Work(REQUEST_MILLIS, done, null, null), RequestPriority.CRITICAL);
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        long critical = scheduler.getQueueWait(RequestPriority.CRITICAL).snapshot().getValueAtPercentile(99);
+        long normal = scheduler.getQueueWait(RequestPriority.NORMAL).snapshot().getValueAtPercentile(99);
+        System.out.println("queue wait p99 behind normal backlog: critical=" + critical + "us normal=" + normal + "us");
+        // 40个10ms的任务在2个线程上要排200ms，CRITICAL 只需要等正在执行的任务
+        assertTrue(critical < normalMillis * 1000 * 4);
+        assertTrue(normal > normalMillis * 1000 * 10);
+    }
+
+    private static final class Blocker implements Runnable {
+        private final CountDownLatch release;
+
+        Blocker(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Work implements Runnable {
+        private final long millis;
+        private final CountDownLatch done;
+        private final AtomicInteger running;
+        private final AtomicInteger peak;
+
+        Work(long millis, CountDownLatch done, AtomicInteger running, AtomicInteger peak) {
+            this.millis = millis;
+            this.done = done;
+            this.running = running;
+            this.peak = peak;
+        }
+
+        @Override
+        public void run() {
+            if (running != null) {
+                int now = running.incrementAndGet();
+                int max;
+                while (now > (max = peak.get()) && !peak.compareAndSet(max, now)) {
+                }
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (running != null) {
+                    running.decrementAndGet();
+                }
+                done.countDown();
+            }
+        }
+    }
+}